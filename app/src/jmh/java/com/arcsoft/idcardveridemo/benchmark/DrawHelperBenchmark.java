@@ -0,0 +1,79 @@
+package com.arcsoft.idcardveridemo.benchmark;
+
+import com.arcsoft.idcardveridemo.draw.DrawHelper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DrawHelper#adjustRect(int[], int, int, int, int, int, int, boolean, boolean, boolean)}及
+ * {@link DrawHelper#mapRects(int[], int[], int)}基准测试，覆盖所有旋转角度、前后摄像头及镜像组合
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DrawHelperBenchmark {
+    private static final int PREVIEW_WIDTH = 640;
+    private static final int PREVIEW_HEIGHT = 480;
+    private static final int RECT_COUNT = 8;
+
+    @Param({"0", "90", "180", "270"})
+    public int displayOrientation;
+    @Param({"0", "1"})
+    public int cameraId;
+    @Param({"false", "true"})
+    public boolean isMirror;
+    @Param({"false", "true"})
+    public boolean mirrorHorizontal;
+    @Param({"false", "true"})
+    public boolean mirrorVertical;
+
+    private int canvasWidth;
+    private int canvasHeight;
+    private final int[] rect = new int[4];
+    private final int[] srcRects = new int[RECT_COUNT * 4];
+    private final int[] dstRects = new int[RECT_COUNT * 4];
+    private DrawHelper drawHelper;
+
+    @Setup
+    public void setup() {
+        canvasWidth = displayOrientation % 180 == 0 ? 1280 : 720;
+        canvasHeight = displayOrientation % 180 == 0 ? 720 : 1280;
+        drawHelper = new DrawHelper(PREVIEW_WIDTH, PREVIEW_HEIGHT, canvasWidth, canvasHeight, displayOrientation, cameraId,
+                isMirror, mirrorHorizontal, mirrorVertical);
+        for (int i = 0; i < RECT_COUNT; i++) {
+            srcRects[i * 4] = 40 * i;
+            srcRects[i * 4 + 1] = 30 * i;
+            srcRects[i * 4 + 2] = 40 * i + 160;
+            srcRects[i * 4 + 3] = 30 * i + 160;
+        }
+    }
+
+    @Benchmark
+    public int[] adjustRect() {
+        rect[0] = 200;
+        rect[1] = 120;
+        rect[2] = 440;
+        rect[3] = 360;
+        DrawHelper.adjustRect(rect, PREVIEW_WIDTH, PREVIEW_HEIGHT, canvasWidth, canvasHeight, displayOrientation, cameraId,
+                isMirror, mirrorHorizontal, mirrorVertical);
+        return rect;
+    }
+
+    /**
+     * 批量调整{@link #RECT_COUNT}个人脸框
+     */
+    @Benchmark
+    public int[] mapRects() {
+        drawHelper.mapRects(srcRects, dstRects, RECT_COUNT);
+        return dstRects;
+    }
+}
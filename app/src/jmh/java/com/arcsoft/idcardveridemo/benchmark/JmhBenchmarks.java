@@ -0,0 +1,44 @@
+package com.arcsoft.idcardveridemo.benchmark;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.File;
+
+/**
+ * JMH基准测试入口，结果以JSON格式输出，包含ns/op及GC分配速率（gc.alloc.rate.norm）。
+ * <p>
+ * 默认跳过，运行方式：
+ * ./gradlew :app:testDebugUnitTest --tests '*JmhBenchmarks' -Dbenchmark.jmh=true
+ * [-Dbenchmark.jmh.include=DrawHelper] [-Dbenchmark.jmh.output=build/reports/jmh/results.json]
+ */
+public class JmhBenchmarks {
+
+    @Test
+    public void run() throws Exception {
+        Assume.assumeTrue("jmh disabled, run with -Dbenchmark.jmh=true", Boolean.getBoolean("benchmark.jmh"));
+        File output = new File(System.getProperty("benchmark.jmh.output", "build/reports/jmh/results.json"));
+        File parent = output.getAbsoluteFile().getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new IllegalStateException("cannot create " + parent);
+        }
+        Options options = new OptionsBuilder()
+                .include(JmhBenchmarks.class.getPackage().getName() + ".*" + System.getProperty("benchmark.jmh.include", "") + ".*")
+                .forks(Integer.getInteger("benchmark.jmh.forks", 1))
+                .warmupIterations(Integer.getInteger("benchmark.jmh.warmupIterations", 3))
+                .warmupTime(TimeValue.seconds(1))
+                .measurementIterations(Integer.getInteger("benchmark.jmh.iterations", 5))
+                .measurementTime(TimeValue.seconds(1))
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(output.getPath())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,64 @@
+package com.arcsoft.idcardveridemo.benchmark;
+
+import com.arcsoft.idcardveridemo.draw.face.FaceQualityScorer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NV21亮度平面运算基准测试，即人脸质量评分中的平均亮度及拉普拉斯方差
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class Nv21LumaBenchmark {
+
+    @Param({"640x480", "1280x720", "1920x1080"})
+    public String resolution;
+    /**
+     * 人脸框边长占画面高度的比例
+     */
+    @Param({"0.25", "0.6"})
+    public float faceRatio;
+
+    private byte[] nv21;
+    private int width;
+    private int height;
+    private int left;
+    private int top;
+    private int right;
+    private int bottom;
+
+    @Setup
+    public void setup() {
+        String[] size = resolution.split("x");
+        width = Integer.parseInt(size[0]);
+        height = Integer.parseInt(size[1]);
+        nv21 = new byte[width * height * 3 / 2];
+        new Random(0).nextBytes(nv21);
+        int faceSize = (int) (height * faceRatio);
+        left = (width - faceSize) / 2;
+        top = (height - faceSize) / 2;
+        right = left + faceSize;
+        bottom = top + faceSize;
+    }
+
+    @Benchmark
+    public float meanLuma() {
+        return FaceQualityScorer.meanLuma(nv21, width, height, left, top, right, bottom);
+    }
+
+    @Benchmark
+    public float laplacianVariance() {
+        return FaceQualityScorer.laplacianVariance(nv21, width, height, left, top, right, bottom);
+    }
+}
@@ -0,0 +1,67 @@
+package com.arcsoft.idcardveridemo.benchmark;
+
+import com.arcsoft.idcardveridemo.camera.PreviewSizeSelector;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PreviewSizeSelector}基准测试，尺寸列表取自常见设备的getSupportedPreviewSizes返回值
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PreviewSizeSelectorBenchmark {
+    /**
+     * 常见USB摄像头
+     */
+    private static final int[][] USB_CAMERA_SIZES = {
+            {640, 480}, {352, 288}, {320, 240}, {176, 144}, {160, 120}, {1280, 720}, {800, 600}
+    };
+    /**
+     * 常见手机及平板后置摄像头
+     */
+    private static final int[][] PHONE_CAMERA_SIZES = {
+            {1920, 1080}, {1440, 1080}, {1280, 960}, {1280, 720}, {1088, 1088}, {1024, 768}, {960, 720},
+            {960, 540}, {864, 480}, {800, 600}, {800, 480}, {720, 720}, {720, 480}, {640, 480},
+            {640, 360}, {480, 360}, {480, 320}, {352, 288}, {320, 240}, {240, 160}, {176, 144},
+            {2560, 1440}, {2304, 1728}, {2048, 1536}, {1920, 1440}, {1600, 1200}, {1600, 900}, {1280, 768}
+    };
+
+    @Param({"usb", "phone"})
+    public String sizeList;
+    @Param({"0", "90"})
+    public int additionalRotation;
+    @Param({"false", "true"})
+    public boolean specificSize;
+
+    private int[] widths;
+    private int[] heights;
+    private int count;
+
+    @Setup
+    public void setup() {
+        int[][] sizes = "usb".equals(sizeList) ? USB_CAMERA_SIZES : PHONE_CAMERA_SIZES;
+        count = sizes.length;
+        widths = new int[count];
+        heights = new int[count];
+        for (int i = 0; i < count; i++) {
+            widths[i] = sizes[i][0];
+            heights[i] = sizes[i][1];
+        }
+    }
+
+    @Benchmark
+    public int select() {
+        return PreviewSizeSelector.select(widths, heights, count, 1080, 1920,
+                specificSize ? 640 : 0, specificSize ? 480 : 0, additionalRotation);
+    }
+}
@@ -0,0 +1,70 @@
+package com.arcsoft.idcardveridemo.benchmark;
+
+import com.arcsoft.face.FaceFeature;
+import com.arcsoft.idcardveridemo.draw.face.EnginePool;
+import com.arcsoft.idcardveridemo.verify.Watchlist;
+import com.arcsoft.idcardveridemo.verify.WatchlistSearcher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link WatchlistSearcher}基准测试，名单规模从1k到100k，区间数即并行比对的引擎数。
+ * 比对使用{@link FakeFaceEngine}的点积实现，结果反映名单遍历、区间划分及合并的开销随规模的变化
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class WatchlistSearchBenchmark {
+    private static final int TOP_K = 5;
+
+    @Param({"1000", "10000", "100000"})
+    public int watchlistSize;
+    @Param({"1", "2", "4"})
+    public int partitions;
+
+    private WatchlistSearcher watchlistSearcher;
+    private FaceFeature probe;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        Watchlist watchlist = new Watchlist(FaceFeature.FEATURE_SIZE, watchlistSize);
+        for (int i = 0; i < watchlistSize; i++) {
+            watchlist.add(String.valueOf(i), FakeFaceEngine.randomFeature(random));
+        }
+        probe = FakeFaceEngine.randomFeature(random);
+        List<FakeFaceEngine> comparators = new ArrayList<>();
+        for (int i = 0; i < partitions; i++) {
+            comparators.add(new FakeFaceEngine.Builder().build());
+        }
+        watchlistSearcher = new WatchlistSearcher.Builder()
+                .watchlist(watchlist)
+                .comparatorPool(new EnginePool<>(comparators))
+                .partitionCount(partitions)
+                .topK(TOP_K)
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        watchlistSearcher.release();
+    }
+
+    @Benchmark
+    public List<WatchlistSearcher.Match> search() throws InterruptedException {
+        return watchlistSearcher.search(probe);
+    }
+}
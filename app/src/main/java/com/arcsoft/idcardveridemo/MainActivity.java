@@ -2,7 +2,6 @@ package com.arcsoft.idcardveridemo;
 
 import android.Manifest;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Color;
 import android.graphics.Point;
 import android.graphics.Rect;
@@ -10,12 +9,13 @@ import android.hardware.Camera;
 import android.media.MediaPlayer;
 import android.os.Bundle;
 import android.os.Environment;
-import android.os.Handler;
+import android.os.Process;
 import android.support.annotation.Nullable;
 import android.support.v7.app.AppCompatActivity;
 import android.view.TextureView;
 import android.view.View;
 import android.view.ViewTreeObserver;
+import android.widget.Button;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
 import android.widget.TextView;
@@ -28,32 +28,51 @@ import com.arcsoft.face.FaceInfo;
 import com.arcsoft.face.FaceSimilar;
 import com.arcsoft.face.LivenessInfo;
 import com.arcsoft.face.enums.CompareModel;
-import com.arcsoft.face.enums.DetectFaceOrientPriority;
 import com.arcsoft.face.enums.DetectMode;
 import com.arcsoft.idcardveridemo.camera.CameraHelper;
 import com.arcsoft.idcardveridemo.camera.CameraListener;
+import com.arcsoft.idcardveridemo.camera.Frame;
+import com.arcsoft.idcardveridemo.camera.ResolutionPolicy;
 import com.arcsoft.idcardveridemo.draw.DrawHelper;
-import com.arcsoft.idcardveridemo.draw.DrawInfo;
 import com.arcsoft.idcardveridemo.draw.FaceRectView;
+import com.arcsoft.idcardveridemo.draw.face.FaceDetectHelper;
+import com.arcsoft.idcardveridemo.draw.face.FaceDetectListener;
+import com.arcsoft.idcardveridemo.draw.face.FaceEngineAdapter;
 import com.arcsoft.idcardveridemo.draw.face.FaceHelper;
+import com.arcsoft.idcardveridemo.draw.face.EngineInitHelper;
+import com.arcsoft.idcardveridemo.draw.face.EnginePool;
 import com.arcsoft.idcardveridemo.draw.face.FaceListener;
+import com.arcsoft.idcardveridemo.draw.face.FaceQualityGate;
+import com.arcsoft.idcardveridemo.draw.face.FaceQualityScorer;
 import com.arcsoft.idcardveridemo.draw.face.RequestFeatureStatus;
-import com.arcsoft.imageutil.ArcSoftImageFormat;
-import com.arcsoft.imageutil.ArcSoftImageUtil;
-import com.arcsoft.imageutil.ArcSoftImageUtilError;
+import com.arcsoft.idcardveridemo.draw.face.TrackRegistry;
+import com.arcsoft.idcardveridemo.idcard.BatchEnrollHelper;
+import com.arcsoft.idcardveridemo.idcard.BatchEnrollListener;
+import com.arcsoft.idcardveridemo.idcard.BitmapPool;
+import com.arcsoft.idcardveridemo.idcard.FeatureStore;
+import com.arcsoft.idcardveridemo.idcard.IdCardIngestHelper;
+import com.arcsoft.idcardveridemo.idcard.IdCardIngestListener;
+import com.arcsoft.idcardveridemo.idcard.IdCardReadHelper;
+import com.arcsoft.idcardveridemo.idcard.IdCardReader;
+import com.arcsoft.idcardveridemo.idcard.SimulatedIdCardReader;
+import com.arcsoft.idcardveridemo.metrics.PipelineMetrics;
+import com.arcsoft.idcardveridemo.verify.MultiFrameDecider;
+import com.arcsoft.idcardveridemo.verify.VerifySession;
+import com.arcsoft.idcardveridemo.verify.Watchlist;
+import com.arcsoft.idcardveridemo.verify.WatchlistSearcher;
 import com.blankj.utilcode.util.ActivityUtils;
 import com.blankj.utilcode.util.AppUtils;
 import com.blankj.utilcode.util.LogUtils;
 import com.blankj.utilcode.util.PermissionUtils;
 import com.bumptech.glide.Glide;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 public class MainActivity extends AppCompatActivity implements ViewTreeObserver.OnGlobalLayoutListener {
 
@@ -62,10 +81,103 @@ public class MainActivity extends AppCompatActivity implements ViewTreeObserver.
     private static final int READ_DELAY = 5000;
     private static final int SOUND_DELAY = 500;
     private static final int RESTART_DELAY = 3000;
+    /**
+     * 预览缓冲区数量，预览回调、检测信箱、检测线程、质量择优、特征提取各持有一帧，留出余量保证相机始终有空闲缓冲区
+     */
+    private static final int PREVIEW_BUFFER_COUNT = 6;
+    /**
+     * 最远工作距离，单位米，预览分辨率只需保证该距离处人脸达到{@link #MIN_FACE_PIXELS}
+     */
+    private static final float WORKING_DISTANCE = 1.0f;
+    /**
+     * 工作距离处人脸的最小像素宽度
+     */
+    private static final int MIN_FACE_PIXELS = 80;
+    /**
+     * 每帧处理耗时预算，单位毫秒，持续超出时降低预览分辨率
+     */
+    private static final long FRAME_BUDGET = 66;
+    /**
+     * 送入特征提取的最低人脸质量得分
+     */
+    private static final float MIN_QUALITY_SCORE = 0.4f;
+    /**
+     * 人脸质量择优窗口，窗口内得分最高的帧送入特征提取
+     */
+    private static final long QUALITY_WINDOW = 150;
+    /**
+     * 人脸宽度达到该值时大小得分为满分，单位像素
+     */
+    private static final int QUALITY_MIN_FACE_SIZE = 100;
+    /**
+     * 预览数据特征提取请求的最大帧龄，排队超过该时长的请求直接丢弃
+     */
+    private static final long FR_MAX_FRAME_AGE = 300;
+    /**
+     * 是否在身份证数据到达前提前提取预览人脸特征
+     */
+    private static final boolean SPECULATIVE_EXTRACT = true;
+    /**
+     * 是否进行RGB活体检测，活体检测与特征提取同时进行，比对等待两者均完成
+     */
+    private static final boolean LIVENESS_ENABLED = true;
+    /**
+     * 提前提取的预览人脸特征有效期，过期后重新提取
+     */
+    private static final long LIVE_FEATURE_TTL = 2000;
+    /**
+     * 人脸离开画面超过该时长后从登记表中淘汰，单位毫秒
+     */
+    private static final long TRACK_TTL = 5000;
+    /**
+     * 特征提取引擎数量，每个引擎占用一个线程，取CPU核数的一半，最多4个
+     */
+    private static final int FR_ENGINE_COUNT = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
     /**
      * 比对阈值，推荐0.82，可根据实际需求修改
      */
     private static final double THRESHOLD = 0.82d;
+    /**
+     * 单次比对最多使用的预览帧数
+     */
+    private static final int COMPARE_MAX_FRAMES = 3;
+    /**
+     * 高置信度阈值，单帧分数达到该值立即通过
+     */
+    private static final float COMPARE_ACCEPT_SCORE = 0.9f;
+    /**
+     * 低置信度阈值，低于该值的帧数达到{@link #COMPARE_REJECT_FRAMES}时立即拒绝
+     */
+    private static final float COMPARE_REJECT_SCORE = 0.6f;
+    private static final int COMPARE_REJECT_FRAMES = 2;
+    /**
+     * 是否在引擎初始化后预热，使首次检测及特征提取不承担冷启动耗时
+     */
+    private static final boolean ENGINE_WARM_UP = true;
+    /**
+     * 销毁引擎前等待初始化结束的最长时间，单位毫秒
+     */
+    private static final long ENGINE_INIT_TIMEOUT = 5000;
+    /**
+     * 销毁引擎池前等待引擎归还的最长时间，单位毫秒，在主线程中等待，不宜过长
+     */
+    private static final long ENGINE_RELEASE_TIMEOUT = 1000;
+    /**
+     * 布控名单检索引擎数量，与特征提取引擎分开，检索不占用特征提取的引擎
+     */
+    private static final int WATCHLIST_ENGINE_COUNT = 2;
+    /**
+     * 布控名单检索返回的最多结果数
+     */
+    private static final int WATCHLIST_TOP_K = 3;
+    /**
+     * 布控名单命中阈值
+     */
+    private static final float WATCHLIST_THRESHOLD = 0.8f;
+    /**
+     * 批量录入引擎数量，录入时临时初始化，结束后销毁
+     */
+    private static final int ENROLL_ENGINE_COUNT = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
 
     private LinearLayout llCompare;
     private ImageView ivCompareResult;
@@ -76,13 +188,9 @@ public class MainActivity extends AppCompatActivity implements ViewTreeObserver.
     private FaceRectView faceRectView;
 
     /**
-     * 预览数据是否特征提取完成
-     */
-    private boolean isCurrentReady = false;
-    /**
-     * 身份证数据是否特征提取完成
+     * 人证比对会话状态机
      */
-    private boolean isIdCardReady = false;
+    private VerifySession verifySession;
     private static final String ROOT_PATH = Environment.getExternalStorageDirectory().getAbsolutePath();
     /**
      * 模拟身份证姓名，可根据实际名称修改
@@ -92,25 +200,146 @@ public class MainActivity extends AppCompatActivity implements ViewTreeObserver.
      * 模拟身份证图像数据路径,可根据实际路径修改
      */
     private static final String SAMPLE_FACE = ROOT_PATH + File.separator + "sample.jpg";
+    /**
+     * 身份证照片Bitmap复用池大小
+     */
+    private static final int ID_CARD_BITMAP_POOL_SIZE = 2;
+    /**
+     * 身份证照片缩略图最长边，单位像素
+     */
+    private static final int ID_CARD_THUMBNAIL_SIZE = 320;
+    /**
+     * 身份证人脸特征库文件名，位于应用私有目录
+     */
+    private static final String ID_FEATURE_STORE_FILE = "id_features.bin";
+    /**
+     * 身份证人脸特征库最多保存的特征数
+     */
+    private static final int ID_FEATURE_STORE_MAX_ENTRIES = 20000;
+    /**
+     * 身份证人脸特征库文件大小上限，每条记录约1.1KB
+     */
+    private static final long ID_FEATURE_STORE_MAX_FILE_SIZE = 32 * 1024 * 1024;
+    /**
+     * 批量录入特征库文件名，位于应用私有目录，不淘汰特征
+     */
+    private static final String ENROLL_FEATURE_STORE_FILE = "enroll_features.bin";
+    /**
+     * 批量录入特征库最多保存的特征数，超过后不再录入
+     */
+    private static final int ENROLL_FEATURE_STORE_MAX_ENTRIES = 50000;
+    /**
+     * 批量录入特征库文件大小上限，超过时只清除无效记录
+     */
+    private static final long ENROLL_FEATURE_STORE_MAX_FILE_SIZE = 64 * 1024 * 1024;
+    /**
+     * 布控名单特征库文件名，位于应用私有目录，由布控管理端下发，与录入的人员特征分开保存
+     */
+    private static final String WATCHLIST_FEATURE_STORE_FILE = "watchlist_features.bin";
+    /**
+     * 布控名单特征库最多保存的特征数
+     */
+    private static final int WATCHLIST_FEATURE_STORE_MAX_ENTRIES = 100000;
+    /**
+     * 布控名单特征库文件大小上限
+     */
+    private static final long WATCHLIST_FEATURE_STORE_MAX_FILE_SIZE = 128 * 1024 * 1024;
 
     /**
-     * 读卡线程
+     * 模拟读卡目录，放入"姓名_身份证号.jpg"格式的图片即模拟一次刷卡，可根据实际路径修改
+     */
+    private static final String SAMPLE_ID_CARD_DIR = ROOT_PATH + File.separator + "idcard";
+    /**
+     * 批量录入的照片目录，文件名格式为"姓名_身份证号.jpg"
+     */
+    private static final String ENROLL_DIR = ROOT_PATH + File.separator + "enroll";
+    /**
+     * 批量录入进度文件，中断后再次录入时跳过已录入的照片
+     */
+    private static final String ENROLL_PROGRESS_FILE = "enroll_progress.txt";
+    /**
+     * 各阶段耗时统计文件，位于应用私有目录，退出时追加写入
+     */
+    private static final String METRICS_FILE = "idcardveri_metrics.txt";
+    /**
+     * 耗时统计区间快照输出间隔，单位毫秒
+     */
+    private static final long METRICS_SNAPSHOT_PERIOD = 60 * 1000;
+    /**
+     * 各阶段耗时统计
      */
-    private ReadThread readThread;
+    private PipelineMetrics pipelineMetrics = new PipelineMetrics();
+
     /**
-     * 是否进行读卡
+     * 读卡工具类
      */
-    private boolean isRead = true;
+    private IdCardReadHelper idCardReadHelper;
     /**
      * 身份证姓名
      */
     private String name;
     /**
-     * 身份证图像数据
+     * 身份证号，用于读写身份证人脸特征库，模拟输入时为null
+     */
+    private volatile String idNumber;
+    /**
+     * 身份证人脸特征库，同一张身份证再次刷卡时直接读取特征
+     */
+    private FeatureStore idFeatureStore;
+    /**
+     * 批量录入的人员特征库，刷卡时身份证人脸特征库中不存在再从该库读取
+     */
+    private FeatureStore enrollFeatureStore;
+    /**
+     * 布控名单，引擎初始化后从布控名单特征库加载，预览人脸特征提取成功后在后台检索
+     */
+    private Watchlist watchlist = new Watchlist(FaceFeature.FEATURE_SIZE, 1024);
+    private volatile WatchlistSearcher watchlistSearcher;
+    /**
+     * 身份证照片缩略图，仅用于界面显示
      */
     private Bitmap bmp;
+    /**
+     * 身份证照片Bitmap复用池
+     */
+    private BitmapPool idCardBitmapPool = new BitmapPool(ID_CARD_BITMAP_POOL_SIZE);
+    private IdCardIngestHelper idCardIngestHelper;
 
-    private ConcurrentHashMap<Integer, Integer> requestFeatureStatusMap = new ConcurrentHashMap<>();
+    /**
+     * 人脸登记表，保存每个trackId的特征提取及活体检测状态、最新特征、活体结果及质量分，与faceHelper共用
+     */
+    private final TrackRegistry trackRegistry = new TrackRegistry.Builder()
+            .trackTtl(TRACK_TTL)
+            .featureTtl(LIVE_FEATURE_TTL)
+            .build();
+    /**
+     * 当前画面中最大人脸的trackId，没有人脸时为-1
+     */
+    private volatile int currentTrackId = -1;
+    /**
+     * 当前预览人脸特征对应的trackId
+     */
+    private volatile int faceFeatureTrackId = -1;
+    /**
+     * 人脸质量评分
+     */
+    private FaceQualityScorer faceQualityScorer = new FaceQualityScorer.Builder()
+            .minFaceSize(QUALITY_MIN_FACE_SIZE)
+            .build();
+    /**
+     * 人脸质量门限，只在检测线程中使用
+     */
+    private FaceQualityGate faceQualityGate;
+    /**
+     * 多帧比对决策
+     */
+    private MultiFrameDecider multiFrameDecider = new MultiFrameDecider.Builder()
+            .maxFrames(COMPARE_MAX_FRAMES)
+            .acceptScore(COMPARE_ACCEPT_SCORE)
+            .threshold((float) THRESHOLD)
+            .rejectScore(COMPARE_REJECT_SCORE)
+            .rejectFrames(COMPARE_REJECT_FRAMES)
+            .build();
     /**
      * 音频播放器
      */
@@ -118,19 +347,31 @@ public class MainActivity extends AppCompatActivity implements ViewTreeObserver.
     /**
      * 相机工具类
      */
-    private CameraHelper cameraHelper;
+    private volatile CameraHelper cameraHelper;
     /**
      * 画框工具类
      */
-    private DrawHelper drawHelper;
+    private volatile DrawHelper drawHelper;
     /**
      * 预览窗口大小
      */
     private Camera.Size previewSize;
 
-    private FaceHelper faceHelper;
-    private FaceFeature idFaceFeature;
-    private FaceFeature faceFeature;
+    private volatile FaceHelper faceHelper;
+    /**
+     * 人脸检测工具类，在独立线程中进行人脸检测
+     */
+    private volatile FaceDetectHelper faceDetectHelper;
+    private volatile FaceFeature idFaceFeature;
+    private volatile FaceFeature faceFeature;
+    /**
+     * 最近一次比对的决策结果，在进入{@link VerifySession.State#SHOWING_RESULT}前写入
+     */
+    private volatile MultiFrameDecider.Decision lastDecision;
+    /**
+     * 人证比对线程，比对需等待检测线程释放faceEngine，不在主线程中进行，避免每次比对阻塞界面一次检测的时间
+     */
+    private final ExecutorService compareExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "MainActivity-compare"));
     /**
      * 所需的所有权限信息
      */
@@ -141,20 +382,31 @@ public class MainActivity extends AppCompatActivity implements ViewTreeObserver.
             Manifest.permission.READ_EXTERNAL_STORAGE
     };
 
-    private Runnable readRunnable = () -> {
-        isRead = true;
-        isIdCardReady = false;
-        runOnUiThread(this::initCompareLayout);
-    };
-    private Handler readHandler = new Handler();
-
-    private Runnable restartRunnable = () -> runOnUiThread(this::initCompareLayout);
-    private Handler restartHandler = new Handler();
-
-    private Runnable soundRunnable = () -> runOnUiThread(() -> playSound(R.raw.look_screen));
-    private Handler soundHandler = new Handler();
     private FaceEngine faceEngine = new FaceEngine();
     private FaceEngine idFaceEngine = new FaceEngine();
+    /**
+     * 活体检测引擎，在活体检测线程中使用
+     */
+    private FaceEngine flEngine = new FaceEngine();
+    /**
+     * 特征提取引擎池，预览与身份证数据的特征提取均使用该引擎池
+     */
+    private EnginePool<FaceEngineAdapter> frEnginePool;
+    /**
+     * 布控名单检索引擎池
+     */
+    private EnginePool<FaceEngineAdapter> watchlistEnginePool;
+    /**
+     * 批量录入引擎池及工具类，录入期间有效
+     */
+    private EnginePool<FaceEngineAdapter> enrollEnginePool;
+    private EngineInitHelper enrollEngineInitHelper;
+    private BatchEnrollHelper batchEnrollHelper;
+    private Button btnBatchEnroll;
+    /**
+     * 引擎初始化工具类，激活、初始化及预热在后台进行，与相机打开同时进行
+     */
+    private EngineInitHelper engineInitHelper;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -162,7 +414,20 @@ public class MainActivity extends AppCompatActivity implements ViewTreeObserver.
         setContentView(R.layout.activity_main);
         initView();
         mediaPlayer = MediaPlayer.create(this, R.raw.look_screen);
+        initVerifySession();
+        idFeatureStore = new FeatureStore.Builder()
+                .file(new File(getFilesDir(), ID_FEATURE_STORE_FILE))
+                .maxEntries(ID_FEATURE_STORE_MAX_ENTRIES)
+                .maxFileSize(ID_FEATURE_STORE_MAX_FILE_SIZE)
+                .build();
+        enrollFeatureStore = new FeatureStore.Builder()
+                .file(new File(getFilesDir(), ENROLL_FEATURE_STORE_FILE))
+                .maxEntries(ENROLL_FEATURE_STORE_MAX_ENTRIES)
+                .maxFileSize(ENROLL_FEATURE_STORE_MAX_FILE_SIZE)
+                .evictable(false)
+                .build();
         initIdReader();
+        pipelineMetrics.startPeriodicSnapshot(METRICS_SNAPSHOT_PERIOD, snapshots -> LogUtils.dTag(TAG, "pipeline metrics: " + snapshots));
     }
 
     @Override
@@ -184,13 +449,21 @@ public class MainActivity extends AppCompatActivity implements ViewTreeObserver.
 
     @Override
     protected void onDestroy() {
+        releaseBatchEnroll();
+        //先停止相机及检测线程、读卡线程，不再有线程使用faceHelper及引擎后再销毁引擎
+        unInitCamera();
+        unInitReader();
         unInitEngine();
         if (mediaPlayer != null && mediaPlayer.isPlaying()) {
             mediaPlayer.stop();
             mediaPlayer.release();
         }
-        unInitReader();
-        unInitCamera();
+        LogUtils.dTag(TAG, "idFeatureStore: " + idFeatureStore);
+        idFeatureStore.close();
+        LogUtils.dTag(TAG, "enrollFeatureStore: " + enrollFeatureStore);
+        enrollFeatureStore.close();
+        verifySession.release();
+        pipelineMetrics.stopPeriodicSnapshot(new File(getFilesDir(), METRICS_FILE));
         super.onDestroy();
     }
 
@@ -202,47 +475,180 @@ public class MainActivity extends AppCompatActivity implements ViewTreeObserver.
         tvCompareTip = findViewById(R.id.tv_compare_tip);
         textureView = findViewById(R.id.texture_view_preview);
         faceRectView = findViewById(R.id.face_rect_view);
+        btnBatchEnroll = findViewById(R.id.btn_batch_enroll);
         textureView.getViewTreeObserver().addOnGlobalLayoutListener(this);
     }
 
     /**
-     * 引擎初始化
+     * 引擎初始化，激活、各引擎初始化及预热均在后台并行进行，立即返回
      */
     private void initEngine() {
-        int result = faceEngine.init(this, DetectMode.ASF_DETECT_MODE_VIDEO, DetectFaceOrientPriority.ASF_OP_ALL_OUT, 16, 1,
-                FaceEngine.ASF_FACE_DETECT | FaceEngine.ASF_FACE_RECOGNITION);
-        idFaceEngine.init(this, DetectMode.ASF_DETECT_MODE_IMAGE, DetectFaceOrientPriority.ASF_OP_ALL_OUT, 16, 1,
-                FaceEngine.ASF_FACE_DETECT | FaceEngine.ASF_FACE_RECOGNITION);
-        LogUtils.dTag(TAG, "initResult: " + result);
-        if (result == ErrorInfo.MERR_ASF_NOT_ACTIVATED) {
-            Executors.newSingleThreadExecutor().execute(() -> {
-                int activeResult = FaceEngine.active(MainActivity.this, Constants.APP_ID, Constants.SDK_KEY);
-                runOnUiThread(() -> {
-                    LogUtils.dTag(TAG, "activeResult: " + activeResult);
-                    if (activeResult == ErrorInfo.MOK) {
-                        int initResult = faceEngine.init(this, DetectMode.ASF_DETECT_MODE_VIDEO, DetectFaceOrientPriority.ASF_OP_ALL_OUT, 16, 1,
-                                FaceEngine.ASF_FACE_DETECT | FaceEngine.ASF_FACE_RECOGNITION);
-                        idFaceEngine.init(this, DetectMode.ASF_DETECT_MODE_IMAGE, DetectFaceOrientPriority.ASF_OP_ALL_OUT, 16, 1,
-                                FaceEngine.ASF_FACE_DETECT | FaceEngine.ASF_FACE_RECOGNITION);
-                        LogUtils.dTag(TAG, "initResult: " + initResult);
-                        if (initResult != ErrorInfo.MOK) {
-                            toast(getString(R.string.tip_init_fail, initResult));
-                        }
-                    } else {
-                        toast(getString(R.string.tip_active_fail, activeResult));
+        List<FaceEngineAdapter> frEngines = new ArrayList<>();
+        for (int i = 0; i < FR_ENGINE_COUNT; i++) {
+            frEngines.add(new FaceEngineAdapter(new FaceEngine()));
+        }
+        frEnginePool = new EnginePool<>(frEngines);
+        List<FaceEngineAdapter> watchlistEngines = new ArrayList<>();
+        for (int i = 0; i < WATCHLIST_ENGINE_COUNT; i++) {
+            watchlistEngines.add(new FaceEngineAdapter(new FaceEngine()));
+        }
+        watchlistEnginePool = new EnginePool<>(watchlistEngines);
+        EngineInitHelper.Builder builder = new EngineInitHelper.Builder()
+                .context(this)
+                .activeKey(Constants.APP_ID, Constants.SDK_KEY)
+                .engine(faceEngine, DetectMode.ASF_DETECT_MODE_VIDEO)
+                .engine(idFaceEngine, DetectMode.ASF_DETECT_MODE_IMAGE)
+                .warmUp(ENGINE_WARM_UP)
+                .engineInitListener((result, cost) -> {
+                    //在初始化线程中读取布控名单，不占用主线程
+                    if (result == ErrorInfo.MOK) {
+                        loadWatchlist();
                     }
+                    runOnUiThread(() -> {
+                        LogUtils.dTag(TAG, "initResult: " + result + ", cost: " + cost + "ms, frEngines: " + frEnginePool.size());
+                        if (result == ErrorInfo.MOK) {
+                            initIdCardIngest();
+                            initWatchlistSearcher();
+                        } else if (result == ErrorInfo.MERR_ASF_ACTIVATION_FAIL || result == ErrorInfo.MERR_ASF_NOT_ACTIVATED) {
+                            toast(getString(R.string.tip_active_fail, result));
+                        } else {
+                            toast(getString(R.string.tip_init_fail, result));
+                        }
+                    });
                 });
-            });
-        } else if (result != ErrorInfo.MOK) {
-            toast(getString(R.string.tip_init_fail, result));
+        for (FaceEngineAdapter frEngine : frEngines) {
+            builder.engine(frEngine.getFaceEngine(), DetectMode.ASF_DETECT_MODE_VIDEO);
+        }
+        if (LIVENESS_ENABLED) {
+            builder.engine(flEngine, DetectMode.ASF_DETECT_MODE_VIDEO, FaceEngine.ASF_LIVENESS);
         }
+        //检索引擎只做特征比对，使用IMAGE模式即可
+        for (FaceEngineAdapter watchlistEngine : watchlistEngines) {
+            builder.engine(watchlistEngine.getFaceEngine(), DetectMode.ASF_DETECT_MODE_IMAGE);
+        }
+        engineInitHelper = builder.build();
+        engineInitHelper.start();
+    }
+
+    /**
+     * 从布控名单特征库加载名单，名单id为特征库生成的显示id，不含身份证号明文
+     */
+    private void loadWatchlist() {
+        FeatureStore watchlistFeatureStore = new FeatureStore.Builder()
+                .file(new File(getFilesDir(), WATCHLIST_FEATURE_STORE_FILE))
+                .maxEntries(WATCHLIST_FEATURE_STORE_MAX_ENTRIES)
+                .maxFileSize(WATCHLIST_FEATURE_STORE_MAX_FILE_SIZE)
+                .evictable(false)
+                .build();
+        int count = watchlistFeatureStore.forEach(watchlist::add);
+        watchlistFeatureStore.close();
+        LogUtils.dTag(TAG, "loadWatchlist: " + count + " features");
+    }
+
+    /**
+     * 布控名单检索初始化，命中时提示
+     */
+    private void initWatchlistSearcher() {
+        watchlistSearcher = new WatchlistSearcher.Builder()
+                .watchlist(watchlist)
+                .comparatorPool(watchlistEnginePool)
+                .topK(WATCHLIST_TOP_K)
+                .minScore(WATCHLIST_THRESHOLD)
+                .pipelineMetrics(pipelineMetrics)
+                .watchlistListener((requestId, matches, cost) -> {
+                    if (matches.isEmpty()) {
+                        return;
+                    }
+                    LogUtils.wTag(TAG, "watchlist hit, trackId: " + requestId + ", matches: " + matches + ", cost: " + TimeUnit.NANOSECONDS.toMillis(cost) + "ms");
+                    runOnUiThread(() -> toast(getString(R.string.tip_watchlist_hit, matches.get(0).getId())));
+                })
+                .build();
+    }
+
+    /**
+     * @return 引擎是否已初始化并预热完毕
+     */
+    private boolean isEngineReady() {
+        return engineInitHelper != null && engineInitHelper.isReady();
     }
 
     /**
      * 销毁引擎
      */
     private void unInitEngine() {
-        faceEngine.unInit();
+        //等待后台初始化结束后再销毁，避免与初始化同时操作引擎；超时未结束时由初始化线程在结束后销毁
+        boolean enginesReleasable = engineInitHelper == null
+                || engineInitHelper.release(ENGINE_INIT_TIMEOUT, TimeUnit.MILLISECONDS);
+        if (idCardIngestHelper != null) {
+            idCardIngestHelper.release();
+            idCardIngestHelper = null;
+        }
+        if (faceHelper != null) {
+            LogUtils.dTag(TAG, "frEnginePool: " + frEnginePool);
+            LogUtils.dTag(TAG, "fr high lane: " + faceHelper.getLaneStats(FaceHelper.Priority.HIGH)
+                    + ", low lane: " + faceHelper.getLaneStats(FaceHelper.Priority.LOW));
+            faceHelper.release();
+            faceHelper = null;
+        }
+        if (watchlistSearcher != null) {
+            watchlistSearcher.release();
+            watchlistSearcher = null;
+        }
+        //等待进行中的比对结束后再销毁faceEngine
+        compareExecutor.shutdownNow();
+        try {
+            if (!compareExecutor.awaitTermination(ENGINE_RELEASE_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                LogUtils.wTag(TAG, "unInitEngine: compare not finished");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!enginesReleasable) {
+            LogUtils.wTag(TAG, "unInitEngine: engine init not finished, engines will be unInit by init thread");
+            return;
+        }
+        //比对等操作可能仍在使用引擎
+        synchronized (faceEngine) {
+            faceEngine.unInit();
+        }
+        //活体检测线程可能仍在使用引擎
+        synchronized (flEngine) {
+            flEngine.unInit();
+        }
+        unInitEnginePool(frEnginePool);
+        unInitEnginePool(watchlistEnginePool);
+    }
+
+    /**
+     * 租用所有引擎，确保没有正在进行的特征提取或比对后再销毁；
+     * 在主线程中调用，等待超时的引擎可能仍在使用，跳过销毁，避免ANR
+     */
+    private void unInitEnginePool(EnginePool<FaceEngineAdapter> enginePool) {
+        if (enginePool == null) {
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ENGINE_RELEASE_TIMEOUT);
+        List<FaceEngineAdapter> idleEngines = new ArrayList<>(enginePool.size());
+        for (int i = 0; i < enginePool.size(); i++) {
+            FaceEngineAdapter engine;
+            try {
+                engine = enginePool.acquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (engine == null) {
+                break;
+            }
+            idleEngines.add(engine);
+        }
+        if (idleEngines.size() < enginePool.size()) {
+            LogUtils.wTag(TAG, "unInitEnginePool: " + (enginePool.size() - idleEngines.size())
+                    + " engine(s) still in use, skip unInit, " + enginePool);
+        }
+        for (FaceEngineAdapter engine : idleEngines) {
+            engine.getFaceEngine().unInit();
+        }
     }
 
     /**
@@ -263,38 +669,125 @@ public class MainActivity extends AppCompatActivity implements ViewTreeObserver.
             }
 
             @Override
-            public void onFaceFeatureInfoGet(@Nullable FaceFeature faceFeature, Integer requestId, Integer errorCode, long frTime, byte[] nv21) {
+            public void onFaceFeatureInfoGet(@Nullable FaceFeature faceFeature, Integer requestId, Integer errorCode, long frTime) {
                 //特征提取失败 将比对状态置为失败
                 if (ErrorInfo.MOK != errorCode) {
-                    requestFeatureStatusMap.put(requestId, RequestFeatureStatus.FAILED);
+                    //身份证照片提取失败（包括排队被拒绝或取消）时不会开始会话，需恢复读卡，否则读卡线程一直暂停
+                    if (requestId == -2) {
+                        LogUtils.dTag(TAG, "idCard feature extract failed: " + errorCode);
+                        resumeRead();
+                        return;
+                    }
+                    trackRegistry.setFeatureStatus(requestId, RequestFeatureStatus.FAILED);
                     return;
                 }
                 //requestId 为-2则为身份证数据
                 if (requestId == -2) {
-                    isIdCardReady = true;
-                    //由于接口变更feature不能在引擎内存储 所以用全局变量进行存储
-                    idFaceFeature = faceFeature;
-                    restartHandler.removeCallbacks(restartRunnable);
-                    readHandler.postDelayed(readRunnable, 5000);
-                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                    bmp.compress(Bitmap.CompressFormat.PNG, 100, baos);
-                    runOnUiThread(() -> {
-                        Glide.with(MainActivity.this).load(bmp).into(ivIdCard);
-                        compare();
-                    });
+                    onIdFeatureReady(faceFeature, bmp);
+                    //比对开始后再写入特征库，不占用比对前的时间
+                    String number = idNumber;
+                    if (number != null) {
+                        idFeatureStore.put(number, faceFeature);
+                    }
                 } else {
-                    //由于接口变更feature不能在引擎内存储 所以用全局变量进行存储
-                    MainActivity.this.faceFeature = faceFeature;
-                    isCurrentReady = true;
-                    runOnUiThread(() -> {
-                        compare();
-                    });
+                    trackRegistry.putFeature(requestId, faceFeature);
+                    trackRegistry.setFeatureStatus(requestId, RequestFeatureStatus.SUCCEED);
+                    //布控名单检索在后台进行，与1:1比对同时执行
+                    WatchlistSearcher searcher = watchlistSearcher;
+                    if (searcher != null && watchlist.size() > 0) {
+                        searcher.searchAsync(requestId, faceFeature);
+                    }
+                    //身份证数据未就绪时仅缓存特征，待身份证特征提取完成后再比对；活体结果未就绪时由活体结果触发比对
+                    VerifySession.Snapshot session = verifySession.getSnapshot();
+                    if (session.getState() != VerifySession.State.CARD_READY || requestId != currentTrackId || !isLivenessDone(requestId)) {
+                        return;
+                    }
+                    onLiveFeatureReady(session.getSessionId(), requestId, faceFeature);
                 }
             }
 
             @Override
             public void onFaceLivenessInfoGet(@Nullable LivenessInfo livenessInfo, Integer requestId, Integer errorCode) {
-                //此处为活体结果，这次暂不涉及活体
+                int liveness = livenessInfo == null ? LivenessInfo.UNKNOWN : livenessInfo.getLiveness();
+                //未能判断（人脸过小、角度过大等）时视为失败，由下一个择优帧重新检测
+                if (errorCode != ErrorInfo.MOK || (liveness != LivenessInfo.ALIVE && liveness != LivenessInfo.NOT_ALIVE)) {
+                    trackRegistry.setLivenessStatus(requestId, RequestFeatureStatus.FAILED);
+                    return;
+                }
+                trackRegistry.setLiveness(requestId, liveness);
+                trackRegistry.setLivenessStatus(requestId, RequestFeatureStatus.SUCCEED);
+                //特征已先于活体结果就绪时由此处触发比对
+                VerifySession.Snapshot session = verifySession.getSnapshot();
+                if (session.getState() != VerifySession.State.CARD_READY || requestId != currentTrackId) {
+                    return;
+                }
+                FaceFeature cachedFeature = trackRegistry.getFreshFeature(requestId);
+                if (cachedFeature != null) {
+                    onLiveFeatureReady(session.getSessionId(), requestId, cachedFeature);
+                }
+            }
+        };
+
+        faceQualityGate = new FaceQualityGate(MIN_QUALITY_SCORE, QUALITY_WINDOW, new FaceQualityGate.Callback() {
+            @Override
+            public void onBestFrame(Frame frame, FaceInfo faceInfo, int trackId, float score) {
+                FaceHelper helper = faceHelper;
+                if (helper == null) {
+                    return;
+                }
+                //faceHelper持有该帧直到特征提取及活体检测结束，无需拷贝，两者同时进行
+                trackRegistry.setQualityScore(trackId, score);
+                if (needsFeature(trackId)) {
+                    trackRegistry.setFeatureStatus(trackId, RequestFeatureStatus.SEARCHING);
+                    helper.requestFaceFeature(frame, faceInfo, trackId);
+                }
+                if (needsLiveness(trackId)) {
+                    trackRegistry.setLivenessStatus(trackId, RequestFeatureStatus.SEARCHING);
+                    helper.requestFaceLiveness(frame, faceInfo, trackId);
+                }
+            }
+        });
+
+        FaceDetectListener faceDetectListener = new FaceDetectListener() {
+            @Override
+            public void onFaceDetected(Frame frame, List<FaceInfo> faceInfoList, int errorCode) {
+                //告知faceHelper当前画面中的人脸，取消已离开人脸的特征提取请求，并刷新登记表中人脸的最后出现时间
+                if (errorCode == ErrorInfo.MOK && faceHelper != null) {
+                    faceHelper.refreshTrackId(faceInfoList);
+                }
+                //人证比对场景下只有最大人脸有效，因此直接取第一个人脸即可，若有其他场景可以自行调整
+                if (errorCode != ErrorInfo.MOK || faceInfoList.size() == 0) {
+                    currentTrackId = -1;
+                    faceQualityGate.reset();
+                    if (faceRectView != null) {
+                        faceRectView.clearFaceInfo();
+                    }
+                    return;
+                }
+                Rect rect = faceInfoList.get(0).getRect();
+                if (faceRectView != null && drawHelper != null && rect != null) {
+                    drawHelper.draw(faceRectView, rect, null, Color.YELLOW);
+                }
+                //提前提取模式下身份证数据到达前即开始提取特征，否则等待身份证数据准备完毕后才开始对Camera的数据进行特征提取
+                //并根据trackId防止重复提取
+                int trackId = faceInfoList.get(0).getFaceId();
+                currentTrackId = trackId;
+                if ((SPECULATIVE_EXTRACT || verifySession.getState() == VerifySession.State.CARD_READY) && rect != null && faceHelper != null && cameraHelper != null) {
+                    //特征或活体结果缺失、失败或过期时重新请求
+                    if (needsFeature(trackId) || needsLiveness(trackId)) {
+                        //只有质量达标的帧才会进入择优窗口，窗口结束时得分最高的帧送入特征提取
+                        float score = faceQualityScorer.score(frame.getData(), frame.getWidth(), frame.getHeight(), rect);
+                        faceQualityGate.offer(trackId, frame, faceInfoList.get(0), score);
+                    }
+                }
+            }
+
+            @Override
+            public void onFrameProcessed(long cost) {
+                CameraHelper helper = cameraHelper;
+                if (helper != null) {
+                    helper.reportFrameCost(cost);
+                }
             }
         };
 
@@ -308,41 +801,40 @@ public class MainActivity extends AppCompatActivity implements ViewTreeObserver.
                         textureView.getWidth(), textureView.getHeight(), displayOrientation,
                         cameraId, isMirror, horizontalMirror, verticalMirror);
 
-                faceHelper = new FaceHelper.Builder()
-                        .frEngine(faceEngine)
-                        .previewSize(previewSize)
-                        .faceListener(faceListener)
-                        .frQueueSize(5)
-                        .build();
+                if (faceHelper == null) {
+                    faceHelper = new FaceHelper.Builder()
+                            .frEnginePool(frEnginePool)
+                            .previewSize(previewSize)
+                            .faceListener(faceListener)
+                            .frQueueSize(5)
+                            .frMaxFrameAge(FR_MAX_FRAME_AGE)
+                            .flEngine(LIVENESS_ENABLED ? flEngine : null)
+                            .flQueueSize(2)
+                            .pipelineMetrics(pipelineMetrics)
+                            .trackRegistry(trackRegistry)
+                            .build();
+                }
+                if (faceDetectHelper == null) {
+                    faceDetectHelper = new FaceDetectHelper.Builder()
+                            .ftEngine(faceEngine)
+                            .faceDetectListener(faceDetectListener)
+                            .threadPriority(Process.THREAD_PRIORITY_DISPLAY)
+                            .pipelineMetrics(pipelineMetrics)
+                            .build();
+                    faceDetectHelper.start();
+                }
             }
 
 
             @Override
-            public void onPreview(byte[] nv21, Camera camera) {
-                if (faceRectView != null) {
-                    faceRectView.clearFaceInfo();
-                }
-                if (nv21 == null) {
+            public void onPreview(Frame frame, Camera camera) {
+                FaceDetectHelper detectHelper = faceDetectHelper;
+                //引擎与相机同时初始化，引擎就绪前的预览帧直接丢弃
+                if (detectHelper == null || !isEngineReady()) {
                     return;
                 }
-                List<FaceInfo> faceInfoList = new ArrayList<>();
-                int ftResult = faceEngine.detectFaces(nv21, previewSize.width, previewSize.height, FaceEngine.CP_PAF_NV21, faceInfoList);
-                //人证比对场景下只有最大人脸有效，因此直接取第一个人脸即可，若有其他场景可以自行调整
-                if (ftResult == ErrorInfo.MOK && faceInfoList.size() > 0) {
-                    Rect rect = faceInfoList.get(0).getRect();
-                    if (faceRectView != null && drawHelper != null && rect != null) {
-                        drawHelper.draw(faceRectView, new DrawInfo(drawHelper.adjustRect(rect), "", Color.YELLOW));
-                    }
-                    //等待身份证数据准备完毕后，才开始对Camera的数据进行特征提取 并根据trackId防止重复提取
-                    int trackId = faceInfoList.get(0).getFaceId();
-                    if (isIdCardReady && requestFeatureStatusMap != null) {
-                        //若一个人脸提取失败则进行重试
-                        if (requestFeatureStatusMap.get(trackId) == null || requestFeatureStatusMap.get(trackId) == RequestFeatureStatus.FAILED) {
-                            requestFeatureStatusMap.put(trackId, RequestFeatureStatus.SEARCHING);
-                            faceHelper.requestFaceFeature(nv21, faceInfoList.get(0), previewSize.width, previewSize.height, FaceEngine.CP_PAF_NV21, faceInfoList.get(0).getFaceId());
-                        }
-                    }
-                }
+                //人脸检测在检测线程中进行，信箱持有该帧直到检测结束或被新帧替换
+                detectHelper.offer(frame);
             }
 
             @Override
@@ -371,6 +863,16 @@ public class MainActivity extends AppCompatActivity implements ViewTreeObserver.
                 .isMirror(isMirror)
                 .previewOn(textureView)
                 .cameraListener(cameraListener)
+                .previewBufferCount(PREVIEW_BUFFER_COUNT)
+                //相机在后台线程中打开，onResume时不阻塞UI线程
+                .openAsync(true)
+                //选择满足工作距离处人脸像素要求的最小分辨率，并按处理耗时自动升降
+                .resolutionPolicy(new ResolutionPolicy.Builder()
+                        .workingDistance(WORKING_DISTANCE)
+                        .minFacePixels(MIN_FACE_PIXELS)
+                        .adaptive(true)
+                        .frameBudget(FRAME_BUDGET)
+                        .build())
 //                .specificPreviewSize(new Point(1280, 720))
                 .build();
         //相机工具类初始化
@@ -382,21 +884,37 @@ public class MainActivity extends AppCompatActivity implements ViewTreeObserver.
      * 销毁相机
      */
     private void unInitCamera() {
+        //先关闭相机，相机线程不再回调预览数据后再释放检测线程
         if (cameraHelper != null) {
             cameraHelper.release();
             cameraHelper = null;
         }
+        if (faceDetectHelper != null) {
+            faceDetectHelper.release();
+            faceDetectHelper = null;
+        }
     }
 
     /**
      * 初始化读卡器并启动读卡线程
      */
     private void initIdReader() {
-        int initResult = -1;
-        // TODO: 初始化读卡器，初始化成功后启动读卡线程，默认initResult为0代表初始化成功
-        if (initResult == 0) {
-            readThread = new ReadThread();
-            readThread.start();
+        //演示默认使用SimulatedIdCardReader，从样例目录读取照片模拟读卡；
+        //接入读卡器硬件时实现IdCardReader（init/read/release），通过IdCardReadHelper.Builder.idCardReader(...)传入即可，其余流程不变
+        idCardReadHelper = new IdCardReadHelper.Builder()
+                .idCardReader(new SimulatedIdCardReader(new File(SAMPLE_ID_CARD_DIR), idCardBitmapPool))
+                .idCardReadListener(idCardInfo -> {
+                    //身份证姓名拷贝，照片交由后台处理
+                    name = idCardInfo.getName();
+                    idNumber = idCardInfo.getIdNumber();
+                    inputIdCard(idCardInfo.getPhoto());
+                })
+                .pipelineMetrics(pipelineMetrics)
+                .build();
+        int initResult = idCardReadHelper.init();
+        LogUtils.dTag(TAG, "idCardReader initResult: " + initResult);
+        if (initResult == IdCardReader.CODE_SUCCESS) {
+            idCardReadHelper.start();
         }
     }
 
@@ -404,11 +922,19 @@ public class MainActivity extends AppCompatActivity implements ViewTreeObserver.
      * 关闭读卡器及停止读卡线程
      */
     private void unInitReader() {
-        if (readThread != null) {
-            readThread.interrupt();
-            readThread = null;
+        if (idCardReadHelper != null) {
+            idCardReadHelper.release();
+            idCardReadHelper = null;
+        }
+    }
+
+    /**
+     * 恢复读卡，读卡成功后读卡线程会自动暂停
+     */
+    private void resumeRead() {
+        if (idCardReadHelper != null) {
+            idCardReadHelper.resume();
         }
-        // TODO: 关闭读卡器
     }
 
     private void playSound(int soundRes) {
@@ -423,28 +949,181 @@ public class MainActivity extends AppCompatActivity implements ViewTreeObserver.
     private int tryTime = 0;
 
     /**
-     * 比对接口，身份证数据与预览数据都提取人脸特征成功后可进行人证特征比对
+     * 初始化人证比对会话，界面随会话状态切换更新
+     */
+    private void initVerifySession() {
+        verifySession = new VerifySession.Builder()
+                .verifySessionListener((previous, current) -> {
+                    switch (current.getState()) {
+                        case CARD_PENDING:
+                            //超时或结果显示结束，恢复读卡并回到初始界面
+                            if (previous.getState() != VerifySession.State.SHOWING_RESULT) {
+                                LogUtils.dTag(TAG, "verify session timeout: " + previous);
+                            }
+                            resumeRead();
+                            runOnUiThread(this::initCompareLayout);
+                            break;
+                        case CARD_READY:
+                            //多帧比对重试时保持比对中界面
+                            if (previous.getState() != VerifySession.State.COMPARING) {
+                                runOnUiThread(() -> showTip(R.mipmap.look_camera));
+                            }
+                            break;
+                        case COMPARING:
+                            runOnUiThread(() -> showTip(R.mipmap.comparing));
+                            break;
+                        case SHOWING_RESULT:
+                            LogUtils.dTag(TAG, "verify session finished: " + current);
+                            pipelineMetrics.record(PipelineMetrics.Stage.SESSION, current.getStateTime(VerifySession.State.SHOWING_RESULT)
+                                    - current.getStateTime(VerifySession.State.CARD_READY));
+                            MultiFrameDecider.Decision decision = lastDecision;
+                            runOnUiThread(() -> showCompareResult(decision));
+                            resumeRead();
+                            break;
+                        default:
+                            break;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * 身份证特征就绪，开始比对会话
+     *
+     * @param feature   身份证人脸特征
+     * @param thumbnail 身份证照片，用于界面显示
      */
-    private void compare() {
-        if (!isIdCardReady) {
+    private void onIdFeatureReady(FaceFeature feature, Bitmap thumbnail) {
+        //由于接口变更feature不能在引擎内存储 所以用全局变量进行存储
+        idFaceFeature = feature;
+        multiFrameDecider.reset();
+        runOnUiThread(() -> Glide.with(MainActivity.this).load(thumbnail).into(ivIdCard));
+        VerifySession.Snapshot session = verifySession.startSession();
+        //比对进行中，丢弃本次身份证数据
+        if (session == null) {
+            resumeRead();
             return;
         }
-        if (!isCurrentReady) {
-            ivTip.setBackgroundResource(R.mipmap.look_camera);
-            ivTip.setVisibility(View.VISIBLE);
-            llCompare.setVisibility(View.GONE);
-            soundHandler.postDelayed(soundRunnable, SOUND_DELAY);
+        long sessionId = session.getSessionId();
+        //身份证就绪后一段时间内未完成比对则回到等待身份证状态
+        verifySession.scheduleTimeout(sessionId, READ_DELAY, VerifySession.State.CARD_PENDING,
+                VerifySession.State.CARD_READY, VerifySession.State.LIVE_READY);
+        verifySession.schedule(sessionId, VerifySession.State.CARD_READY, SOUND_DELAY,
+                () -> runOnUiThread(() -> playSound(R.raw.look_screen)));
+        //若已提前提取到当前人脸的特征及活体结果，可直接进行比对
+        int trackId = currentTrackId;
+        FaceFeature cachedFeature = trackRegistry.getFreshFeature(trackId);
+        if (cachedFeature != null && isLivenessDone(trackId)) {
+            onLiveFeatureReady(sessionId, trackId, cachedFeature);
+        }
+    }
+
+    /**
+     * @return 人脸特征是否需要提取，未提取、失败、待重试或已过期时需要
+     */
+    private boolean needsFeature(int trackId) {
+        int status = trackRegistry.getFeatureStatus(trackId);
+        //已提取的特征过期后重新提取，保证缓存的特征是最近的
+        if (status == RequestFeatureStatus.SUCCEED) {
+            return !trackRegistry.isFeatureFresh(trackId);
+        }
+        return status == RequestFeatureStatus.NONE || status == RequestFeatureStatus.FAILED || status == RequestFeatureStatus.TO_RETRY;
+    }
+
+    /**
+     * @return 活体检测是否需要进行，同一人脸得到结果后不再重复检测
+     */
+    private boolean needsLiveness(int trackId) {
+        if (!LIVENESS_ENABLED) {
+            return false;
+        }
+        int status = trackRegistry.getLivenessStatus(trackId);
+        return status == RequestFeatureStatus.NONE || status == RequestFeatureStatus.FAILED || status == RequestFeatureStatus.TO_RETRY;
+    }
+
+    /**
+     * @return 活体检测是否已得到结果，未开启活体检测时始终为true
+     */
+    private boolean isLivenessDone(int trackId) {
+        if (!LIVENESS_ENABLED) {
+            return true;
+        }
+        int liveness = trackRegistry.getLiveness(trackId);
+        return liveness == LivenessInfo.ALIVE || liveness == LivenessInfo.NOT_ALIVE;
+    }
+
+    /**
+     * 预览人脸特征就绪，身份证特征已就绪时进入比对
+     *
+     * @param sessionId   会话id
+     * @param trackId     人脸trackId
+     * @param faceFeature 人脸特征
+     */
+    private void onLiveFeatureReady(long sessionId, int trackId, FaceFeature faceFeature) {
+        //只有切换成功的线程写入特征，避免并发到达的特征互相覆盖
+        if (verifySession.transition(sessionId, VerifySession.State.CARD_READY, VerifySession.State.LIVE_READY)) {
+            this.faceFeature = faceFeature;
+            faceFeatureTrackId = trackId;
+            try {
+                compareExecutor.execute(() -> compare(sessionId));
+            } catch (RejectedExecutionException e) {
+                //页面销毁中，放弃本次比对
+                LogUtils.dTag(TAG, "compare rejected, sessionId: " + sessionId);
+            }
+        }
+    }
+
+    /**
+     * 比对接口，身份证数据与预览数据都提取人脸特征成功后可进行人证特征比对，在比对线程中执行，结果由会话状态切换通知界面
+     *
+     * @param sessionId 会话id
+     */
+    private void compare(long sessionId) {
+        if (!verifySession.transition(sessionId, VerifySession.State.LIVE_READY, VerifySession.State.COMPARING)) {
             return;
         }
-        soundHandler.removeCallbacks(soundRunnable);
-        ivTip.setBackgroundResource(R.mipmap.comparing);
+        int trackId = faceFeatureTrackId;
+        MultiFrameDecider.Decision decision;
+        if (LIVENESS_ENABLED && trackRegistry.getLiveness(trackId) != LivenessInfo.ALIVE) {
+            //非活体直接判定不通过，不再比对；清除结果使下次比对重新检测活体
+            LogUtils.wTag(TAG, "compare: not alive, trackId: " + trackId);
+            trackRegistry.setLiveness(trackId, LivenessInfo.UNKNOWN);
+            trackRegistry.setLivenessStatus(trackId, RequestFeatureStatus.TO_RETRY);
+            decision = MultiFrameDecider.Decision.FAIL;
+        } else {
+            //人证特征比对接口，检测线程同时在使用faceEngine，需加锁
+            FaceSimilar compareResult = new FaceSimilar();
+            synchronized (faceEngine) {
+                long compareStartTime = System.nanoTime();
+                faceEngine.compareFaceFeature(idFaceFeature, faceFeature, CompareModel.ID_CARD, compareResult);
+                pipelineMetrics.recordSince(PipelineMetrics.Stage.COMPARE, compareStartTime);
+            }
+            //多帧决策，分数不足以判断时丢弃当前特征并重新提取下一帧，活体结果保留
+            decision = multiFrameDecider.offer(trackId, compareResult.getScore());
+            if (decision == MultiFrameDecider.Decision.PENDING) {
+                trackRegistry.removeFeature(trackId);
+                trackRegistry.setFeatureStatus(trackId, RequestFeatureStatus.TO_RETRY);
+                verifySession.transition(sessionId, VerifySession.State.COMPARING, VerifySession.State.CARD_READY);
+                return;
+            }
+        }
+        LogUtils.dTag(TAG, "compare decision: " + decision + ", frames: " + multiFrameDecider.getLastDecisionFrames()
+                + ", bestScore: " + multiFrameDecider.getBestScore());
+        multiFrameDecider.reset();
+        lastDecision = decision;
+        if (verifySession.transition(sessionId, VerifySession.State.COMPARING, VerifySession.State.SHOWING_RESULT)) {
+            verifySession.scheduleTimeout(sessionId, RESTART_DELAY, VerifySession.State.CARD_PENDING, VerifySession.State.SHOWING_RESULT);
+        }
+    }
+
+    private void showTip(int tipRes) {
+        ivTip.setBackgroundResource(tipRes);
         ivTip.setVisibility(View.VISIBLE);
         llCompare.setVisibility(View.GONE);
-        //人证特征比对接口
-        FaceSimilar compareResult = new FaceSimilar();
-        faceEngine.compareFaceFeature(idFaceFeature, faceFeature, CompareModel.ID_CARD, compareResult);
-        //人证比对阈值为0.82
-        if (compareResult.getScore() > 0.82) {
+    }
+
+    private void showCompareResult(MultiFrameDecider.Decision decision) {
+        if (decision == MultiFrameDecider.Decision.PASS) {
             playSound(R.raw.compare_success);
             ivCompareResult.setBackgroundResource(R.mipmap.compare_success);
             tvCompareTip.setText(name);
@@ -455,11 +1134,6 @@ public class MainActivity extends AppCompatActivity implements ViewTreeObserver.
         }
         ivTip.setVisibility(View.GONE);
         llCompare.setVisibility(View.VISIBLE);
-        isIdCardReady = false;
-        isCurrentReady = false;
-        isRead = true;
-        readHandler.removeCallbacks(readRunnable);
-        restartHandler.postDelayed(restartRunnable, RESTART_DELAY);
         //失败重试
 //        if(!compareResult.isSuccess() && tryTime < maxRetryTime) {
 //            tryTime++;
@@ -470,9 +1144,7 @@ public class MainActivity extends AppCompatActivity implements ViewTreeObserver.
     }
 
     private void initCompareLayout() {
-        ivTip.setBackgroundResource(R.mipmap.put_idcard);
-        ivTip.setVisibility(View.VISIBLE);
-        llCompare.setVisibility(View.GONE);
+        showTip(R.mipmap.put_idcard);
     }
 
     @Override
@@ -505,67 +1177,157 @@ public class MainActivity extends AppCompatActivity implements ViewTreeObserver.
     public void onClickIdCard(View view) {
         //模拟身份证姓名，可修改
         name = SAMPLE_NAME;
-        FileInputStream fis;
-        //身份证图像数据
-        bmp = null;
-        try {
-            //模拟身份证图像数据来源，可修改
-            fis = new FileInputStream(SAMPLE_FACE);
-            bmp = BitmapFactory.decodeStream(fis);
-            fis.close();
-        } catch (Exception e) {
-            e.printStackTrace();
+        idNumber = null;
+        if (idCardIngestHelper != null) {
+            //模拟身份证图像数据来源，可修改，解码在后台进行
+            idCardIngestHelper.ingest(SAMPLE_FACE);
+        }
+    }
+
+    /**
+     * 批量录入照片目录，录入中再次点击取消
+     *
+     * @param view
+     */
+    public void onClickBatchEnroll(View view) {
+        synchronized (this) {
+            if (batchEnrollHelper != null) {
+                batchEnrollHelper.cancel();
+                return;
+            }
+            if (enrollEnginePool != null) {
+                return;
+            }
+            if (!isEngineReady()) {
+                toast(getString(R.string.tip_dialog_loading));
+                return;
+            }
+            //录入引擎使用IMAGE模式，激活已在主引擎初始化时完成
+            List<FaceEngineAdapter> enrollEngines = new ArrayList<>();
+            for (int i = 0; i < ENROLL_ENGINE_COUNT; i++) {
+                enrollEngines.add(new FaceEngineAdapter(new FaceEngine()));
+            }
+            enrollEnginePool = new EnginePool<>(enrollEngines);
+            EngineInitHelper.Builder builder = new EngineInitHelper.Builder()
+                    .context(this)
+                    .engineInitListener((result, cost) -> {
+                        LogUtils.dTag(TAG, "enroll engine initResult: " + result + ", cost: " + cost + "ms");
+                        if (result == ErrorInfo.MOK) {
+                            startBatchEnroll();
+                        } else {
+                            releaseBatchEnroll();
+                            runOnUiThread(() -> toast(getString(R.string.tip_init_fail, result)));
+                        }
+                    });
+            for (FaceEngineAdapter enrollEngine : enrollEngines) {
+                builder.engine(enrollEngine.getFaceEngine(), DetectMode.ASF_DETECT_MODE_IMAGE);
+            }
+            enrollEngineInitHelper = builder.build();
+            enrollEngineInitHelper.start();
         }
-        inputIdCard();
     }
 
-    private void inputIdCard() {
-        if (bmp == null) {
+    private synchronized void startBatchEnroll() {
+        if (enrollEnginePool == null) {
             return;
         }
-        //图像4字节对齐 裁剪
-        bmp = ArcSoftImageUtil.getAlignedBitmap(bmp, true);
-        int width = bmp.getWidth();
-        int height = bmp.getHeight();
-        //转换为bgr格式
-        byte[] bgrData = ArcSoftImageUtil.createImageData(bmp.getWidth(), bmp.getHeight(), ArcSoftImageFormat.BGR24);
-        int translateResult = ArcSoftImageUtil.bitmapToImageData(bmp, bgrData, ArcSoftImageFormat.BGR24);
-        //转换成功
-        if (translateResult == ArcSoftImageUtilError.CODE_SUCCESS) {
-            List<FaceInfo> faceInfoList = new ArrayList<>();
-            //video模式不适合静态图片检测，这里新建了一个idFaceEngine 除了检测模式修改为Image其他参数与faceEngine一样
-            int detectResult = idFaceEngine.detectFaces(bgrData, width, height, FaceEngine.CP_PAF_BGR24, faceInfoList);
-            if (detectResult == ErrorInfo.MOK && faceInfoList.size() > 0) {
-                //这里的-2为trackID  因为Camera与证件照提取共用faceHelper 用trackID区分是哪边来的数据
-                faceHelper.requestFaceFeature(bgrData, faceInfoList.get(0), width, height, FaceEngine.CP_PAF_BGR24, -2);
-            }
-        } else {
-            LogUtils.dTag(TAG, "translate Error result: " + translateResult);
+        batchEnrollHelper = new BatchEnrollHelper.Builder()
+                .directory(new File(ENROLL_DIR))
+                .progressFile(new File(getFilesDir(), ENROLL_PROGRESS_FILE))
+                .featureStore(enrollFeatureStore)
+                .enginePool(enrollEnginePool)
+                .batchEnrollListener(new BatchEnrollListener() {
+                    @Override
+                    public void onEnrollProgress(int processed, int total, int failed) {
+                        runOnUiThread(() -> btnBatchEnroll.setText(getString(R.string.btn_batch_enroll_progress, processed, total)));
+                    }
+
+                    @Override
+                    public void onEnrollFinished(BatchEnrollHelper.Report report) {
+                        LogUtils.iTag(TAG, "batch enroll: " + report + ", enrollEnginePool: " + enrollEnginePool);
+                        releaseBatchEnroll();
+                        runOnUiThread(() -> {
+                            btnBatchEnroll.setText(R.string.btn_batch_enroll);
+                            toast(getString(R.string.tip_batch_enroll_finished, report.getSucceeded(), report.getFailed(),
+                                    report.getImagesPerSecond()));
+                        });
+                    }
+                })
+                .build();
+        batchEnrollHelper.start();
+    }
+
+    /**
+     * 停止批量录入并销毁录入引擎
+     */
+    private synchronized void releaseBatchEnroll() {
+        if (batchEnrollHelper != null) {
+            batchEnrollHelper.release();
+            batchEnrollHelper = null;
         }
+        boolean enginesReleasable = true;
+        if (enrollEngineInitHelper != null) {
+            //超时未结束时由初始化线程在结束后销毁录入引擎
+            enginesReleasable = enrollEngineInitHelper.release(ENGINE_INIT_TIMEOUT, TimeUnit.MILLISECONDS);
+            enrollEngineInitHelper = null;
+        }
+        if (enginesReleasable) {
+            unInitEnginePool(enrollEnginePool);
+        }
+        enrollEnginePool = null;
+    }
+
+    private void inputIdCard(Bitmap photo) {
+        if (photo == null || idCardIngestHelper == null) {
+            resumeRead();
+            return;
+        }
+        //已保存过该身份证的特征时直接比对，跳过照片处理及特征提取
+        FaceFeature storedFeature = idFeatureStore.get(idNumber);
+        if (storedFeature == null) {
+            storedFeature = enrollFeatureStore.get(idNumber);
+        }
+        if (storedFeature != null) {
+            bmp = photo;
+            onIdFeatureReady(storedFeature, photo);
+            return;
+        }
+        idCardIngestHelper.ingest(photo);
     }
 
     /**
-     * 读卡线程
+     * 初始化身份证照片处理，照片对齐、格式转换及人脸检测均在后台线程执行
      */
-    public class ReadThread extends Thread {
+    private void initIdCardIngest() {
+        if (idCardIngestHelper != null) {
+            return;
+        }
+        idCardIngestHelper = new IdCardIngestHelper.Builder()
+                .idFaceEngine(idFaceEngine)
+                .bitmapPool(idCardBitmapPool)
+                .thumbnailSize(ID_CARD_THUMBNAIL_SIZE)
+                .pipelineMetrics(pipelineMetrics)
+                .idCardIngestListener(new IdCardIngestListener() {
+                    @Override
+                    public void onIdCardFaceDetected(Frame frame, FaceInfo faceInfo, Bitmap thumbnail) {
+                        bmp = thumbnail;
+                        FaceHelper helper = faceHelper;
+                        if (helper == null) {
+                            resumeRead();
+                            return;
+                        }
+                        //这里的-2为trackID  因为Camera与证件照提取共用faceHelper 用trackID区分是哪边来的数据
+                        //身份证数据使用高优先级，不会因预览数据排队而被拒绝
+                        helper.requestFaceFeature(frame, faceInfo, -2, FaceHelper.Priority.HIGH);
+                    }
 
-        @Override
-        public void run() {
-            super.run();
-            while (true) {
-                if (isRead) {
-                    int res = -1;
-                    // TODO: 读卡器认证、读卡及身份证照片解码，默认res为0代表读卡成功
-                    if (res != 0) {
-                        continue;
+                    @Override
+                    public void onIdCardIngestFailed(int errorCode) {
+                        LogUtils.dTag(TAG, "idCard ingest failed: " + errorCode);
+                        resumeRead();
                     }
-                    isRead = false;
-                    // TODO:  身份证姓名及图像数据拷贝（name、bmp）
-                    //主线程执行
-                    runOnUiThread(MainActivity.this::inputIdCard);
-                }
-            }
-        }
+                })
+                .build();
     }
 
     public void toast(String str) {
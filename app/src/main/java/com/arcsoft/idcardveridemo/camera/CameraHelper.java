@@ -6,6 +6,9 @@ import android.graphics.Rect;
 import android.graphics.SurfaceTexture;
 import android.graphics.YuvImage;
 import android.hardware.Camera;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
 import android.util.Log;
 import android.view.Surface;
 import android.view.SurfaceHolder;
@@ -13,17 +16,23 @@ import android.view.SurfaceView;
 import android.view.TextureView;
 import android.view.View;
 
+import com.arcsoft.face.FaceEngine;
+
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 相机辅助类，和{@link CameraListener}共同使用，获取nv21数据等操作
  */
 public class CameraHelper implements Camera.PreviewCallback {
     private static final String TAG = "CameraHelper";
+    /**
+     * 异步模式下等待相机线程关闭相机的最长时间，单位毫秒
+     */
+    private static final long CAMERA_CLOSE_TIMEOUT = 3000;
     private boolean needTakePicture = false;
 
     private TakePictureType takePictureType;
@@ -40,6 +49,37 @@ public class CameraHelper implements Camera.PreviewCallback {
 
     private Integer specificCameraId = null;
     private CameraListener cameraListener;
+    /**
+     * 预览缓冲区数量，大于0时使用缓冲池模式
+     */
+    private int previewBufferCount;
+    private volatile PreviewBufferPool previewBufferPool;
+    /**
+     * 预览分辨率策略，为空时选择宽高比最接近的最大尺寸
+     */
+    private ResolutionPolicy resolutionPolicy;
+    /**
+     * 打开相机时支持的预览尺寸，用于按策略切换分辨率
+     */
+    private List<Camera.Size> supportedPreviewSizes;
+    /**
+     * 异步模式下的相机线程，相机的打开、配置及关闭均在该线程中按提交顺序依次执行，
+     * 预览回调同样在该线程中执行
+     */
+    private HandlerThread cameraThread;
+    private Handler cameraHandler;
+    private final Runnable openCameraRunnable = new Runnable() {
+        @Override
+        public void run() {
+            openCamera();
+        }
+    };
+    private final Runnable closeCameraRunnable = new Runnable() {
+        @Override
+        public void run() {
+            closeCamera();
+        }
+    };
 
     private CameraHelper(Builder builder) {
         previewDisplayView = builder.previewDisplayView;
@@ -50,6 +90,13 @@ public class CameraHelper implements Camera.PreviewCallback {
         takePictureType = builder.takePictureType;
         previewViewSize = builder.previewViewSize;
         specificPreviewSize = builder.specificPreviewSize;
+        previewBufferCount = builder.previewBufferCount;
+        resolutionPolicy = builder.resolutionPolicy;
+        if (builder.openAsync) {
+            cameraThread = new HandlerThread("CameraHelper-camera");
+            cameraThread.start();
+            cameraHandler = new Handler(cameraThread.getLooper());
+        }
         if (builder.previewDisplayView instanceof TextureView) {
             isMirror = builder.isMirror;
         } else if (isMirror) {
@@ -105,7 +152,19 @@ public class CameraHelper implements Camera.PreviewCallback {
         return result;
     }
 
+    /**
+     * 打开相机并开始预览，异步模式下提交到相机线程后立即返回，
+     * 打开完成后回调{@link CameraListener#onCameraOpened(Camera, int, int, boolean)}
+     */
     public void start() {
+        if (cameraHandler != null) {
+            cameraHandler.post(openCameraRunnable);
+        } else {
+            openCamera();
+        }
+    }
+
+    private void openCamera() {
         synchronized (this) {
             if (mCamera != null) {
 //                if (cameraListener != null) {
@@ -139,9 +198,9 @@ public class CameraHelper implements Camera.PreviewCallback {
 
                 //预览大小设置
                 previewSize = parameters.getPreviewSize();
-                List<Camera.Size> supportedPreviewSizes = parameters.getSupportedPreviewSizes();
+                supportedPreviewSizes = parameters.getSupportedPreviewSizes();
                 if (supportedPreviewSizes != null && supportedPreviewSizes.size() > 0) {
-                    previewSize = getBestSupportedSize(supportedPreviewSizes, previewViewSize);
+                    previewSize = getBestSupportedSize(supportedPreviewSizes, previewViewSize, parameters.getHorizontalViewAngle());
                 }
                 parameters.setPreviewSize(previewSize.width, previewSize.height);
 
@@ -164,7 +223,7 @@ public class CameraHelper implements Camera.PreviewCallback {
                         mCamera.setPreviewDisplay(((SurfaceView) previewDisplayView).getHolder());
                     }
                 }
-                mCamera.setPreviewCallback(this);
+                setPreviewCallback();
                 mCamera.startPreview();
                 if (cameraListener != null) {
                     cameraListener.onCameraOpened(mCamera, mCameraId, displayOrientation, isMirror);
@@ -178,7 +237,116 @@ public class CameraHelper implements Camera.PreviewCallback {
         }
     }
 
+    private void setPreviewCallback() {
+        if (previewBufferCount > 0) {
+            //缓冲池模式，相机复用预先分配的缓冲区，不再每帧分配新数组
+            previewBufferPool = new PreviewBufferPool(mCamera, previewSize.width, previewSize.height, previewBufferCount);
+            mCamera.setPreviewCallbackWithBuffer(this);
+            previewBufferPool.fill();
+        } else {
+            mCamera.setPreviewCallback(this);
+        }
+    }
+
+    /**
+     * 上报一帧预览数据的处理耗时，设置了自适应的{@link ResolutionPolicy}时据此升降预览分辨率，
+     * 切换后会再次回调{@link CameraListener#onCameraOpened(Camera, int, int, boolean)}
+     *
+     * @param costNanos 处理耗时，单位纳秒
+     */
+    public void reportFrameCost(long costNanos) {
+        ResolutionPolicy policy = resolutionPolicy;
+        if (policy == null || !policy.isAdaptive()) {
+            return;
+        }
+        final int index = policy.onFrameProcessed(costNanos);
+        if (index < 0) {
+            return;
+        }
+        runOnCameraThread(new Runnable() {
+            @Override
+            public void run() {
+                changePreviewSize(index);
+            }
+        });
+    }
+
+    /**
+     * 停止预览，切换为支持列表中的指定尺寸后重新开始预览
+     */
+    private void changePreviewSize(int index) {
+        synchronized (this) {
+            if (mCamera == null || supportedPreviewSizes == null || index >= supportedPreviewSizes.size()) {
+                return;
+            }
+            Camera.Size size = supportedPreviewSizes.get(index);
+            Log.i(TAG, "changePreviewSize: " + previewSize.width + "x" + previewSize.height + " -> " + size.width + "x" + size.height);
+            try {
+                mCamera.stopPreview();
+                mCamera.setPreviewCallback(null);
+                //旧缓冲区仍可能被使用者持有，释放后不再归还给相机
+                if (previewBufferPool != null) {
+                    previewBufferPool.clear();
+                    previewBufferPool = null;
+                }
+                Camera.Parameters parameters = mCamera.getParameters();
+                parameters.setPreviewSize(size.width, size.height);
+                mCamera.setParameters(parameters);
+                previewSize = size;
+                setPreviewCallback();
+                mCamera.startPreview();
+                if (cameraListener != null) {
+                    cameraListener.onCameraOpened(mCamera, mCameraId, displayOrientation, isMirror);
+                }
+            } catch (Exception e) {
+                if (cameraListener != null) {
+                    e.printStackTrace();
+                    cameraListener.onCameraError(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 停止预览并关闭相机，异步模式下提交到相机线程后立即返回
+     */
     public void stop() {
+        if (cameraHandler != null) {
+            cameraHandler.post(closeCameraRunnable);
+        } else {
+            closeCamera();
+        }
+    }
+
+    /**
+     * 停止预览并关闭相机，异步模式下阻塞至相机线程关闭相机为止，用于预览界面销毁等必须同步关闭的场景
+     */
+    private void stopAndWait() {
+        if (cameraHandler == null || Looper.myLooper() == cameraHandler.getLooper()) {
+            closeCamera();
+            return;
+        }
+        final CountDownLatch latch = new CountDownLatch(1);
+        boolean posted = cameraHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                closeCamera();
+                latch.countDown();
+            }
+        });
+        if (!posted) {
+            return;
+        }
+        try {
+            if (!latch.await(CAMERA_CLOSE_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                Log.w(TAG, "stopAndWait: camera close timed out");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void closeCamera() {
         synchronized (this) {
 
             if (mCamera == null) {
@@ -188,6 +356,10 @@ public class CameraHelper implements Camera.PreviewCallback {
                 return;
             }
             mCamera.setPreviewCallback(null);
+            if (previewBufferPool != null) {
+                previewBufferPool.clear();
+                previewBufferPool = null;
+            }
             mCamera.stopPreview();
             mCamera.release();
             mCamera = null;
@@ -204,65 +376,48 @@ public class CameraHelper implements Camera.PreviewCallback {
         }
     }
 
+    /**
+     * 关闭相机并释放资源，异步模式下等待相机线程关闭相机后退出相机线程
+     */
     public void release() {
+        stopAndWait();
+        if (cameraThread != null) {
+            cameraThread.quitSafely();
+        }
         synchronized (this) {
-            stop();
             previewDisplayView = null;
             specificCameraId = null;
             cameraListener = null;
             previewViewSize = null;
             specificPreviewSize = null;
             previewSize = null;
+            supportedPreviewSizes = null;
         }
     }
 
-    private Camera.Size getBestSupportedSize(List<Camera.Size> sizes, Point previewViewSize) {
+    private Camera.Size getBestSupportedSize(List<Camera.Size> sizes, Point previewViewSize, float horizontalViewAngle) {
         if (sizes == null || sizes.size() == 0) {
             return mCamera.getParameters().getPreviewSize();
         }
-        Camera.Size[] tempSizes = sizes.toArray(new Camera.Size[0]);
-        Arrays.sort(tempSizes, new Comparator<Camera.Size>() {
-            @Override
-            public int compare(Camera.Size o1, Camera.Size o2) {
-                if (o1.width > o2.width) {
-                    return -1;
-                } else if (o1.width == o2.width) {
-                    return o1.height > o2.height ? -1 : 1;
-                } else {
-                    return 1;
-                }
-            }
-        });
-        sizes = Arrays.asList(tempSizes);
-
-        Camera.Size bestSize = sizes.get(0);
-        float previewViewRatio;
-        if (previewViewSize != null) {
-            previewViewRatio = (float) previewViewSize.x / (float) previewViewSize.y;
-        } else {
-            previewViewRatio = (float) bestSize.width / (float) bestSize.height;
-        }
-
-        if (previewViewRatio > 1) {
-            previewViewRatio = 1 / previewViewRatio;
-        }
-        boolean isNormalRotate = (additionalRotation % 180 == 0);
-
-        for (Camera.Size s : sizes) {
-            if (specificPreviewSize != null && specificPreviewSize.x == s.width && specificPreviewSize.y == s.height) {
-                return s;
-            }
-            if (isNormalRotate) {
-                if (Math.abs((s.height / (float) s.width) - previewViewRatio) < Math.abs(bestSize.height / (float) bestSize.width - previewViewRatio)) {
-                    bestSize = s;
-                }
-            } else {
-                if (Math.abs((s.width / (float) s.height) - previewViewRatio) < Math.abs(bestSize.width / (float) bestSize.height - previewViewRatio)) {
-                    bestSize = s;
-                }
-            }
-        }
-        return bestSize;
+        int count = sizes.size();
+        int[] widths = new int[count];
+        int[] heights = new int[count];
+        for (int i = 0; i < count; i++) {
+            widths[i] = sizes.get(i).width;
+            heights[i] = sizes.get(i).height;
+        }
+        int viewWidth = previewViewSize == null ? 0 : previewViewSize.x;
+        int viewHeight = previewViewSize == null ? 0 : previewViewSize.y;
+        int index = PreviewSizeSelector.select(widths, heights, count, viewWidth, viewHeight,
+                specificPreviewSize == null ? 0 : specificPreviewSize.x, specificPreviewSize == null ? 0 : specificPreviewSize.y,
+                additionalRotation);
+        //指定了尺寸且系统支持时以指定尺寸为准，否则交由分辨率策略选择
+        boolean specificMatched = specificPreviewSize != null
+                && widths[index] == specificPreviewSize.x && heights[index] == specificPreviewSize.y;
+        if (resolutionPolicy != null && !specificMatched) {
+            index = resolutionPolicy.select(widths, heights, count, viewWidth, viewHeight, additionalRotation, horizontalViewAngle);
+        }
+        return sizes.get(index);
     }
 
     public List<Camera.Size> getSupportedPreviewSizes() {
@@ -271,14 +426,25 @@ public class CameraHelper implements Camera.PreviewCallback {
 
     @Override
     public void onPreviewFrame(byte[] nv21, Camera camera) {
-        if (cameraListener != null) {
-            cameraListener.onPreview(nv21, camera);
-            if (needTakePicture) {
-                needTakePicture = false;
-                takePicture(nv21.clone(), camera.getParameters().getPreviewSize());
+        long timestamp = System.nanoTime();
+        PreviewBufferPool bufferPool = previewBufferPool;
+        Frame frame = bufferPool != null ? bufferPool.obtain(nv21, timestamp) : null;
+        if (frame == null) {
+            Camera.Size size = previewSize != null ? previewSize : camera.getParameters().getPreviewSize();
+            frame = new Frame(nv21, size.width, size.height, FaceEngine.CP_PAF_NV21, null).open(timestamp);
+        }
+        //回调期间持有一次引用，回调结束后若无其他使用者则归还给相机
+        try {
+            if (cameraListener != null) {
+                cameraListener.onPreview(frame, camera);
+                if (needTakePicture) {
+                    needTakePicture = false;
+                    takePicture(nv21.clone(), camera.getParameters().getPreviewSize());
+                }
             }
+        } finally {
+            frame.release();
         }
-
     }
 
     public void takePicture() {
@@ -316,16 +482,22 @@ public class CameraHelper implements Camera.PreviewCallback {
 
     private TextureView.SurfaceTextureListener textureListener = new TextureView.SurfaceTextureListener() {
         @Override
-        public void onSurfaceTextureAvailable(SurfaceTexture surfaceTexture, int width, int height) {
+        public void onSurfaceTextureAvailable(final SurfaceTexture surfaceTexture, int width, int height) {
 //            start();
-            if (mCamera != null) {
-                try {
-                    mCamera.setPreviewTexture(surfaceTexture);
-                } catch (IOException e) {
-                    e.printStackTrace();
+            runOnCameraThread(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (CameraHelper.this) {
+                        if (mCamera != null) {
+                            try {
+                                mCamera.setPreviewTexture(surfaceTexture);
+                            } catch (IOException e) {
+                                e.printStackTrace();
+                            }
+                        }
+                    }
                 }
-            }
-
+            });
         }
 
         @Override
@@ -335,8 +507,8 @@ public class CameraHelper implements Camera.PreviewCallback {
 
         @Override
         public boolean onSurfaceTextureDestroyed(SurfaceTexture surfaceTexture) {
-
-            stop();
+            //返回后SurfaceTexture即被释放，需在返回前关闭相机
+            stopAndWait();
             return false;
         }
 
@@ -347,15 +519,21 @@ public class CameraHelper implements Camera.PreviewCallback {
     };
     private SurfaceHolder.Callback surfaceCallback = new SurfaceHolder.Callback() {
         @Override
-        public void surfaceCreated(SurfaceHolder holder) {
-
-            if (mCamera != null) {
-                try {
-                    mCamera.setPreviewDisplay(holder);
-                } catch (IOException e) {
-                    e.printStackTrace();
+        public void surfaceCreated(final SurfaceHolder holder) {
+            runOnCameraThread(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (CameraHelper.this) {
+                        if (mCamera != null) {
+                            try {
+                                mCamera.setPreviewDisplay(holder);
+                            } catch (IOException e) {
+                                e.printStackTrace();
+                            }
+                        }
+                    }
                 }
-            }
+            });
         }
 
         @Override
@@ -365,21 +543,40 @@ public class CameraHelper implements Camera.PreviewCallback {
 
         @Override
         public void surfaceDestroyed(SurfaceHolder holder) {
-            stop();
+            //返回后Surface即被销毁，需在返回前关闭相机
+            stopAndWait();
         }
     };
 
-    public void changeDisplayOrientation(int rotation) {
-        if (mCamera != null) {
-            this.rotation = rotation;
-            displayOrientation = getCameraOri(rotation);
-            mCamera.setDisplayOrientation(displayOrientation);
-            if (cameraListener != null) {
-                cameraListener.onCameraConfigurationChanged(mCameraId, displayOrientation);
-            }
+    /**
+     * 异步模式下在相机线程中执行，否则直接执行
+     */
+    private void runOnCameraThread(Runnable runnable) {
+        if (cameraHandler != null) {
+            cameraHandler.post(runnable);
+        } else {
+            runnable.run();
         }
     }
 
+    public void changeDisplayOrientation(final int rotation) {
+        runOnCameraThread(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (CameraHelper.this) {
+                    if (mCamera != null) {
+                        CameraHelper.this.rotation = rotation;
+                        displayOrientation = getCameraOri(rotation);
+                        mCamera.setDisplayOrientation(displayOrientation);
+                        if (cameraListener != null) {
+                            cameraListener.onCameraConfigurationChanged(mCameraId, displayOrientation);
+                        }
+                    }
+                }
+            }
+        });
+    }
+
     public void switchCamera() {
         if (specificCameraId == null) {
             specificCameraId = mCameraId;
@@ -430,6 +627,20 @@ public class CameraHelper implements Camera.PreviewCallback {
          *
          */
         private TakePictureType takePictureType = TakePictureType.JPG;
+        /**
+         * 预览缓冲区数量，大于0时使用{@link Camera#setPreviewCallbackWithBuffer(Camera.PreviewCallback)}复用缓冲区，
+         * 默认为0，即每帧由相机分配新数组
+         */
+        private int previewBufferCount;
+        /**
+         * 是否在后台相机线程中打开、配置及关闭相机，避免阻塞UI线程，
+         * 开启后{@link CameraListener}的各回调均在相机线程中执行
+         */
+        private boolean openAsync;
+        /**
+         * 预览分辨率策略，为空时选择宽高比最接近的最大尺寸
+         */
+        private ResolutionPolicy resolutionPolicy;
 
         public Builder() {
         }
@@ -485,6 +696,21 @@ public class CameraHelper implements Camera.PreviewCallback {
             return this;
         }
 
+        public Builder previewBufferCount(int val) {
+            previewBufferCount = val;
+            return this;
+        }
+
+        public Builder openAsync(boolean val) {
+            openAsync = val;
+            return this;
+        }
+
+        public Builder resolutionPolicy(ResolutionPolicy val) {
+            resolutionPolicy = val;
+            return this;
+        }
+
         public CameraHelper build() {
             if (previewViewSize == null) {
                 Log.e(TAG, "previewViewSize is null, now use default specificPreviewSize");
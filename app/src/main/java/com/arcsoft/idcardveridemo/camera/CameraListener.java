@@ -2,7 +2,10 @@ package com.arcsoft.idcardveridemo.camera;
 
 import android.hardware.Camera;
 
-
+/**
+ * 相机事件回调，默认在调用{@link CameraHelper#start()}的线程中执行，
+ * 开启{@link CameraHelper.Builder#openAsync(boolean)}后在相机线程中执行
+ */
 public interface CameraListener {
     /**
      * 当打开时执行
@@ -15,12 +18,13 @@ public interface CameraListener {
     void onCameraOpened(Camera camera, int cameraId, int displayOrientation, boolean isMirror);
 
     /**
-     * 预览数据回调
+     * 预览数据回调，frame仅在回调期间有效，
+     * 若需在回调之外使用需调用{@link Frame#acquire()}，使用完毕后调用{@link Frame#release()}
      *
-     * @param data   预览数据
+     * @param frame  预览帧，NV21格式
      * @param camera 相机实例
      */
-    void onPreview(byte[] data, Camera camera);
+    void onPreview(Frame frame, Camera camera);
 
     /**
      * 当相机关闭时执行
@@ -0,0 +1,156 @@
+package com.arcsoft.idcardveridemo.camera;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 图像帧，携带图像数据、格式、尺寸、采集时间及引用计数。
+ * 每个持有帧的使用者需先调用{@link #acquire()}，使用完毕后调用{@link #release()}，
+ * 最后一个使用者释放时由{@link Recycler}回收图像数据，期间各使用者共享同一份数据，无需拷贝
+ */
+public final class Frame {
+    /**
+     * 帧回收器，引用计数归零时调用
+     */
+    public interface Recycler {
+        /**
+         * 回收帧，之后不可再使用该帧的图像数据
+         *
+         * @param frame 引用计数已归零的帧
+         */
+        void recycle(Frame frame);
+    }
+
+    private final byte[] data;
+    private final int width;
+    private final int height;
+    /**
+     * 图像格式，如{@link com.arcsoft.face.FaceEngine#CP_PAF_NV21}
+     */
+    private final int format;
+    private final Recycler recycler;
+    private final AtomicInteger refCount = new AtomicInteger();
+    /**
+     * 采集时间，{@link System#nanoTime()}
+     */
+    private volatile long timestamp;
+
+    /**
+     * 创建一个空闲的帧，需调用{@link #open(long)}后才能使用
+     *
+     * @param data     图像数据
+     * @param width    图像宽度
+     * @param height   图像高度
+     * @param format   图像格式
+     * @param recycler 回收器，可为空
+     */
+    public Frame(byte[] data, int width, int height, int format, Recycler recycler) {
+        if (data == null) {
+            throw new IllegalArgumentException("data must not be null");
+        }
+        this.data = data;
+        this.width = width;
+        this.height = height;
+        this.format = format;
+        this.recycler = recycler;
+    }
+
+    /**
+     * 包装一份图像数据，引用计数为1，释放后不回收
+     *
+     * @param data   图像数据
+     * @param width  图像宽度
+     * @param height 图像高度
+     * @param format 图像格式
+     * @return 已打开的帧，采集时间为当前时间
+     */
+    public static Frame wrap(byte[] data, int width, int height, int format) {
+        return new Frame(data, width, height, format, null).open(System.nanoTime());
+    }
+
+    /**
+     * 帧重新填充数据后调用，引用计数置为1，调用方即第一个持有者
+     *
+     * @param timestamp 采集时间，{@link System#nanoTime()}
+     * @return 当前帧
+     */
+    public Frame open(long timestamp) {
+        if (!refCount.compareAndSet(0, 1)) {
+            throw new IllegalStateException("frame is still in use");
+        }
+        this.timestamp = timestamp;
+        return this;
+    }
+
+    /**
+     * 增加引用计数
+     *
+     * @return 当前帧
+     */
+    public Frame acquire() {
+        int count;
+        do {
+            count = refCount.get();
+            if (count <= 0) {
+                throw new IllegalStateException("frame has been recycled");
+            }
+        } while (!refCount.compareAndSet(count, count + 1));
+        return this;
+    }
+
+    /**
+     * 减少引用计数，计数归零时回收
+     */
+    public void release() {
+        int count = refCount.decrementAndGet();
+        if (count == 0) {
+            if (recycler != null) {
+                recycler.recycle(this);
+            }
+        } else if (count < 0) {
+            refCount.incrementAndGet();
+            throw new IllegalStateException("frame released too many times");
+        }
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getFormat() {
+        return format;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return 帧的存活时长，即当前时间与采集时间之差，单位纳秒
+     */
+    public long getAge() {
+        return System.nanoTime() - timestamp;
+    }
+
+    public int getRefCount() {
+        return refCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "Frame{" +
+                "width=" + width +
+                ", height=" + height +
+                ", format=" + format +
+                ", timestamp=" + timestamp +
+                ", refCount=" + refCount.get() +
+                '}';
+    }
+}
@@ -0,0 +1,103 @@
+package com.arcsoft.idcardveridemo.camera;
+
+import android.graphics.ImageFormat;
+import android.hardware.Camera;
+
+import com.arcsoft.face.FaceEngine;
+
+/**
+ * 预览数据缓冲池，配合{@link Camera#setPreviewCallbackWithBuffer(Camera.PreviewCallback)}使用。
+ * 预先分配固定数量的nv21缓冲区，每个缓冲区对应一个{@link Frame}，
+ * 只有当所有使用者都释放帧后缓冲区才会归还给相机，避免相机每帧都分配新的数组
+ */
+public class PreviewBufferPool implements Frame.Recycler {
+    private final Camera camera;
+    private final Frame[] frames;
+    /**
+     * 缓冲池是否已失效（相机已关闭）
+     */
+    private boolean released = false;
+
+    /**
+     * @param camera      相机实例
+     * @param width       预览宽度
+     * @param height      预览高度
+     * @param bufferCount 缓冲区数量
+     */
+    PreviewBufferPool(Camera camera, int width, int height, int bufferCount) {
+        if (bufferCount <= 0) {
+            throw new IllegalArgumentException("bufferCount must > 0");
+        }
+        this.camera = camera;
+        int bufferSize = width * height * ImageFormat.getBitsPerPixel(ImageFormat.NV21) / 8;
+        frames = new Frame[bufferCount];
+        for (int i = 0; i < bufferCount; i++) {
+            frames[i] = new Frame(new byte[bufferSize], width, height, FaceEngine.CP_PAF_NV21, this);
+        }
+    }
+
+    /**
+     * 将所有缓冲区交给相机
+     */
+    void fill() {
+        for (Frame frame : frames) {
+            camera.addCallbackBuffer(frame.getData());
+        }
+    }
+
+    /**
+     * 相机填充缓冲区后调用，打开对应的帧
+     *
+     * @param data      预览数据
+     * @param timestamp 采集时间，{@link System#nanoTime()}
+     * @return 引用计数为1的帧，不是缓冲池中的缓冲区时返回null
+     */
+    Frame obtain(byte[] data, long timestamp) {
+        for (Frame frame : frames) {
+            if (frame.getData() == data) {
+                return frame.open(timestamp);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 帧的引用计数归零时调用，将缓冲区归还给相机
+     *
+     * @param frame 帧
+     */
+    @Override
+    public synchronized void recycle(Frame frame) {
+        if (!released) {
+            camera.addCallbackBuffer(frame.getData());
+        }
+    }
+
+    /**
+     * 相机关闭时调用，之后释放的缓冲区不再归还给相机
+     */
+    synchronized void clear() {
+        released = true;
+    }
+
+    /**
+     * @return 当前被使用者持有的缓冲区数量
+     */
+    public int getInUseCount() {
+        int count = 0;
+        for (Frame frame : frames) {
+            if (frame.getRefCount() > 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int getBufferCount() {
+        return frames.length;
+    }
+
+    public int getBufferSize() {
+        return frames[0].getData().length;
+    }
+}
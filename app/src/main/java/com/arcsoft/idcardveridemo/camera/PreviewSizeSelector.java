@@ -0,0 +1,84 @@
+package com.arcsoft.idcardveridemo.camera;
+
+/**
+ * 预览尺寸选择，不依赖Android API，便于在主机端测试及基准测试。
+ * 优先选择指定的尺寸，否则选择宽高比与预览控件最接近的尺寸，宽高比相同时选择宽度较大的尺寸，宽度相同时选择高度较大的尺寸
+ */
+public final class PreviewSizeSelector {
+
+    private PreviewSizeSelector() {
+    }
+
+    /**
+     * 选择最合适的预览尺寸
+     *
+     * @param widths             支持的预览宽度
+     * @param heights            支持的预览高度，与widths一一对应
+     * @param count              支持的尺寸数量
+     * @param viewWidth          预览控件宽度，小于等于0表示未知
+     * @param viewHeight         预览控件高度，小于等于0表示未知
+     * @param specificWidth      指定的预览宽度，小于等于0表示不指定
+     * @param specificHeight     指定的预览高度，小于等于0表示不指定
+     * @param additionalRotation 额外的旋转角度
+     * @return 选中尺寸的下标，count为0时返回-1
+     */
+    public static int select(int[] widths, int[] heights, int count, int viewWidth, int viewHeight,
+                             int specificWidth, int specificHeight, int additionalRotation) {
+        if (count <= 0) {
+            return -1;
+        }
+        int largest = 0;
+        for (int i = 0; i < count; i++) {
+            if (specificWidth > 0 && specificWidth == widths[i] && specificHeight == heights[i]) {
+                return i;
+            }
+            if (isLarger(widths, heights, i, largest)) {
+                largest = i;
+            }
+        }
+        float previewViewRatio = viewRatio(widths, heights, largest, viewWidth, viewHeight);
+        boolean isNormalRotate = (additionalRotation % 180 == 0);
+
+        int best = largest;
+        float bestDiff = ratioDiff(widths[best], heights[best], isNormalRotate, previewViewRatio);
+        for (int i = 0; i < count; i++) {
+            float diff = ratioDiff(widths[i], heights[i], isNormalRotate, previewViewRatio);
+            if (diff < bestDiff || (diff == bestDiff && isLarger(widths, heights, i, best))) {
+                best = i;
+                bestDiff = diff;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return 预览控件的宽高比，取值不大于1，控件尺寸未知时使用最大尺寸的宽高比
+     */
+    static float viewRatio(int[] widths, int[] heights, int largest, int viewWidth, int viewHeight) {
+        float previewViewRatio;
+        if (viewWidth > 0 && viewHeight > 0) {
+            previewViewRatio = (float) viewWidth / (float) viewHeight;
+        } else {
+            previewViewRatio = (float) widths[largest] / (float) heights[largest];
+        }
+        if (previewViewRatio > 1) {
+            previewViewRatio = 1 / previewViewRatio;
+        }
+        return previewViewRatio;
+    }
+
+    static float ratioDiff(int width, int height, boolean isNormalRotate, float previewViewRatio) {
+        if (isNormalRotate) {
+            return Math.abs((height / (float) width) - previewViewRatio);
+        } else {
+            return Math.abs((width / (float) height) - previewViewRatio);
+        }
+    }
+
+    /**
+     * 按宽度优先、高度其次比较尺寸大小
+     */
+    static boolean isLarger(int[] widths, int[] heights, int i, int j) {
+        return widths[i] > widths[j] || (widths[i] == widths[j] && heights[i] > heights[j]);
+    }
+}
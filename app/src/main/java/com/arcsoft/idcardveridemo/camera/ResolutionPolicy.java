@@ -0,0 +1,323 @@
+package com.arcsoft.idcardveridemo.camera;
+
+/**
+ * 负载感知的预览分辨率策略，不依赖Android API，便于在主机端测试。
+ * <p>
+ * 根据人脸最小像素宽度、工作距离及相机水平视角计算所需的最小预览宽度，
+ * 在宽高比与预览控件接近的尺寸中选择满足该宽度的最小尺寸，而不是最大尺寸。
+ * 开启自适应后，每{@link Builder#evaluateFrames(int)}帧统计一次平均处理耗时，
+ * 超出预算时降低一档分辨率，按像素数估算升档后仍低于预算的一定比例时提高一档
+ */
+public class ResolutionPolicy {
+    /**
+     * 相机未提供有效视角时使用的默认水平视角，单位度
+     */
+    private static final float DEFAULT_HORIZONTAL_VIEW_ANGLE = 60f;
+
+    private int minFacePixels;
+    private float faceWidth;
+    private float workingDistance;
+    private float defaultHorizontalViewAngle;
+    private float ratioTolerance;
+    private int minWidth;
+    private int maxWidth;
+    private boolean adaptive;
+    private long frameBudgetNanos;
+    private float stepUpRatio;
+    private int evaluateFrames;
+
+    /**
+     * 候选尺寸在原始列表中的下标，按尺寸从小到大排列
+     */
+    private int[] ladder = new int[0];
+    private long[] ladderAreas = new long[0];
+    private int ladderSize;
+    private int floorIndex;
+    private int preferredIndex;
+    private int ceilingIndex;
+    private int currentIndex;
+
+    private long windowCostNanos;
+    private int windowFrames;
+    /**
+     * 切换分辨率后需跳过的帧数，切换后的前几帧耗时不稳定
+     */
+    private int skipFrames;
+
+    private ResolutionPolicy(Builder builder) {
+        minFacePixels = builder.minFacePixels;
+        faceWidth = builder.faceWidth;
+        workingDistance = builder.workingDistance;
+        defaultHorizontalViewAngle = builder.horizontalViewAngle;
+        ratioTolerance = builder.ratioTolerance;
+        minWidth = builder.minWidth;
+        maxWidth = builder.maxWidth;
+        adaptive = builder.adaptive;
+        frameBudgetNanos = builder.frameBudget * 1000000L;
+        stepUpRatio = builder.stepUpRatio;
+        evaluateFrames = builder.evaluateFrames;
+    }
+
+    /**
+     * 计算工作距离处人脸宽度达到最小像素宽度时所需的预览宽度
+     *
+     * @param horizontalViewAngle 相机水平视角，单位度，无效时使用默认值
+     * @return 所需的最小预览宽度
+     */
+    public int getRequiredWidth(float horizontalViewAngle) {
+        if (!(horizontalViewAngle > 0 && horizontalViewAngle < 180)) {
+            horizontalViewAngle = defaultHorizontalViewAngle;
+        }
+        //工作距离处画面覆盖的水平宽度
+        double sceneWidth = 2 * workingDistance * Math.tan(Math.toRadians(horizontalViewAngle / 2));
+        return (int) Math.ceil(minFacePixels * sceneWidth / faceWidth);
+    }
+
+    /**
+     * 选择预览尺寸并重置自适应状态
+     *
+     * @param widths              支持的预览宽度
+     * @param heights             支持的预览高度，与widths一一对应
+     * @param count               支持的尺寸数量
+     * @param viewWidth           预览控件宽度，小于等于0表示未知
+     * @param viewHeight          预览控件高度，小于等于0表示未知
+     * @param additionalRotation  额外的旋转角度
+     * @param horizontalViewAngle 相机水平视角，单位度，无效时使用默认值
+     * @return 选中尺寸的下标，count为0时返回-1
+     */
+    public synchronized int select(int[] widths, int[] heights, int count, int viewWidth, int viewHeight,
+                                   int additionalRotation, float horizontalViewAngle) {
+        ladderSize = 0;
+        resetWindow();
+        if (count <= 0) {
+            return -1;
+        }
+        int largest = 0;
+        for (int i = 1; i < count; i++) {
+            if (PreviewSizeSelector.isLarger(widths, heights, i, largest)) {
+                largest = i;
+            }
+        }
+        float previewViewRatio = PreviewSizeSelector.viewRatio(widths, heights, largest, viewWidth, viewHeight);
+        boolean isNormalRotate = (additionalRotation % 180 == 0);
+        float bestDiff = Float.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            bestDiff = Math.min(bestDiff, PreviewSizeSelector.ratioDiff(widths[i], heights[i], isNormalRotate, previewViewRatio));
+        }
+        //宽高比在容差内的尺寸按从小到大插入候选列表
+        if (ladder.length < count) {
+            ladder = new int[count];
+            ladderAreas = new long[count];
+        }
+        for (int i = 0; i < count; i++) {
+            if (PreviewSizeSelector.ratioDiff(widths[i], heights[i], isNormalRotate, previewViewRatio) > bestDiff + ratioTolerance) {
+                continue;
+            }
+            int position = ladderSize;
+            while (position > 0 && PreviewSizeSelector.isLarger(widths, heights, ladder[position - 1], i)) {
+                ladder[position] = ladder[position - 1];
+                position--;
+            }
+            ladder[position] = i;
+            ladderSize++;
+        }
+        for (int i = 0; i < ladderSize; i++) {
+            ladderAreas[i] = (long) widths[ladder[i]] * heights[ladder[i]];
+        }
+
+        int requiredWidth = getRequiredWidth(horizontalViewAngle);
+        preferredIndex = ladderSize - 1;
+        for (int i = 0; i < ladderSize; i++) {
+            if (widths[ladder[i]] >= requiredWidth) {
+                preferredIndex = i;
+                break;
+            }
+        }
+        floorIndex = preferredIndex;
+        for (int i = 0; i < preferredIndex; i++) {
+            if (widths[ladder[i]] >= minWidth) {
+                floorIndex = i;
+                break;
+            }
+        }
+        ceilingIndex = preferredIndex;
+        if (maxWidth > 0) {
+            for (int i = ladderSize - 1; i > preferredIndex; i--) {
+                if (widths[ladder[i]] <= maxWidth) {
+                    ceilingIndex = i;
+                    break;
+                }
+            }
+        }
+        currentIndex = preferredIndex;
+        return ladder[currentIndex];
+    }
+
+    /**
+     * 上报一帧的处理耗时，自适应模式下据此调整分辨率
+     *
+     * @param costNanos 处理耗时，单位纳秒
+     * @return 需要切换到的尺寸在{@link #select(int[], int[], int, int, int, int, float)}传入列表中的下标，无需切换时返回-1
+     */
+    public synchronized int onFrameProcessed(long costNanos) {
+        if (!adaptive || ladderSize == 0) {
+            return -1;
+        }
+        if (skipFrames > 0) {
+            skipFrames--;
+            return -1;
+        }
+        windowCostNanos += costNanos;
+        windowFrames++;
+        if (windowFrames < evaluateFrames) {
+            return -1;
+        }
+        long averageCost = windowCostNanos / windowFrames;
+        windowCostNanos = 0;
+        windowFrames = 0;
+        if (averageCost > frameBudgetNanos && currentIndex > floorIndex) {
+            return switchTo(currentIndex - 1);
+        }
+        if (currentIndex < ceilingIndex) {
+            //处理耗时近似与像素数成正比，按此估算升档后的耗时
+            double predictedCost = (double) averageCost * ladderAreas[currentIndex + 1] / ladderAreas[currentIndex];
+            if (predictedCost < frameBudgetNanos * stepUpRatio) {
+                return switchTo(currentIndex + 1);
+            }
+        }
+        return -1;
+    }
+
+    private int switchTo(int index) {
+        currentIndex = index;
+        resetWindow();
+        skipFrames = evaluateFrames;
+        return ladder[index];
+    }
+
+    private void resetWindow() {
+        windowCostNanos = 0;
+        windowFrames = 0;
+        skipFrames = 0;
+    }
+
+    /**
+     * @return 当前尺寸是否低于满足最小人脸像素宽度的尺寸
+     */
+    public synchronized boolean isDegraded() {
+        return ladderSize > 0 && currentIndex < preferredIndex;
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    public static final class Builder {
+        /**
+         * 人脸最小像素宽度，低于该值时检测及特征提取效果下降
+         */
+        private int minFacePixels = 80;
+        /**
+         * 人脸实际宽度，单位米
+         */
+        private float faceWidth = 0.15f;
+        /**
+         * 最远工作距离，单位米
+         */
+        private float workingDistance = 1.0f;
+        /**
+         * 相机未提供有效视角时使用的水平视角，单位度
+         */
+        private float horizontalViewAngle = DEFAULT_HORIZONTAL_VIEW_ANGLE;
+        /**
+         * 候选尺寸与最佳宽高比的最大差值
+         */
+        private float ratioTolerance = 0.01f;
+        /**
+         * 自适应降档时的最小预览宽度
+         */
+        private int minWidth = 320;
+        /**
+         * 自适应升档时的最大预览宽度，小于等于0表示不超过满足最小人脸像素宽度的尺寸
+         */
+        private int maxWidth;
+        private boolean adaptive = false;
+        /**
+         * 每帧处理耗时预算，单位毫秒
+         */
+        private long frameBudget = 66;
+        /**
+         * 估算的升档后耗时低于预算的该比例时升档
+         */
+        private float stepUpRatio = 0.7f;
+        private int evaluateFrames = 30;
+
+        public Builder() {
+        }
+
+        public Builder minFacePixels(int val) {
+            minFacePixels = val;
+            return this;
+        }
+
+        public Builder faceWidth(float val) {
+            faceWidth = val;
+            return this;
+        }
+
+        public Builder workingDistance(float val) {
+            workingDistance = val;
+            return this;
+        }
+
+        public Builder horizontalViewAngle(float val) {
+            horizontalViewAngle = val;
+            return this;
+        }
+
+        public Builder ratioTolerance(float val) {
+            ratioTolerance = val;
+            return this;
+        }
+
+        public Builder minWidth(int val) {
+            minWidth = val;
+            return this;
+        }
+
+        public Builder maxWidth(int val) {
+            maxWidth = val;
+            return this;
+        }
+
+        public Builder adaptive(boolean val) {
+            adaptive = val;
+            return this;
+        }
+
+        public Builder frameBudget(long val) {
+            frameBudget = val;
+            return this;
+        }
+
+        public Builder stepUpRatio(float val) {
+            stepUpRatio = val;
+            return this;
+        }
+
+        public Builder evaluateFrames(int val) {
+            evaluateFrames = val;
+            return this;
+        }
+
+        public ResolutionPolicy build() {
+            if (minFacePixels <= 0 || faceWidth <= 0 || workingDistance <= 0) {
+                throw new IllegalArgumentException("minFacePixels, faceWidth and workingDistance must > 0");
+            }
+            if (evaluateFrames <= 0) {
+                throw new IllegalArgumentException("evaluateFrames must > 0");
+            }
+            return new ResolutionPolicy(this);
+        }
+    }
+}
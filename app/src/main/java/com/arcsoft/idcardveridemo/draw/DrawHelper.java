@@ -15,6 +15,10 @@ public class DrawHelper {
     private int previewWidth, previewHeight, canvasWidth, canvasHeight, cameraDisplayOrientation, cameraId;
     private boolean isMirror;
     private boolean mirrorHorizontal = false, mirrorVertical = false;
+    /**
+     * 预先计算的FT人脸框到View坐标的变换，参数变化时重建
+     */
+    private volatile RectTransform rectTransform;
 
     /**
      * 创建一个绘制辅助类对象，并且设置绘制相关的参数
@@ -41,28 +45,61 @@ public class DrawHelper {
         this.isMirror = isMirror;
         this.mirrorHorizontal = mirrorHorizontal;
         this.mirrorVertical = mirrorVertical;
+        updateRectTransform();
+    }
+
+    private void updateRectTransform() {
+        rectTransform = new RectTransform(previewWidth, previewHeight, canvasWidth, canvasHeight,
+                cameraDisplayOrientation, cameraId, isMirror, mirrorHorizontal, mirrorVertical);
     }
 
     public void draw(FaceRectView faceRectView, List<DrawInfo> drawInfoList) {
         if (faceRectView == null) {
             return;
         }
-        faceRectView.clearFaceInfo();
-        if (drawInfoList == null || drawInfoList.size() == 0) {
-            return;
+        FaceOverlayFrame frame = faceRectView.beginFrame();
+        if (drawInfoList != null) {
+            for (int i = 0; i < drawInfoList.size(); i++) {
+                add(frame, drawInfoList.get(i));
+            }
         }
-        faceRectView.addFaceInfo(drawInfoList);
+        faceRectView.commitFrame();
     }
 
     public void draw(FaceRectView faceRectView, DrawInfo drawInfo) {
         if (faceRectView == null) {
             return;
         }
-        faceRectView.clearFaceInfo();
-        if (drawInfo == null) {
+        FaceOverlayFrame frame = faceRectView.beginFrame();
+        if (drawInfo != null) {
+            add(frame, drawInfo);
+        }
+        faceRectView.commitFrame();
+    }
+
+    /**
+     * 将FT人脸框调整后直接绘制，不创建{@link Rect}及{@link DrawInfo}，用于逐帧绘制
+     *
+     * @param faceRectView 绘制控件
+     * @param ftRect       FT人脸框，为null时清空绘制内容
+     * @param text         绘制在左上角的文字，可为null
+     * @param color        颜色
+     */
+    public void draw(FaceRectView faceRectView, Rect ftRect, String text, int color) {
+        if (faceRectView == null) {
             return;
         }
-        faceRectView.addFaceInfo(drawInfo);
+        FaceOverlayFrame frame = faceRectView.beginFrame();
+        if (ftRect != null) {
+            int index = frame.add(ftRect.left, ftRect.top, ftRect.right, ftRect.bottom, color, text);
+            rectTransform.map(frame.getRects(), index * 4, frame.getRects(), index * 4);
+        }
+        faceRectView.commitFrame();
+    }
+
+    private static void add(FaceOverlayFrame frame, DrawInfo drawInfo) {
+        Rect rect = drawInfo.getRect();
+        frame.add(rect.left, rect.top, rect.right, rect.bottom, drawInfo.getColor(), drawInfo.getText());
     }
 
     /**
@@ -70,22 +107,45 @@ public class DrawHelper {
      * @return 调整后的需要被绘制到View上的rect
      */
     public Rect adjustRect(Rect ftRect) {
-
-        int previewWidth = this.previewWidth;
-        int previewHeight = this.previewHeight;
-        int canvasWidth = this.canvasWidth;
-        int canvasHeight = this.canvasHeight;
-        int cameraDisplayOrientation = this.cameraDisplayOrientation;
-        int cameraId = this.cameraId;
-        boolean isMirror = this.isMirror;
-        boolean mirrorHorizontal = this.mirrorHorizontal;
-        boolean mirrorVertical = this.mirrorVertical;
-
         if (ftRect == null) {
             return null;
         }
-        Rect rect = new Rect(ftRect);
+        int[] rect = new int[]{ftRect.left, ftRect.top, ftRect.right, ftRect.bottom};
+        rectTransform.map(rect, 0, rect, 0);
+        return new Rect(rect[0], rect[1], rect[2], rect[3]);
+    }
 
+    /**
+     * 批量调整FT人脸框，不产生对象分配
+     *
+     * @param src   FT人脸框，每4个元素依次为left、top、right、bottom
+     * @param dst   调整后的人脸框，格式同src，可以与src为同一数组
+     * @param count 人脸框数量
+     */
+    public void mapRects(int[] src, int[] dst, int count) {
+        RectTransform transform = rectTransform;
+        for (int i = 0; i < count; i++) {
+            transform.map(src, i * 4, dst, i * 4);
+        }
+    }
+
+    /**
+     * 将FT人脸框调整为需要被绘制到View上的框，不依赖Android API，便于在主机端测试及基准测试
+     *
+     * @param rect                     人脸框，依次为left、top、right、bottom，调整结果写回该数组
+     * @param previewWidth             预览宽度
+     * @param previewHeight            预览高度
+     * @param canvasWidth              绘制控件的宽度
+     * @param canvasHeight             绘制控件的高度
+     * @param cameraDisplayOrientation 旋转角度
+     * @param cameraId                 相机ID
+     * @param isMirror                 是否水平镜像显示
+     * @param mirrorHorizontal         水平再次镜像
+     * @param mirrorVertical           垂直再次镜像
+     */
+    public static void adjustRect(int[] rect, int previewWidth, int previewHeight, int canvasWidth, int canvasHeight,
+                                  int cameraDisplayOrientation, int cameraId,
+                                  boolean isMirror, boolean mirrorHorizontal, boolean mirrorVertical) {
         float horizontalRatio;
         float verticalRatio;
         if (cameraDisplayOrientation % 180 == 0) {
@@ -95,54 +155,57 @@ public class DrawHelper {
             horizontalRatio = (float) canvasHeight / (float) previewWidth;
             verticalRatio = (float) canvasWidth / (float) previewHeight;
         }
-        rect.left *= horizontalRatio;
-        rect.right *= horizontalRatio;
-        rect.top *= verticalRatio;
-        rect.bottom *= verticalRatio;
-        Rect newRect = new Rect();
+        int left = (int) (rect[0] * horizontalRatio);
+        int top = (int) (rect[1] * verticalRatio);
+        int right = (int) (rect[2] * horizontalRatio);
+        int bottom = (int) (rect[3] * verticalRatio);
+        int newLeft = 0;
+        int newTop = 0;
+        int newRight = 0;
+        int newBottom = 0;
         switch (cameraDisplayOrientation) {
             case 0:
                 if (cameraId == Camera.CameraInfo.CAMERA_FACING_FRONT) {
-                    newRect.left = canvasWidth - rect.right;
-                    newRect.right = canvasWidth - rect.left;
+                    newLeft = canvasWidth - right;
+                    newRight = canvasWidth - left;
                 } else {
-                    newRect.left = rect.left;
-                    newRect.right = rect.right;
+                    newLeft = left;
+                    newRight = right;
                 }
-                newRect.top = rect.top;
-                newRect.bottom = rect.bottom;
+                newTop = top;
+                newBottom = bottom;
                 break;
             case 90:
-                newRect.right = canvasWidth - rect.top;
-                newRect.left = canvasWidth - rect.bottom;
+                newRight = canvasWidth - top;
+                newLeft = canvasWidth - bottom;
                 if (cameraId == Camera.CameraInfo.CAMERA_FACING_FRONT) {
-                    newRect.top = canvasHeight - rect.right;
-                    newRect.bottom = canvasHeight - rect.left;
+                    newTop = canvasHeight - right;
+                    newBottom = canvasHeight - left;
                 } else {
-                    newRect.top = rect.left;
-                    newRect.bottom = rect.right;
+                    newTop = left;
+                    newBottom = right;
                 }
                 break;
             case 180:
-                newRect.top = canvasHeight - rect.bottom;
-                newRect.bottom = canvasHeight - rect.top;
+                newTop = canvasHeight - bottom;
+                newBottom = canvasHeight - top;
                 if (cameraId == Camera.CameraInfo.CAMERA_FACING_FRONT) {
-                    newRect.left = rect.left;
-                    newRect.right = rect.right;
+                    newLeft = left;
+                    newRight = right;
                 } else {
-                    newRect.left = canvasWidth - rect.right;
-                    newRect.right = canvasWidth - rect.left;
+                    newLeft = canvasWidth - right;
+                    newRight = canvasWidth - left;
                 }
                 break;
             case 270:
-                newRect.left = rect.top;
-                newRect.right = rect.bottom;
+                newLeft = top;
+                newRight = bottom;
                 if (cameraId == Camera.CameraInfo.CAMERA_FACING_FRONT) {
-                    newRect.top = rect.left;
-                    newRect.bottom = rect.right;
+                    newTop = left;
+                    newBottom = right;
                 } else {
-                    newRect.top = canvasHeight - rect.right;
-                    newRect.bottom = canvasHeight - rect.left;
+                    newTop = canvasHeight - right;
+                    newBottom = canvasHeight - left;
                 }
                 break;
             default:
@@ -159,18 +222,19 @@ public class DrawHelper {
          * XOR
          */
         if (isMirror ^ mirrorHorizontal) {
-            int left = newRect.left;
-            int right = newRect.right;
-            newRect.left = canvasWidth - right;
-            newRect.right = canvasWidth - left;
+            int mirroredLeft = canvasWidth - newRight;
+            newRight = canvasWidth - newLeft;
+            newLeft = mirroredLeft;
         }
         if (mirrorVertical) {
-            int top = newRect.top;
-            int bottom = newRect.bottom;
-            newRect.top = canvasHeight - bottom;
-            newRect.bottom = canvasHeight - top;
+            int mirroredTop = canvasHeight - newBottom;
+            newBottom = canvasHeight - newTop;
+            newTop = mirroredTop;
         }
-        return newRect;
+        rect[0] = newLeft;
+        rect[1] = newTop;
+        rect[2] = newRight;
+        rect[3] = newBottom;
     }
 
     /**
@@ -185,63 +249,91 @@ public class DrawHelper {
             return;
         }
         Paint paint = new Paint();
-        paint.setStyle(Paint.Style.STROKE);
         paint.setStrokeWidth(faceRectThickness);
-        paint.setColor(drawInfo.getColor());
-        Path mPath = new Path();
-        //左上
         Rect rect = drawInfo.getRect();
-        mPath.moveTo(rect.left, rect.top + rect.height() / 4);
-        mPath.lineTo(rect.left, rect.top);
-        mPath.lineTo(rect.left + rect.width() / 4, rect.top);
+        drawFaceRect(canvas, new Path(), paint, rect.left, rect.top, rect.right, rect.bottom,
+                drawInfo.getColor(), drawInfo.getText());
+    }
+
+    /**
+     * 使用调用方复用的画笔及路径绘制人脸框，不产生对象分配
+     *
+     * @param canvas 需要被绘制的view的canvas
+     * @param path   复用的路径，内容会被重置
+     * @param paint  复用的画笔，需预先设置线宽，颜色、样式及字号会被修改
+     * @param left   左
+     * @param top    上
+     * @param right  右
+     * @param bottom 下
+     * @param color  颜色
+     * @param text   绘制在左上角的文字，可为null
+     */
+    public static void drawFaceRect(Canvas canvas, Path path, Paint paint, int left, int top, int right, int bottom,
+                                    int color, String text) {
+        int width = right - left;
+        int height = bottom - top;
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setColor(color);
+        path.reset();
+        //左上
+        path.moveTo(left, top + height / 4);
+        path.lineTo(left, top);
+        path.lineTo(left + width / 4, top);
         //右上
-        mPath.moveTo(rect.right - rect.width() / 4, rect.top);
-        mPath.lineTo(rect.right, rect.top);
-        mPath.lineTo(rect.right, rect.top + rect.height() / 4);
+        path.moveTo(right - width / 4, top);
+        path.lineTo(right, top);
+        path.lineTo(right, top + height / 4);
         //右下
-        mPath.moveTo(rect.right, rect.bottom - rect.height() / 4);
-        mPath.lineTo(rect.right, rect.bottom);
-        mPath.lineTo(rect.right - rect.width() / 4, rect.bottom);
+        path.moveTo(right, bottom - height / 4);
+        path.lineTo(right, bottom);
+        path.lineTo(right - width / 4, bottom);
         //左下
-        mPath.moveTo(rect.left + rect.width() / 4, rect.bottom);
-        mPath.lineTo(rect.left, rect.bottom);
-        mPath.lineTo(rect.left, rect.bottom - rect.height() / 4);
-        canvas.drawPath(mPath, paint);
+        path.moveTo(left + width / 4, bottom);
+        path.lineTo(left, bottom);
+        path.lineTo(left, bottom - height / 4);
+        canvas.drawPath(path, paint);
 
         //若文字不为null，绘制在左上角
-        if (drawInfo.getText() != null) {
+        if (text != null) {
             paint.setStyle(Paint.Style.FILL_AND_STROKE);
-            paint.setTextSize(rect.width() / 8);
-            canvas.drawText(drawInfo.getText(), rect.left, rect.top - 10, paint);
+            paint.setTextSize(width / 8);
+            canvas.drawText(text, left, top - 10, paint);
         }
     }
 
     public void setPreviewWidth(int previewWidth) {
         this.previewWidth = previewWidth;
+        updateRectTransform();
     }
 
     public void setPreviewHeight(int previewHeight) {
         this.previewHeight = previewHeight;
+        updateRectTransform();
     }
 
     public void setCanvasWidth(int canvasWidth) {
         this.canvasWidth = canvasWidth;
+        updateRectTransform();
     }
 
     public void setCanvasHeight(int canvasHeight) {
         this.canvasHeight = canvasHeight;
+        updateRectTransform();
     }
 
     public void setCameraDisplayOrientation(int cameraDisplayOrientation) {
         this.cameraDisplayOrientation = cameraDisplayOrientation;
+        updateRectTransform();
     }
 
     public void setCameraId(int cameraId) {
         this.cameraId = cameraId;
+        updateRectTransform();
     }
 
     public void setMirror(boolean mirror) {
         isMirror = mirror;
+        updateRectTransform();
     }
 
     public int getPreviewWidth() {
@@ -278,6 +370,7 @@ public class DrawHelper {
 
     public void setMirrorHorizontal(boolean mirrorHorizontal) {
         this.mirrorHorizontal = mirrorHorizontal;
+        updateRectTransform();
     }
 
     public boolean isMirrorVertical() {
@@ -286,5 +379,127 @@ public class DrawHelper {
 
     public void setMirrorVertical(boolean mirrorVertical) {
         this.mirrorVertical = mirrorVertical;
+        updateRectTransform();
+    }
+
+    /**
+     * FT人脸框到View坐标的变换，结果与{@link #adjustRect(int[], int, int, int, int, int, int, boolean, boolean, boolean)}完全一致。
+     * <p>
+     * 调整后的每个坐标都可以表示为 offset + sign * (int) (某个原始坐标 * ratio)，
+     * 因此将旋转角度、前后摄像头及镜像的分支在构造时展开为4组系数，映射时只需查表计算
+     */
+    private static final class RectTransform {
+        /**
+         * 调整后left、top、right、bottom分别取自原始人脸框的哪个坐标
+         */
+        private final int[] sourceIndexes = new int[4];
+        private final float[] ratios = new float[4];
+        private final int[] signs = new int[4];
+        private final int[] offsets = new int[4];
+
+        private RectTransform(int previewWidth, int previewHeight, int canvasWidth, int canvasHeight,
+                              int cameraDisplayOrientation, int cameraId,
+                              boolean isMirror, boolean mirrorHorizontal, boolean mirrorVertical) {
+            float horizontalRatio;
+            float verticalRatio;
+            if (cameraDisplayOrientation % 180 == 0) {
+                horizontalRatio = (float) canvasWidth / (float) previewWidth;
+                verticalRatio = (float) canvasHeight / (float) previewHeight;
+            } else {
+                horizontalRatio = (float) canvasHeight / (float) previewWidth;
+                verticalRatio = (float) canvasWidth / (float) previewHeight;
+            }
+            boolean front = cameraId == Camera.CameraInfo.CAMERA_FACING_FRONT;
+            switch (cameraDisplayOrientation) {
+                case 0:
+                    if (front) {
+                        set(0, 2, -1, canvasWidth);
+                        set(2, 0, -1, canvasWidth);
+                    } else {
+                        set(0, 0, 1, 0);
+                        set(2, 2, 1, 0);
+                    }
+                    set(1, 1, 1, 0);
+                    set(3, 3, 1, 0);
+                    break;
+                case 90:
+                    set(0, 3, -1, canvasWidth);
+                    set(2, 1, -1, canvasWidth);
+                    if (front) {
+                        set(1, 2, -1, canvasHeight);
+                        set(3, 0, -1, canvasHeight);
+                    } else {
+                        set(1, 0, 1, 0);
+                        set(3, 2, 1, 0);
+                    }
+                    break;
+                case 180:
+                    set(1, 3, -1, canvasHeight);
+                    set(3, 1, -1, canvasHeight);
+                    if (front) {
+                        set(0, 0, 1, 0);
+                        set(2, 2, 1, 0);
+                    } else {
+                        set(0, 2, -1, canvasWidth);
+                        set(2, 0, -1, canvasWidth);
+                    }
+                    break;
+                case 270:
+                    set(0, 1, 1, 0);
+                    set(2, 3, 1, 0);
+                    if (front) {
+                        set(1, 0, 1, 0);
+                        set(3, 2, 1, 0);
+                    } else {
+                        set(1, 2, -1, canvasHeight);
+                        set(3, 0, -1, canvasHeight);
+                    }
+                    break;
+                default:
+                    //未知角度时调整结果为0，即sign及offset均为0
+                    break;
+            }
+            //镜像：newLeft = canvasWidth - newRight，newRight = canvasWidth - newLeft，垂直方向同理
+            if (isMirror ^ mirrorHorizontal) {
+                mirror(0, 2, canvasWidth);
+            }
+            if (mirrorVertical) {
+                mirror(1, 3, canvasHeight);
+            }
+            for (int i = 0; i < 4; i++) {
+                ratios[i] = sourceIndexes[i] % 2 == 0 ? horizontalRatio : verticalRatio;
+            }
+        }
+
+        private void set(int target, int sourceIndex, int sign, int offset) {
+            sourceIndexes[target] = sourceIndex;
+            signs[target] = sign;
+            offsets[target] = offset;
+        }
+
+        private void mirror(int first, int second, int size) {
+            int firstSourceIndex = sourceIndexes[first];
+            int firstSign = signs[first];
+            int firstOffset = offsets[first];
+            set(first, sourceIndexes[second], -signs[second], size - offsets[second]);
+            set(second, firstSourceIndex, -firstSign, size - firstOffset);
+        }
+
+        /**
+         * @param src       原始人脸框
+         * @param srcOffset 原始人脸框在src中的起始位置
+         * @param dst       调整后的人脸框，可以与src为同一数组
+         * @param dstOffset 调整后的人脸框在dst中的起始位置
+         */
+        private void map(int[] src, int srcOffset, int[] dst, int dstOffset) {
+            int v0 = (int) (src[srcOffset + sourceIndexes[0]] * ratios[0]);
+            int v1 = (int) (src[srcOffset + sourceIndexes[1]] * ratios[1]);
+            int v2 = (int) (src[srcOffset + sourceIndexes[2]] * ratios[2]);
+            int v3 = (int) (src[srcOffset + sourceIndexes[3]] * ratios[3]);
+            dst[dstOffset] = offsets[0] + signs[0] * v0;
+            dst[dstOffset + 1] = offsets[1] + signs[1] * v1;
+            dst[dstOffset + 2] = offsets[2] + signs[2] * v2;
+            dst[dstOffset + 3] = offsets[3] + signs[3] * v3;
+        }
     }
 }
@@ -0,0 +1,130 @@
+package com.arcsoft.idcardveridemo.draw;
+
+/**
+ * 一帧人脸框绘制数据，预先分配数组并复用，稳定运行时不产生对象分配
+ * <p>
+ * 由{@link FaceRectView}持有三个实例轮换使用：生产线程填充后台帧，绘制线程读取前台帧，
+ * 两者通过原子交换中间帧传递数据
+ */
+public class FaceOverlayFrame {
+    private static final int DEFAULT_CAPACITY = 4;
+
+    /**
+     * 人脸框，每4个元素依次为left、top、right、bottom
+     */
+    private int[] rects;
+    private int[] colors;
+    private String[] texts;
+    private int size;
+    /**
+     * 是否为绘制线程尚未取走的新数据
+     */
+    boolean dirty;
+
+    public FaceOverlayFrame() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public FaceOverlayFrame(int capacity) {
+        capacity = Math.max(1, capacity);
+        rects = new int[capacity * 4];
+        colors = new int[capacity];
+        texts = new String[capacity];
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            texts[i] = null;
+        }
+        size = 0;
+    }
+
+    /**
+     * 添加一个人脸框，容量不足时扩容
+     *
+     * @param left   左
+     * @param top    上
+     * @param right  右
+     * @param bottom 下
+     * @param color  颜色
+     * @param text   绘制在左上角的文字，可为null
+     * @return 人脸框的序号
+     */
+    public int add(int left, int top, int right, int bottom, int color, String text) {
+        if (size == colors.length) {
+            grow();
+        }
+        int offset = size * 4;
+        rects[offset] = left;
+        rects[offset + 1] = top;
+        rects[offset + 2] = right;
+        rects[offset + 3] = bottom;
+        colors[size] = color;
+        texts[size] = text;
+        return size++;
+    }
+
+    /**
+     * 复制另一帧的数据，容量足够时不产生对象分配
+     *
+     * @param other 源数据
+     */
+    public void copyFrom(FaceOverlayFrame other) {
+        clear();
+        while (colors.length < other.size) {
+            grow();
+        }
+        System.arraycopy(other.rects, 0, rects, 0, other.size * 4);
+        System.arraycopy(other.colors, 0, colors, 0, other.size);
+        System.arraycopy(other.texts, 0, texts, 0, other.size);
+        size = other.size;
+    }
+
+    private void grow() {
+        int capacity = colors.length * 2;
+        int[] newRects = new int[capacity * 4];
+        System.arraycopy(rects, 0, newRects, 0, rects.length);
+        rects = newRects;
+        int[] newColors = new int[capacity];
+        System.arraycopy(colors, 0, newColors, 0, colors.length);
+        colors = newColors;
+        String[] newTexts = new String[capacity];
+        System.arraycopy(texts, 0, newTexts, 0, texts.length);
+        texts = newTexts;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return 人脸框数组，第i个人脸框位于[i * 4, i * 4 + 4)
+     */
+    public int[] getRects() {
+        return rects;
+    }
+
+    public int getLeft(int index) {
+        return rects[index * 4];
+    }
+
+    public int getTop(int index) {
+        return rects[index * 4 + 1];
+    }
+
+    public int getRight(int index) {
+        return rects[index * 4 + 2];
+    }
+
+    public int getBottom(int index) {
+        return rects[index * 4 + 3];
+    }
+
+    public int getColor(int index) {
+        return colors[index];
+    }
+
+    public String getText(int index) {
+        return texts[index];
+    }
+}
@@ -3,6 +3,8 @@ package com.arcsoft.idcardveridemo.draw;
 import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.Outline;
+import android.graphics.Paint;
+import android.graphics.Path;
 import android.graphics.Rect;
 import android.os.Build;
 import android.support.annotation.Nullable;
@@ -11,11 +13,43 @@ import android.view.View;
 import android.view.ViewOutlineProvider;
 
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * 人脸框绘制控件
+ * <p>
+ * 绘制数据采用三缓冲：生产线程在暂存帧上修改，提交时复制到后台帧并与中间帧原子交换，
+ * {@link #onDraw(Canvas)}取走中间帧作为前台帧绘制。每次提交只交换一次、刷新一次，
+ * 画笔及路径均复用，稳定运行时不产生对象分配
+ */
 public class FaceRectView extends View {
     private static final String TAG = "FaceRectView";
-    private CopyOnWriteArrayList<DrawInfo> drawInfoList = new CopyOnWriteArrayList<>();
+    private static final int FACE_RECT_THICKNESS = 5;
+
+    /**
+     * 生产线程修改的数据，即当前应显示的人脸框
+     */
+    private final FaceOverlayFrame stagingFrame = new FaceOverlayFrame();
+    /**
+     * 生产线程持有的后台帧
+     */
+    private FaceOverlayFrame backFrame = new FaceOverlayFrame();
+    /**
+     * 在生产线程与绘制线程之间传递的中间帧
+     */
+    private final AtomicReference<FaceOverlayFrame> pendingFrame = new AtomicReference<>(new FaceOverlayFrame());
+    /**
+     * 绘制线程持有的前台帧
+     */
+    private FaceOverlayFrame frontFrame = new FaceOverlayFrame();
+    /**
+     * 最近一次提交的人脸框数量，用于跳过空帧之间的重复刷新
+     */
+    private int committedSize;
+    private final Object commitLock = new Object();
+
+    private final Paint paint = new Paint();
+    private final Path path = new Path();
 
     private int radius = 0;
 
@@ -25,31 +59,77 @@ public class FaceRectView extends View {
 
     public FaceRectView(Context context, @Nullable AttributeSet attrs) {
         super(context, attrs);
+        paint.setStrokeWidth(FACE_RECT_THICKNESS);
     }
 
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
-        if (drawInfoList != null && drawInfoList.size() > 0) {
-            for (int i = 0; i < drawInfoList.size(); i++) {
-                DrawHelper.drawFaceRect(canvas, drawInfoList.get(i), 5);
+        if (pendingFrame.get().dirty) {
+            frontFrame = pendingFrame.getAndSet(frontFrame);
+            frontFrame.dirty = false;
+        }
+        FaceOverlayFrame frame = frontFrame;
+        for (int i = 0; i < frame.size(); i++) {
+            DrawHelper.drawFaceRect(canvas, path, paint, frame.getLeft(i), frame.getTop(i), frame.getRight(i),
+                    frame.getBottom(i), frame.getColor(i), frame.getText(i));
+        }
+    }
+
+    /**
+     * 开始编辑一帧绘制数据，返回已清空的暂存帧，填充完毕后调用{@link #commitFrame()}提交。
+     * 两者需在同一生产线程中成对调用
+     *
+     * @return 暂存帧
+     */
+    public FaceOverlayFrame beginFrame() {
+        stagingFrame.clear();
+        return stagingFrame;
+    }
+
+    /**
+     * 提交暂存帧并刷新控件，前后两帧均无人脸框时不刷新
+     */
+    public void commitFrame() {
+        synchronized (commitLock) {
+            int size = stagingFrame.size();
+            if (size == 0 && committedSize == 0) {
+                return;
             }
+            committedSize = size;
+            backFrame.copyFrom(stagingFrame);
+            backFrame.dirty = true;
+            backFrame = pendingFrame.getAndSet(backFrame);
         }
+        postInvalidate();
     }
 
     public void clearFaceInfo() {
-        drawInfoList.clear();
-        postInvalidate();
+        synchronized (commitLock) {
+            beginFrame();
+            commitFrame();
+        }
     }
 
     public void addFaceInfo(DrawInfo faceInfo) {
-        drawInfoList.add(faceInfo);
-        postInvalidate();
+        synchronized (commitLock) {
+            addToStaging(faceInfo);
+            commitFrame();
+        }
     }
 
     public void addFaceInfo(List<DrawInfo> faceInfoList) {
-        drawInfoList.addAll(faceInfoList);
-        postInvalidate();
+        synchronized (commitLock) {
+            for (int i = 0; i < faceInfoList.size(); i++) {
+                addToStaging(faceInfoList.get(i));
+            }
+            commitFrame();
+        }
+    }
+
+    private void addToStaging(DrawInfo faceInfo) {
+        Rect rect = faceInfo.getRect();
+        stagingFrame.add(rect.left, rect.top, rect.right, rect.bottom, faceInfo.getColor(), faceInfo.getText());
     }
 
     public void turnRound() {
@@ -73,4 +153,4 @@ public class FaceRectView extends View {
         return radius;
     }
 
-}
\ No newline at end of file
+}
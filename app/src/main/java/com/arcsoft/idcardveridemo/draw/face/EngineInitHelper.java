@@ -0,0 +1,424 @@
+package com.arcsoft.idcardveridemo.draw.face;
+
+import android.content.Context;
+import android.graphics.Rect;
+import android.util.Log;
+
+import com.arcsoft.face.ActiveFileInfo;
+import com.arcsoft.face.ErrorInfo;
+import com.arcsoft.face.FaceEngine;
+import com.arcsoft.face.FaceFeature;
+import com.arcsoft.face.FaceInfo;
+import com.arcsoft.face.enums.DetectFaceOrientPriority;
+import com.arcsoft.face.enums.DetectMode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 引擎初始化辅助类，在后台线程中完成激活、并行初始化所有引擎及预热，不阻塞UI线程及相机打开。
+ * <p>
+ * 未激活时先激活再初始化，每个引擎只初始化一次；预热使用程序生成的合成图像分别执行一次人脸检测及特征提取，
+ * 使首次真实调用不再承担冷启动耗时。完成后通过{@link EngineInitListener}、{@link #isReady()}
+ * 及{@link #awaitReady(long, TimeUnit)}通知就绪
+ */
+public class EngineInitHelper {
+    private static final String TAG = "EngineInitHelper";
+    /**
+     * 检测时人脸最小尺寸比例
+     */
+    private static final int DETECT_FACE_SCALE_VAL = 16;
+    private static final int DETECT_FACE_MAX_NUM = 1;
+
+    private Context context;
+    private String appId;
+    private String sdkKey;
+    private List<FaceEngine> engines;
+    private List<DetectMode> detectModes;
+    /**
+     * 各引擎的功能组合，为0时使用combinedMask
+     */
+    private List<Integer> masks;
+    private int combinedMask;
+    private boolean warmUp;
+    private int warmUpWidth;
+    private int warmUpHeight;
+    private EngineInitListener engineInitListener;
+
+    private final CountDownLatch finishedLatch = new CountDownLatch(1);
+    private volatile boolean ready = false;
+    private volatile int result = ErrorInfo.MOK;
+    private ExecutorService initExecutor;
+    private Thread initThread;
+    /**
+     * 已调用{@link #release(long, TimeUnit)}，尚未开始的初始化及预热不再执行
+     */
+    private volatile boolean released = false;
+    /**
+     * 各引擎是否初始化成功，只在初始化线程结束后读取
+     */
+    private final boolean[] initialized;
+    /**
+     * 以下两个字段由this加锁访问，用于决定由调用方还是初始化线程销毁引擎
+     */
+    private boolean finished = false;
+    private boolean unInitOnFinish = false;
+
+    private EngineInitHelper(Builder builder) {
+        context = builder.context.getApplicationContext();
+        appId = builder.appId;
+        sdkKey = builder.sdkKey;
+        engines = builder.engines;
+        detectModes = builder.detectModes;
+        masks = builder.masks;
+        combinedMask = builder.combinedMask;
+        warmUp = builder.warmUp;
+        warmUpWidth = builder.warmUpWidth;
+        warmUpHeight = builder.warmUpHeight;
+        engineInitListener = builder.engineInitListener;
+        initialized = new boolean[engines.size()];
+    }
+
+    /**
+     * 开始初始化，立即返回
+     */
+    public synchronized void start() {
+        if (initThread != null || released) {
+            return;
+        }
+        initExecutor = Executors.newFixedThreadPool(engines.size());
+        initThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.currentTimeMillis();
+                int initResult = initAll();
+                result = initResult;
+                ready = initResult == ErrorInfo.MOK;
+                initExecutor.shutdown();
+                long cost = System.currentTimeMillis() - start;
+                Log.i(TAG, "engine init finished: " + initResult + ", engines: " + engines.size() + ", cost: " + cost);
+                boolean unInit;
+                synchronized (EngineInitHelper.this) {
+                    finished = true;
+                    unInit = unInitOnFinish;
+                }
+                //释放时初始化尚未结束，调用方未销毁引擎，由初始化线程销毁
+                if (unInit) {
+                    unInitEngines();
+                }
+                finishedLatch.countDown();
+                EngineInitListener listener = engineInitListener;
+                if (listener != null) {
+                    listener.onEngineInitFinished(initResult, cost);
+                }
+            }
+        }, "EngineInitHelper-init");
+        initThread.start();
+    }
+
+    private int initAll() {
+        //已激活时getActiveFileInfo返回MOK，未激活时先激活，避免初始化失败后再次初始化
+        if (appId != null && FaceEngine.getActiveFileInfo(context, new ActiveFileInfo()) != ErrorInfo.MOK) {
+            int activeResult = FaceEngine.active(context, appId, sdkKey);
+            Log.i(TAG, "activeResult: " + activeResult);
+            if (activeResult != ErrorInfo.MOK && activeResult != ErrorInfo.MERR_ASF_ALREADY_ACTIVATED) {
+                return activeResult;
+            }
+        }
+        if (released) {
+            return ErrorInfo.MERR_BAD_STATE;
+        }
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < engines.size(); i++) {
+            final int index = i;
+            final FaceEngine engine = engines.get(i);
+            final DetectMode detectMode = detectModes.get(i);
+            final int mask = masks.get(i) != 0 ? masks.get(i) : combinedMask;
+            tasks.add(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    if (released) {
+                        return ErrorInfo.MERR_BAD_STATE;
+                    }
+                    int initResult = engine.init(context, detectMode, DetectFaceOrientPriority.ASF_OP_ALL_OUT,
+                            DETECT_FACE_SCALE_VAL, DETECT_FACE_MAX_NUM, mask);
+                    initialized[index] = initResult == ErrorInfo.MOK;
+                    if (initResult == ErrorInfo.MOK && warmUp && !released) {
+                        warmUp(engine, detectMode, mask);
+                    }
+                    return initResult;
+                }
+            });
+        }
+        int initResult = ErrorInfo.MOK;
+        try {
+            for (Future<Integer> future : initExecutor.invokeAll(tasks)) {
+                int engineResult = future.get();
+                if (engineResult != ErrorInfo.MOK && initResult == ErrorInfo.MOK) {
+                    initResult = engineResult;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ErrorInfo.MERR_BAD_STATE;
+        } catch (ExecutionException e) {
+            Log.e(TAG, "initAll: ", e.getCause());
+            return ErrorInfo.MERR_UNKNOWN;
+        }
+        return initResult;
+    }
+
+    /**
+     * 使用合成图像按引擎功能执行一次人脸检测、特征提取及活体检测。合成图像中通常检测不到人脸，
+     * 因此特征提取及活体检测使用位于图像中央的人脸框，只为触发模型加载及内存分配，结果不使用
+     */
+    private void warmUp(FaceEngine engine, DetectMode detectMode, int mask) {
+        boolean video = detectMode == DetectMode.ASF_DETECT_MODE_VIDEO;
+        int format = video ? FaceEngine.CP_PAF_NV21 : FaceEngine.CP_PAF_BGR24;
+        byte[] data = createWarmUpFrame(warmUpWidth, warmUpHeight, video);
+        StringBuilder log = new StringBuilder("warmUp:");
+        List<FaceInfo> faceInfoList = new ArrayList<>();
+        if ((mask & FaceEngine.ASF_FACE_DETECT) != 0) {
+            long start = System.nanoTime();
+            int detectResult = engine.detectFaces(data, warmUpWidth, warmUpHeight, format, faceInfoList);
+            log.append(" detect ").append(detectResult).append(' ').append((System.nanoTime() - start) / 1000000).append("ms");
+        }
+        FaceInfo faceInfo;
+        if (faceInfoList.isEmpty()) {
+            int faceSize = Math.min(warmUpWidth, warmUpHeight) / 2;
+            int left = (warmUpWidth - faceSize) / 2;
+            int top = (warmUpHeight - faceSize) / 2;
+            faceInfo = new FaceInfo(new Rect(left, top, left + faceSize, top + faceSize), FaceEngine.ASF_OC_0);
+        } else {
+            faceInfo = faceInfoList.get(0);
+        }
+        if ((mask & FaceEngine.ASF_FACE_RECOGNITION) != 0) {
+            long start = System.nanoTime();
+            int extractResult = engine.extractFaceFeature(data, warmUpWidth, warmUpHeight, format, faceInfo, new FaceFeature());
+            log.append(", extract ").append(extractResult).append(' ').append((System.nanoTime() - start) / 1000000).append("ms");
+        }
+        if ((mask & FaceEngine.ASF_LIVENESS) != 0) {
+            long start = System.nanoTime();
+            int livenessResult = engine.process(data, warmUpWidth, warmUpHeight, format, Collections.singletonList(faceInfo), FaceEngine.ASF_LIVENESS);
+            log.append(", liveness ").append(livenessResult).append(' ').append((System.nanoTime() - start) / 1000000).append("ms");
+        }
+        Log.i(TAG, log.toString());
+    }
+
+    /**
+     * 生成预热用的合成图像：灰色背景上中央一个亮色椭圆，其中两个暗色眼睛区域
+     *
+     * @param nv21 true为NV21格式，false为BGR24格式
+     */
+    static byte[] createWarmUpFrame(int width, int height, boolean nv21) {
+        int centerX = width / 2;
+        int centerY = height / 2;
+        int radiusX = Math.max(1, width / 6);
+        int radiusY = Math.max(1, height / 4);
+        int eyeRadius = Math.max(1, radiusX / 5);
+        byte[] luma = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int dx = x - centerX;
+                int dy = y - centerY;
+                int value = 96;
+                if ((long) dx * dx * radiusY * radiusY + (long) dy * dy * radiusX * radiusX
+                        <= (long) radiusX * radiusX * radiusY * radiusY) {
+                    value = 200;
+                    int eyeY = dy + radiusY / 3;
+                    int eyeX = Math.abs(dx) - radiusX / 2;
+                    if (eyeX * eyeX + eyeY * eyeY <= eyeRadius * eyeRadius) {
+                        value = 40;
+                    }
+                }
+                luma[y * width + x] = (byte) value;
+            }
+        }
+        if (!nv21) {
+            byte[] bgr = new byte[width * height * 3];
+            for (int i = 0; i < luma.length; i++) {
+                bgr[i * 3] = luma[i];
+                bgr[i * 3 + 1] = luma[i];
+                bgr[i * 3 + 2] = luma[i];
+            }
+            return bgr;
+        }
+        byte[] data = new byte[width * height * 3 / 2];
+        System.arraycopy(luma, 0, data, 0, luma.length);
+        //色度平面取128，即无色彩
+        for (int i = luma.length; i < data.length; i++) {
+            data[i] = (byte) 128;
+        }
+        return data;
+    }
+
+    /**
+     * @return 是否已全部初始化成功
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * @return 初始化是否已结束，无论成功与否
+     */
+    public boolean isFinished() {
+        return finishedLatch.getCount() == 0;
+    }
+
+    /**
+     * @return 初始化结果，未结束时为{@link ErrorInfo#MOK}
+     */
+    public int getResult() {
+        return result;
+    }
+
+    /**
+     * 等待初始化结束
+     *
+     * @param timeout 超时时间
+     * @param unit    时间单位
+     * @return 是否已全部初始化成功，超时返回false
+     * @throws InterruptedException 等待时被中断
+     */
+    public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+        return finishedLatch.await(timeout, unit) && ready;
+    }
+
+    /**
+     * 不再回调初始化结果，尚未开始的引擎初始化及预热不再执行，并等待正在进行的初始化结束。
+     * 超时仍未结束时，初始化线程会在结束后自行销毁已初始化的引擎，调用方不可再销毁这些引擎，
+     * 避免与仍在进行的激活、初始化或预热同时操作引擎
+     *
+     * @param timeout 等待超时时间
+     * @param unit    时间单位
+     * @return 调用方是否可以销毁引擎，未开始或已结束时为true，超时为false
+     */
+    public boolean release(long timeout, TimeUnit unit) {
+        engineInitListener = null;
+        released = true;
+        synchronized (this) {
+            if (initThread == null) {
+                return true;
+            }
+        }
+        try {
+            finishedLatch.await(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (finished) {
+                return true;
+            }
+            unInitOnFinish = true;
+            return false;
+        }
+    }
+
+    private void unInitEngines() {
+        for (int i = 0; i < engines.size(); i++) {
+            if (initialized[i]) {
+                engines.get(i).unInit();
+            }
+        }
+        Log.i(TAG, "engines unInit after release");
+    }
+
+    public static final class Builder {
+        private Context context;
+        private String appId;
+        private String sdkKey;
+        private List<FaceEngine> engines = new ArrayList<>();
+        private List<DetectMode> detectModes = new ArrayList<>();
+        private List<Integer> masks = new ArrayList<>();
+        private int combinedMask = FaceEngine.ASF_FACE_DETECT | FaceEngine.ASF_FACE_RECOGNITION;
+        /**
+         * 是否在初始化后预热
+         */
+        private boolean warmUp = true;
+        private int warmUpWidth = 640;
+        private int warmUpHeight = 480;
+        private EngineInitListener engineInitListener;
+
+        public Builder() {
+        }
+
+        public Builder context(Context val) {
+            context = val;
+            return this;
+        }
+
+        /**
+         * 设置激活信息，未激活时会先激活，不设置则不检查激活状态
+         */
+        public Builder activeKey(String appId, String sdkKey) {
+            this.appId = appId;
+            this.sdkKey = sdkKey;
+            return this;
+        }
+
+        /**
+         * 添加需要初始化的引擎，可多次调用
+         *
+         * @param engine     引擎
+         * @param detectMode 检测模式，VIDEO模式预热时使用NV21格式，IMAGE模式使用BGR24格式
+         */
+        public Builder engine(FaceEngine engine, DetectMode detectMode) {
+            return engine(engine, detectMode, 0);
+        }
+
+        /**
+         * 添加需要初始化的引擎，使用单独的功能组合，可多次调用
+         *
+         * @param engine     引擎
+         * @param detectMode 检测模式
+         * @param mask       功能组合，如活体检测引擎为{@link FaceEngine#ASF_LIVENESS}，为0时使用{@link #combinedMask(int)}
+         */
+        public Builder engine(FaceEngine engine, DetectMode detectMode, int mask) {
+            engines.add(engine);
+            detectModes.add(detectMode);
+            masks.add(mask);
+            return this;
+        }
+
+        public Builder combinedMask(int val) {
+            combinedMask = val;
+            return this;
+        }
+
+        public Builder warmUp(boolean val) {
+            warmUp = val;
+            return this;
+        }
+
+        public Builder warmUpSize(int width, int height) {
+            warmUpWidth = width;
+            warmUpHeight = height;
+            return this;
+        }
+
+        public Builder engineInitListener(EngineInitListener val) {
+            engineInitListener = val;
+            return this;
+        }
+
+        public EngineInitHelper build() {
+            if (context == null) {
+                throw new IllegalArgumentException("context must not be null");
+            }
+            if (engines.isEmpty()) {
+                throw new IllegalArgumentException("at least one engine is required");
+            }
+            return new EngineInitHelper(this);
+        }
+    }
+}
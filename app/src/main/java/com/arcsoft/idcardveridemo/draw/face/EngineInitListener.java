@@ -0,0 +1,15 @@
+package com.arcsoft.idcardveridemo.draw.face;
+
+/**
+ * 引擎初始化回调，回调在初始化线程执行
+ */
+public interface EngineInitListener {
+
+    /**
+     * 激活、初始化及预热全部结束后的回调
+     *
+     * @param result 结果，全部成功时为{@link com.arcsoft.face.ErrorInfo#MOK}，否则为激活或首个失败引擎的错误码
+     * @param cost   总耗时，单位毫秒
+     */
+    void onEngineInitFinished(int result, long cost);
+}
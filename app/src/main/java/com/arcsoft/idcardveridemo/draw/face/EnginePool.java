@@ -0,0 +1,195 @@
+package com.arcsoft.idcardveridemo.draw.face;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 引擎池，持有多个已初始化的引擎实例，每个任务租用一个引擎，使用完毕后归还，
+ * 使多个线程可以同时调用引擎，而不是在同一个引擎上串行执行
+ *
+ * @param <T> 引擎类型
+ */
+public class EnginePool<T> {
+    private final List<T> engines;
+    private final ArrayBlockingQueue<T> idleEngines;
+    private final long createTime;
+
+    /**
+     * 累计租用次数
+     */
+    private final AtomicLong leaseCount = new AtomicLong();
+    /**
+     * 因无空闲引擎而等待的租用次数
+     */
+    private final AtomicLong waitCount = new AtomicLong();
+    /**
+     * 累计等待时长，单位纳秒
+     */
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    /**
+     * 累计占用时长，单位纳秒
+     */
+    private final AtomicLong totalBusyNanos = new AtomicLong();
+    /**
+     * 当前被租用的引擎数
+     */
+    private final AtomicInteger inUseCount = new AtomicInteger();
+    /**
+     * 同时被租用的最大引擎数
+     */
+    private final AtomicInteger peakInUseCount = new AtomicInteger();
+    /**
+     * 每个引擎被租用的时间点，用于统计占用时长
+     */
+    private final long[] leaseStartNanos;
+
+    /**
+     * @param engines 已初始化的引擎
+     */
+    public EnginePool(List<T> engines) {
+        if (engines == null || engines.isEmpty()) {
+            throw new IllegalArgumentException("engines must not be empty");
+        }
+        this.engines = engines;
+        idleEngines = new ArrayBlockingQueue<>(engines.size(), false, engines);
+        leaseStartNanos = new long[engines.size()];
+        createTime = System.nanoTime();
+    }
+
+    /**
+     * 租用一个引擎，无空闲引擎时阻塞等待
+     *
+     * @return 引擎
+     * @throws InterruptedException 等待时被中断
+     */
+    public T acquire() throws InterruptedException {
+        T engine = idleEngines.poll();
+        if (engine == null) {
+            long waitStart = System.nanoTime();
+            waitCount.incrementAndGet();
+            engine = idleEngines.take();
+            totalWaitNanos.addAndGet(System.nanoTime() - waitStart);
+        }
+        onLeased(engine);
+        return engine;
+    }
+
+    /**
+     * 在指定时间内租用一个引擎
+     *
+     * @param timeout 超时时间
+     * @param unit    时间单位
+     * @return 引擎，超时返回null
+     * @throws InterruptedException 等待时被中断
+     */
+    public T acquire(long timeout, TimeUnit unit) throws InterruptedException {
+        T engine = idleEngines.poll();
+        if (engine == null) {
+            long waitStart = System.nanoTime();
+            waitCount.incrementAndGet();
+            engine = idleEngines.poll(timeout, unit);
+            totalWaitNanos.addAndGet(System.nanoTime() - waitStart);
+            if (engine == null) {
+                return null;
+            }
+        }
+        onLeased(engine);
+        return engine;
+    }
+
+    /**
+     * 归还引擎
+     *
+     * @param engine 通过{@link #acquire()}租用的引擎
+     */
+    public void release(T engine) {
+        int index = indexOf(engine);
+        if (index < 0) {
+            throw new IllegalArgumentException("engine does not belong to this pool");
+        }
+        totalBusyNanos.addAndGet(System.nanoTime() - leaseStartNanos[index]);
+        inUseCount.decrementAndGet();
+        idleEngines.offer(engine);
+    }
+
+    private void onLeased(T engine) {
+        leaseStartNanos[indexOf(engine)] = System.nanoTime();
+        leaseCount.incrementAndGet();
+        int inUse = inUseCount.incrementAndGet();
+        int peak;
+        do {
+            peak = peakInUseCount.get();
+        } while (inUse > peak && !peakInUseCount.compareAndSet(peak, inUse));
+    }
+
+    private int indexOf(T engine) {
+        for (int i = 0; i < engines.size(); i++) {
+            if (engines.get(i) == engine) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return 池中的全部引擎，用于统一初始化及销毁
+     */
+    public List<T> getEngines() {
+        return engines;
+    }
+
+    public int size() {
+        return engines.size();
+    }
+
+    public int getInUseCount() {
+        return inUseCount.get();
+    }
+
+    public int getPeakInUseCount() {
+        return peakInUseCount.get();
+    }
+
+    public long getLeaseCount() {
+        return leaseCount.get();
+    }
+
+    public long getWaitCount() {
+        return waitCount.get();
+    }
+
+    /**
+     * @return 平均等待时长，单位毫秒
+     */
+    public double getAverageWaitTime() {
+        long count = leaseCount.get();
+        return count == 0 ? 0 : totalWaitNanos.get() / 1e6 / count;
+    }
+
+    /**
+     * @return 引擎池利用率，即创建以来所有引擎被占用的时间占比，范围[0,1]
+     */
+    public double getUtilization() {
+        long elapsed = System.nanoTime() - createTime;
+        if (elapsed <= 0) {
+            return 0;
+        }
+        return Math.min(1d, (double) totalBusyNanos.get() / ((double) elapsed * engines.size()));
+    }
+
+    @Override
+    public String toString() {
+        return "EnginePool{" +
+                "size=" + size() +
+                ", inUse=" + getInUseCount() +
+                ", peakInUse=" + getPeakInUseCount() +
+                ", leaseCount=" + getLeaseCount() +
+                ", waitCount=" + getWaitCount() +
+                ", averageWaitTime=" + getAverageWaitTime() +
+                ", utilization=" + getUtilization() +
+                '}';
+    }
+}
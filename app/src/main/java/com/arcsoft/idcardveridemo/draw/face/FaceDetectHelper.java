@@ -0,0 +1,268 @@
+package com.arcsoft.idcardveridemo.draw.face;
+
+import android.os.Process;
+import android.util.Log;
+
+import com.arcsoft.face.ErrorInfo;
+import com.arcsoft.face.FaceEngine;
+import com.arcsoft.face.FaceInfo;
+import com.arcsoft.idcardveridemo.camera.Frame;
+import com.arcsoft.idcardveridemo.metrics.PipelineMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 人脸检测辅助类，在独立线程中进行人脸检测，避免阻塞相机回调线程。
+ * 使用单槽位信箱传递帧数据，检测线程未及处理的旧帧会被新帧替换，保证每次检测的都是最新的图像。
+ * 信箱中的帧由本类持有一次引用，检测完成或被丢弃后释放
+ */
+public class FaceDetectHelper {
+    private static final String TAG = "FaceDetectHelper";
+    /**
+     * 检测线程已释放
+     */
+    private static final int ERROR_RELEASED = -1;
+    /**
+     * 人脸检测实现
+     */
+    private FaceDetector faceDetector;
+    /**
+     * 检测时持有的锁，使用ftEngine时为引擎本身，与其他使用该引擎的代码互斥
+     */
+    private Object detectLock;
+
+    private FaceDetectListener faceDetectListener;
+    /**
+     * 检测线程优先级，取值参考{@link Process}中的THREAD_PRIORITY_*
+     */
+    private int threadPriority;
+    /**
+     * 耗时统计，可为空
+     */
+    private PipelineMetrics pipelineMetrics;
+
+    private final Object mailboxLock = new Object();
+    /**
+     * 信箱中待检测的帧，为null表示信箱为空
+     */
+    private Frame pendingFrame;
+
+    private DetectThread detectThread;
+    private volatile boolean released = false;
+
+    /**
+     * 送入的帧数
+     */
+    private final AtomicLong offeredFrameCount = new AtomicLong();
+    /**
+     * 未检测就被新帧替换的帧数
+     */
+    private final AtomicLong droppedFrameCount = new AtomicLong();
+    /**
+     * 完成检测的帧数
+     */
+    private final AtomicLong detectedFrameCount = new AtomicLong();
+
+    private FaceDetectHelper(Builder builder) {
+        if (builder.ftEngine != null) {
+            faceDetector = new FaceEngineAdapter(builder.ftEngine);
+            detectLock = builder.ftEngine;
+        } else {
+            faceDetector = builder.faceDetector;
+            detectLock = faceDetector;
+        }
+        faceDetectListener = builder.faceDetectListener;
+        threadPriority = builder.threadPriority;
+        pipelineMetrics = builder.pipelineMetrics;
+        if (faceDetector == null) {
+            throw new RuntimeException("ftEngine or faceDetector must be specified!");
+        }
+        if (faceDetectListener == null) {
+            Log.e(TAG, "faceDetectListener is null, callback will not be called");
+        }
+    }
+
+    /**
+     * 启动检测线程
+     */
+    public void start() {
+        synchronized (mailboxLock) {
+            if (detectThread != null || released) {
+                return;
+            }
+            detectThread = new DetectThread();
+            detectThread.start();
+        }
+    }
+
+    /**
+     * 送入一帧待检测数据，若上一帧尚未开始检测则将其丢弃
+     *
+     * @param frame 图像帧，被接收时持有一次引用，调用方无需保持引用
+     * @return 是否被信箱接收，已释放时返回false
+     */
+    public boolean offer(Frame frame) {
+        if (frame == null) {
+            return false;
+        }
+        Frame droppedFrame;
+        synchronized (mailboxLock) {
+            if (released) {
+                return false;
+            }
+            droppedFrame = pendingFrame;
+            pendingFrame = frame.acquire();
+            mailboxLock.notifyAll();
+        }
+        offeredFrameCount.incrementAndGet();
+        if (droppedFrame != null) {
+            droppedFrameCount.incrementAndGet();
+            droppedFrame.release();
+        }
+        return true;
+    }
+
+    /**
+     * 停止检测线程并释放信箱中的帧
+     */
+    public void release() {
+        Frame droppedFrame;
+        synchronized (mailboxLock) {
+            released = true;
+            droppedFrame = pendingFrame;
+            pendingFrame = null;
+            if (detectThread != null) {
+                detectThread.interrupt();
+                detectThread = null;
+            }
+            mailboxLock.notifyAll();
+        }
+        if (droppedFrame != null) {
+            droppedFrame.release();
+        }
+    }
+
+    public long getOfferedFrameCount() {
+        return offeredFrameCount.get();
+    }
+
+    public long getDroppedFrameCount() {
+        return droppedFrameCount.get();
+    }
+
+    public long getDetectedFrameCount() {
+        return detectedFrameCount.get();
+    }
+
+    /**
+     * 人脸检测线程
+     */
+    private class DetectThread extends Thread {
+        private final List<FaceInfo> faceInfoList = new ArrayList<>();
+
+        private DetectThread() {
+            super(TAG);
+        }
+
+        @Override
+        public void run() {
+            Process.setThreadPriority(threadPriority);
+            while (!released) {
+                Frame frame;
+                synchronized (mailboxLock) {
+                    while (pendingFrame == null && !released) {
+                        try {
+                            mailboxLock.wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                    if (released) {
+                        return;
+                    }
+                    frame = pendingFrame;
+                    pendingFrame = null;
+                }
+                try {
+                    detect(frame);
+                } finally {
+                    frame.release();
+                }
+            }
+        }
+
+        private void detect(Frame frame) {
+            faceInfoList.clear();
+            int ftCode;
+            long detectStartTime = System.nanoTime();
+            synchronized (detectLock) {
+                ftCode = released ? ERROR_RELEASED : faceDetector.detectFaces(frame.getData(), frame.getWidth(), frame.getHeight(), frame.getFormat(), faceInfoList);
+            }
+            if (ftCode == ErrorInfo.MOK) {
+                detectedFrameCount.incrementAndGet();
+                if (pipelineMetrics != null) {
+                    pipelineMetrics.recordSince(PipelineMetrics.Stage.LIVE_DETECT, detectStartTime);
+                }
+            }
+            FaceDetectListener listener = faceDetectListener;
+            if (listener != null) {
+                listener.onFaceDetected(frame, faceInfoList, ftCode);
+                listener.onFrameProcessed(System.nanoTime() - detectStartTime);
+            }
+        }
+    }
+
+    public static final class Builder {
+        private FaceEngine ftEngine;
+        private FaceDetector faceDetector;
+        private FaceDetectListener faceDetectListener;
+        private int threadPriority = Process.THREAD_PRIORITY_DEFAULT;
+        private PipelineMetrics pipelineMetrics;
+
+        public Builder() {
+        }
+
+        public Builder ftEngine(FaceEngine val) {
+            ftEngine = val;
+            return this;
+        }
+
+        /**
+         * 指定人脸检测实现，未指定ftEngine时使用
+         *
+         * @param val 人脸检测实现
+         * @return Builder
+         */
+        public Builder faceDetector(FaceDetector val) {
+            faceDetector = val;
+            return this;
+        }
+
+        public Builder faceDetectListener(FaceDetectListener val) {
+            faceDetectListener = val;
+            return this;
+        }
+
+        public Builder threadPriority(int val) {
+            threadPriority = val;
+            return this;
+        }
+
+        /**
+         * 设置耗时统计，为空时不统计
+         *
+         * @param val 耗时统计
+         * @return Builder
+         */
+        public Builder pipelineMetrics(PipelineMetrics val) {
+            pipelineMetrics = val;
+            return this;
+        }
+
+        public FaceDetectHelper build() {
+            return new FaceDetectHelper(this);
+        }
+    }
+}
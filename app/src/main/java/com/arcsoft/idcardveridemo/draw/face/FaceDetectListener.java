@@ -0,0 +1,28 @@
+package com.arcsoft.idcardveridemo.draw.face;
+
+import com.arcsoft.face.FaceInfo;
+import com.arcsoft.idcardveridemo.camera.Frame;
+
+import java.util.List;
+
+/**
+ * 人脸检测回调，回调均在检测线程执行
+ */
+public interface FaceDetectListener {
+
+    /**
+     * 人脸检测完成后的回调
+     *
+     * @param frame        图像帧，仅在回调期间有效，若需在回调之外使用需调用{@link Frame#acquire()}
+     * @param faceInfoList 检测到的人脸信息，列表会被复用，若需在回调之外使用需拷贝
+     * @param errorCode    错误码
+     */
+    void onFaceDetected(Frame frame, List<FaceInfo> faceInfoList, int errorCode);
+
+    /**
+     * 一帧检测及{@link #onFaceDetected(Frame, List, int)}处理完成后的回调，可用于按负载调整分辨率
+     *
+     * @param cost 检测开始至onFaceDetected返回的耗时，单位纳秒
+     */
+    void onFrameProcessed(long cost);
+}
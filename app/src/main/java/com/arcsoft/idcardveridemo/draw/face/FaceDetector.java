@@ -0,0 +1,22 @@
+package com.arcsoft.idcardveridemo.draw.face;
+
+import com.arcsoft.face.FaceInfo;
+
+import java.util.List;
+
+/**
+ * 人脸检测接口，设备上由{@link FaceEngineAdapter}实现，主机端测试及基准测试可替换为模拟实现
+ */
+public interface FaceDetector {
+    /**
+     * 检测人脸
+     *
+     * @param data         图像数据
+     * @param width        图像宽度
+     * @param height       图像高度
+     * @param format       图像格式
+     * @param faceInfoList 检测到的人脸
+     * @return 错误码
+     */
+    int detectFaces(byte[] data, int width, int height, int format, List<FaceInfo> faceInfoList);
+}
@@ -0,0 +1,51 @@
+package com.arcsoft.idcardveridemo.draw.face;
+
+import com.arcsoft.face.ErrorInfo;
+import com.arcsoft.face.FaceEngine;
+import com.arcsoft.face.FaceFeature;
+import com.arcsoft.face.FaceInfo;
+import com.arcsoft.face.FaceSimilar;
+import com.arcsoft.face.enums.CompareModel;
+
+import java.util.List;
+
+/**
+ * 将{@link FaceEngine}适配为{@link FaceDetector}、{@link FaceFeatureExtractor}及{@link FaceFeatureComparator}
+ */
+public class FaceEngineAdapter implements FaceDetector, FaceFeatureExtractor, FaceFeatureComparator {
+    private final FaceEngine faceEngine;
+    /**
+     * 比对结果，与引擎一样不可并发使用，复用以避免逐条比对时分配对象
+     */
+    private final FaceSimilar faceSimilar = new FaceSimilar();
+
+    public FaceEngineAdapter(FaceEngine faceEngine) {
+        if (faceEngine == null) {
+            throw new IllegalArgumentException("faceEngine must not be null");
+        }
+        this.faceEngine = faceEngine;
+    }
+
+    /**
+     * @return 被适配的引擎，用于初始化及销毁
+     */
+    public FaceEngine getFaceEngine() {
+        return faceEngine;
+    }
+
+    @Override
+    public int detectFaces(byte[] data, int width, int height, int format, List<FaceInfo> faceInfoList) {
+        return faceEngine.detectFaces(data, width, height, format, faceInfoList);
+    }
+
+    @Override
+    public int extractFaceFeature(byte[] data, int width, int height, int format, FaceInfo faceInfo, FaceFeature faceFeature) {
+        return faceEngine.extractFaceFeature(data, width, height, format, faceInfo, faceFeature);
+    }
+
+    @Override
+    public float compareFaceFeature(FaceFeature feature1, FaceFeature feature2, CompareModel compareModel) {
+        int code = faceEngine.compareFaceFeature(feature1, feature2, compareModel, faceSimilar);
+        return code == ErrorInfo.MOK ? faceSimilar.getScore() : COMPARE_FAILED;
+    }
+}
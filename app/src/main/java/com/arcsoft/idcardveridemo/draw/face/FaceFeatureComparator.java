@@ -0,0 +1,25 @@
+package com.arcsoft.idcardveridemo.draw.face;
+
+import com.arcsoft.face.FaceFeature;
+import com.arcsoft.face.enums.CompareModel;
+
+/**
+ * 人脸特征比对接口，设备上由{@link FaceEngineAdapter}实现，主机端测试及基准测试可替换为模拟实现。
+ * 实现类不要求线程安全，多线程比对时通过{@link EnginePool}为每个线程租用一个实例
+ */
+public interface FaceFeatureComparator {
+    /**
+     * 比对失败时的返回值
+     */
+    float COMPARE_FAILED = -1f;
+
+    /**
+     * 比对两个人脸特征
+     *
+     * @param feature1     人脸特征
+     * @param feature2     人脸特征
+     * @param compareModel 比对模型
+     * @return 相似度，比对失败时返回{@link #COMPARE_FAILED}
+     */
+    float compareFaceFeature(FaceFeature feature1, FaceFeature feature2, CompareModel compareModel);
+}
@@ -0,0 +1,22 @@
+package com.arcsoft.idcardveridemo.draw.face;
+
+import com.arcsoft.face.FaceFeature;
+import com.arcsoft.face.FaceInfo;
+
+/**
+ * 人脸特征提取接口，设备上由{@link FaceEngineAdapter}实现，主机端测试及基准测试可替换为模拟实现
+ */
+public interface FaceFeatureExtractor {
+    /**
+     * 提取人脸特征
+     *
+     * @param data        图像数据
+     * @param width       图像宽度
+     * @param height      图像高度
+     * @param format      图像格式
+     * @param faceInfo    人脸信息
+     * @param faceFeature 提取到的特征
+     * @return 错误码
+     */
+    int extractFaceFeature(byte[] data, int width, int height, int format, FaceInfo faceInfo, FaceFeature faceFeature);
+}
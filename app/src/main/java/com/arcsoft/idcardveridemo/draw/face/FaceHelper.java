@@ -7,15 +7,21 @@ import com.arcsoft.face.ErrorInfo;
 import com.arcsoft.face.FaceEngine;
 import com.arcsoft.face.FaceFeature;
 import com.arcsoft.face.FaceInfo;
+import com.arcsoft.face.LivenessInfo;
+import com.arcsoft.idcardveridemo.camera.Frame;
+import com.arcsoft.idcardveridemo.metrics.PipelineMetrics;
 
 import java.util.ArrayList;
-import java.util.Enumeration;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 人脸操作辅助类
@@ -34,6 +40,10 @@ public class FaceHelper {
      * 活体检测引擎为空
      */
     private static final int ERROR_FL_ENGINE_IS_NULL = -3;
+    /**
+     * 请求已取消（人脸已离开或帧数据过旧）
+     */
+    public static final int ERROR_CANCELED = -4;
     /**
      * 人脸追踪引擎
      */
@@ -42,10 +52,15 @@ public class FaceHelper {
      * 特征提取引擎
      */
     private FaceEngine frEngine;
+    private FaceFeatureExtractor frExtractor;
     /**
      * 活体检测引擎
      */
     private FaceEngine flEngine;
+    /**
+     * 特征提取引擎池，指定后每个特征提取任务租用一个引擎，多个任务可并行提取
+     */
+    private EnginePool<FaceFeatureExtractor> frEnginePool;
 
     private Camera.Size previewSize;
 
@@ -59,15 +74,38 @@ public class FaceHelper {
      */
     private ExecutorService flExecutor;
     /**
-     * 特征提取线程队列
+     * 特征提取线程队列，按优先级排序，同优先级按提交顺序执行
+     */
+    private PriorityBlockingQueue<Runnable> frThreadQueue = null;
+    /**
+     * 低优先级（预览数据）排队上限，超出后直接拒绝
+     */
+    private int frQueueSize;
+    /**
+     * 高优先级（身份证数据）排队上限
      */
-    private LinkedBlockingQueue<Runnable> frThreadQueue = null;
+    private int frHighQueueSize;
+    /**
+     * 各优先级队列的统计信息，下标为{@link Priority#ordinal()}
+     */
+    private final LaneStats[] laneStats = new LaneStats[]{new LaneStats(), new LaneStats()};
+    /**
+     * 任务提交序号，保证同优先级的任务按提交顺序执行
+     */
+    private final AtomicLong frSequence = new AtomicLong();
     /**
      * 活体检测线程队列
      */
     private LinkedBlockingQueue<Runnable> flThreadQueue = null;
+    /**
+     * 活体检测结果，只在活体检测线程中使用
+     */
+    private final List<LivenessInfo> livenessInfoList = new ArrayList<>();
 
-    private FaceListener faceListener;
+    /**
+     * 检测线程、特征提取及活体检测线程读取，release()时在其他线程置空
+     */
+    private volatile FaceListener faceListener;
     /**
      * 上次应用退出时，记录的该App检测过的人脸数了
      */
@@ -77,12 +115,22 @@ public class FaceHelper {
      */
     private int currentMaxFaceId = 0;
 
-    //    private List<Integer> formerTrackIdList = new ArrayList<>();
-    private List<Integer> currentTrackIdList = new ArrayList<>();
     /**
-     * 用于存储人脸对应的姓名，KEY为trackId，VALUE为name
+     * 当前画面中的trackId快照，供特征提取线程判断请求是否仍然有效，为null表示未设置
+     */
+    private volatile int[] liveTrackIds;
+    /**
+     * 低优先级请求的最大帧龄，即帧采集至今的时长，超过后在送入引擎前丢弃，单位毫秒，小于等于0表示不限制
+     */
+    private long frMaxFrameAge;
+    /**
+     * 耗时统计，可为空
+     */
+    private PipelineMetrics pipelineMetrics;
+    /**
+     * 人脸登记表，存储人脸对应的姓名等信息，每帧刷新人脸最后出现时间
      */
-    private ConcurrentHashMap<Integer, String> nameMap = new ConcurrentHashMap<>();
+    private TrackRegistry trackRegistry;
 
     private FaceHelper(Builder builder) {
         ftEngine = builder.ftEngine;
@@ -90,54 +138,165 @@ public class FaceHelper {
         trackedFaceCount = builder.trackedFaceCount;
         previewSize = builder.previewSize;
         frEngine = builder.frEngine;
+        frExtractor = frEngine == null ? null : new FaceEngineAdapter(frEngine);
         flEngine = builder.flEngine;
+        frEnginePool = builder.frEnginePool;
+        frMaxFrameAge = builder.frMaxFrameAge;
+        pipelineMetrics = builder.pipelineMetrics;
+        trackRegistry = builder.trackRegistry != null ? builder.trackRegistry : new TrackRegistry.Builder().build();
         /**
          * fr 线程队列大小
          */
-        int frQueueSize = 5;
+        frQueueSize = 5;
         if (builder.frQueueSize > 0) {
             frQueueSize = builder.frQueueSize;
-            frThreadQueue = new LinkedBlockingQueue<>(frQueueSize);
         } else {
             Log.e(TAG, "frThread num must > 0,now using default value:" + frQueueSize);
         }
-        frExecutor = new ThreadPoolExecutor(1, frQueueSize, 0, TimeUnit.MILLISECONDS, frThreadQueue);
+        frHighQueueSize = builder.frHighQueueSize > 0 ? builder.frHighQueueSize : frQueueSize;
+        frThreadQueue = new PriorityBlockingQueue<>(frQueueSize + frHighQueueSize);
+        //使用引擎池时每个引擎对应一个线程，队列无界，由提交时的各优先级排队上限控制队列长度
+        int frThreadNum = frEnginePool == null ? 1 : frEnginePool.size();
+        frExecutor = new ThreadPoolExecutor(frThreadNum, frThreadNum, 0, TimeUnit.MILLISECONDS, frThreadQueue);
 
         /**
-         * fr 线程队列大小
+         * fl 线程队列大小
          */
         int flQueueSize = 5;
         if (builder.flQueueSize > 0) {
-            frQueueSize = builder.flQueueSize;
-            flThreadQueue = new LinkedBlockingQueue<>(frQueueSize);
+            flQueueSize = builder.flQueueSize;
         } else {
-            Log.e(TAG, "frThread num must > 0,now using default value:" + frQueueSize);
+            Log.e(TAG, "flThread num must > 0,now using default value:" + flQueueSize);
         }
         flThreadQueue = new LinkedBlockingQueue<Runnable>(flQueueSize);
-        flExecutor = new ThreadPoolExecutor(1, flQueueSize, 0, TimeUnit.MILLISECONDS, flThreadQueue);
-        if (previewSize == null) {
-            throw new RuntimeException("previewSize must be specified!");
-        }
+        //只有一个活体检测引擎，使用单线程，队列满时拒绝新的请求
+        flExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, flThreadQueue);
     }
 
     /**
      * 请求获取人脸特征数据
      *
-     * @param nv21     图像数据
+     * @param frame    图像帧，请求被接收时持有一次引用，特征提取结束后释放
      * @param faceInfo 人脸信息
-     * @param width    图像宽度
-     * @param height   图像高度
-     * @param format   图像格式
      * @param trackId  请求人脸特征的唯一请求码，一般使用trackId
      */
-    public void requestFaceFeature(byte[] nv21, FaceInfo faceInfo, int width, int height, int format, Integer trackId) {
-        if (faceListener != null) {
-            if (frEngine != null && frThreadQueue.remainingCapacity() > 0) {
-                frExecutor.execute(new FaceRecognizeRunnable(nv21, faceInfo, width, height, format, trackId));
-            } else {
-                faceListener.onFaceFeatureInfoGet(null, trackId, ERROR_BUSY, -1, nv21);
+    public void requestFaceFeature(Frame frame, FaceInfo faceInfo, Integer trackId) {
+        requestFaceFeature(frame, faceInfo, trackId, Priority.LOW);
+    }
+
+    /**
+     * 按优先级请求获取人脸特征数据。高优先级请求排在所有低优先级请求之前执行，
+     * 队列已满时会挤掉最早排队的低优先级请求；低优先级请求在其队列已满时直接被拒绝
+     *
+     * @param frame    图像帧，请求被接收时持有一次引用，特征提取结束后释放
+     * @param faceInfo 人脸信息
+     * @param trackId  请求人脸特征的唯一请求码，一般使用trackId
+     * @param priority 请求优先级
+     */
+    public void requestFaceFeature(Frame frame, FaceInfo faceInfo, Integer trackId, Priority priority) {
+        FaceListener listener = faceListener;
+        if (listener == null) {
+            return;
+        }
+        LaneStats stats = laneStats[priority.ordinal()];
+        if (frEngine == null && frEnginePool == null) {
+            stats.rejectedCount.incrementAndGet();
+            listener.onFaceFeatureInfoGet(null, trackId, ERROR_FR_ENGINE_IS_NULL, -1);
+            return;
+        }
+        int laneCapacity = priority == Priority.HIGH ? frHighQueueSize : frQueueSize;
+        //检测线程与身份证处理线程同时提交时，检查与占位需一次完成，否则排队数可能超过上限
+        if (!stats.tryReserve(laneCapacity)) {
+            stats.rejectedCount.incrementAndGet();
+            listener.onFaceFeatureInfoGet(null, trackId, ERROR_BUSY, -1);
+            return;
+        }
+        //已占位的高优先级请求计入总数，超过frQueueSize时挤掉最早的低优先级请求
+        if (priority == Priority.HIGH && getQueueDepth(Priority.LOW) + getQueueDepth(Priority.HIGH) > frQueueSize) {
+            preemptLowPriorityRequest();
+        }
+        FaceRecognizeRunnable runnable = new FaceRecognizeRunnable(frame, faceInfo, trackId, priority);
+        try {
+            frExecutor.execute(runnable);
+        } catch (RejectedExecutionException e) {
+            //release()后检测线程或身份证处理线程仍可能提交请求，释放帧并按队列已满处理
+            stats.queueDepth.decrementAndGet();
+            stats.rejectedCount.incrementAndGet();
+            runnable.releaseFrame();
+            listener.onFaceFeatureInfoGet(null, trackId, ERROR_BUSY, -1);
+        }
+    }
+
+    /**
+     * 请求活体检测，在活体检测线程中执行，可与同一帧的特征提取同时进行
+     *
+     * @param frame    图像帧，请求被接收时持有一次引用，活体检测结束后释放
+     * @param faceInfo 人脸信息
+     * @param trackId  请求活体检测的唯一请求码，一般使用trackId
+     */
+    public void requestFaceLiveness(Frame frame, FaceInfo faceInfo, Integer trackId) {
+        FaceListener listener = faceListener;
+        if (listener == null) {
+            return;
+        }
+        if (flEngine == null) {
+            listener.onFaceLivenessInfoGet(null, trackId, ERROR_FL_ENGINE_IS_NULL);
+            return;
+        }
+        FaceLivenessDetectRunnable runnable = new FaceLivenessDetectRunnable(frame, faceInfo, trackId);
+        try {
+            flExecutor.execute(runnable);
+        } catch (RejectedExecutionException e) {
+            runnable.releaseFrame();
+            listener.onFaceLivenessInfoGet(null, trackId, ERROR_BUSY);
+        }
+    }
+
+    /**
+     * 移除最早排队的低优先级请求，为高优先级请求让出队列
+     */
+    private void preemptLowPriorityRequest() {
+        PriorityBlockingQueue<Runnable> queue = frThreadQueue;
+        if (queue == null) {
+            return;
+        }
+        FaceRecognizeRunnable oldest = null;
+        for (Runnable runnable : queue) {
+            FaceRecognizeRunnable task = (FaceRecognizeRunnable) runnable;
+            if (task.priority == Priority.LOW && (oldest == null || task.sequence < oldest.sequence)) {
+                oldest = task;
             }
         }
+        if (oldest != null && queue.remove(oldest)) {
+            LaneStats stats = laneStats[Priority.LOW.ordinal()];
+            stats.queueDepth.decrementAndGet();
+            stats.preemptedCount.incrementAndGet();
+            FaceListener listener = faceListener;
+            if (listener != null) {
+                listener.onFaceFeatureInfoGet(null, oldest.trackId, ERROR_BUSY, -1);
+            }
+            oldest.releaseFrame();
+        }
+    }
+
+    /**
+     * 获取指定优先级当前排队的请求数
+     *
+     * @param priority 优先级
+     * @return 排队的请求数
+     */
+    public int getQueueDepth(Priority priority) {
+        return laneStats[priority.ordinal()].queueDepth.get();
+    }
+
+    /**
+     * 获取指定优先级的队列统计信息
+     *
+     * @param priority 优先级
+     * @return 统计信息
+     */
+    public LaneStats getLaneStats(Priority priority) {
+        return laneStats[priority.ordinal()];
     }
 
 
@@ -146,11 +305,16 @@ public class FaceHelper {
      */
     public void release() {
         if (!frExecutor.isShutdown()) {
-            frExecutor.shutdownNow();
+            //未执行的请求不再回调，直接释放其持有的帧
+            for (Runnable runnable : frExecutor.shutdownNow()) {
+                ((FaceRecognizeRunnable) runnable).releaseFrame();
+            }
             frThreadQueue.clear();
         }
         if (!flExecutor.isShutdown()) {
-            flExecutor.shutdownNow();
+            for (Runnable runnable : flExecutor.shutdownNow()) {
+                ((FaceLivenessDetectRunnable) runnable).releaseFrame();
+            }
             flThreadQueue.clear();
         }
         if (faceInfoList != null) {
@@ -164,10 +328,7 @@ public class FaceHelper {
             flThreadQueue.clear();
             flThreadQueue = null;
         }
-        if (nameMap != null) {
-            nameMap.clear();
-        }
-        nameMap = null;
+        trackRegistry = null;
         faceListener = null;
         faceInfoList = null;
     }
@@ -176,132 +337,285 @@ public class FaceHelper {
     /**
      * 人脸特征提取线程
      */
-    public class FaceRecognizeRunnable implements Runnable {
+    public class FaceRecognizeRunnable implements Runnable, Comparable<FaceRecognizeRunnable> {
         private FaceInfo faceInfo;
-        private int width;
-        private int height;
-        private int format;
         private Integer trackId;
-        private byte[] nv21Data;
-
-        private FaceRecognizeRunnable(byte[] nv21Data, FaceInfo faceInfo, int width, int height, int format, Integer trackId) {
-            if (nv21Data == null) {
+        private Frame frame;
+        private final Priority priority;
+        private final long sequence;
+        private final long enqueueTime;
+
+        private FaceRecognizeRunnable(Frame frame, FaceInfo faceInfo, Integer trackId, Priority priority) {
+            this.priority = priority;
+            this.sequence = frSequence.getAndIncrement();
+            this.enqueueTime = System.nanoTime();
+            if (frame == null) {
                 return;
             }
-            this.nv21Data = nv21Data;
+            this.frame = frame.acquire();
             this.faceInfo = new FaceInfo(faceInfo);
-            this.width = width;
-            this.height = height;
-            this.format = format;
             this.trackId = trackId;
         }
 
+        /**
+         * 释放持有的帧，请求完成、取消或被挤掉后调用
+         */
+        private void releaseFrame() {
+            Frame heldFrame = frame;
+            frame = null;
+            if (heldFrame != null) {
+                heldFrame.release();
+            }
+        }
+
+        @Override
+        public int compareTo(FaceRecognizeRunnable o) {
+            if (priority != o.priority) {
+                return priority.ordinal() - o.priority.ordinal();
+            }
+            return Long.compare(sequence, o.sequence);
+        }
+
+        /**
+         * 低优先级请求在人脸已离开画面或帧数据过旧时视为取消
+         */
+        private boolean isCanceled() {
+            if (priority != Priority.LOW) {
+                return false;
+            }
+            if (frMaxFrameAge > 0 && frame != null && frame.getAge() > TimeUnit.MILLISECONDS.toNanos(frMaxFrameAge)) {
+                return true;
+            }
+            return !isTrackLive(trackId);
+        }
+
+        /**
+         * 取消请求，回调取消结果并释放帧，faceHelper已释放时只释放帧
+         */
+        private void cancel() {
+            laneStats[priority.ordinal()].canceledCount.incrementAndGet();
+            try {
+                FaceListener listener = faceListener;
+                if (listener != null) {
+                    listener.onFaceFeatureInfoGet(null, trackId, ERROR_CANCELED, -1);
+                }
+            } finally {
+                releaseFrame();
+            }
+        }
+
         @Override
         public void run() {
-            if (faceListener != null && nv21Data != null) {
-                if (frEngine != null) {
+            laneStats[priority.ordinal()].onDequeued(System.nanoTime() - enqueueTime);
+            try {
+                recognize();
+            } finally {
+                releaseFrame();
+            }
+        }
+
+        private void recognize() {
+            //release()可能在其他线程将faceListener置空，只读取一次
+            FaceListener listener = faceListener;
+            if (listener != null && frame != null) {
+                if (isCanceled()) {
+                    cancel();
+                    return;
+                }
+                if (frEnginePool != null || frEngine != null) {
                     FaceFeature faceFeature = new FaceFeature();
                     long frStartTime = System.currentTimeMillis();
                     int frCode;
-                    synchronized (frEngine) {
-                        frCode = frEngine.extractFaceFeature(nv21Data, width, height, format, faceInfo, faceFeature);
+                    if (frEnginePool != null) {
+                        FaceFeatureExtractor engine;
+                        try {
+                            engine = frEnginePool.acquire();
+                        } catch (InterruptedException e) {
+                            //release()时线程池被中断，保留中断状态
+                            Thread.currentThread().interrupt();
+                            listener.onFaceFeatureInfoGet(null, trackId, ERROR_BUSY, -1);
+                            return;
+                        }
+                        try {
+                            //等待引擎期间人脸可能已离开，送入引擎前再次检查
+                            if (isCanceled()) {
+                                cancel();
+                                return;
+                            }
+                            frCode = extractFaceFeature(engine, faceFeature);
+                        } finally {
+                            frEnginePool.release(engine);
+                        }
                         frStartTime = System.currentTimeMillis() - frStartTime;
+                    } else {
+                        synchronized (frEngine) {
+                            if (isCanceled()) {
+                                cancel();
+                                return;
+                            }
+                            frCode = extractFaceFeature(frExtractor, faceFeature);
+                            frStartTime = System.currentTimeMillis() - frStartTime;
+                        }
                     }
                     if (frCode == ErrorInfo.MOK) {
 //                        Log.i(TAG, "run: fr costTime = " + (System.currentTimeMillis() - frStartTime) + "ms");
-                        faceListener.onFaceFeatureInfoGet(faceFeature, trackId, frCode, frStartTime, nv21Data);
+                        listener.onFaceFeatureInfoGet(faceFeature, trackId, frCode, frStartTime);
                     } else {
-                        faceListener.onFaceFeatureInfoGet(null, trackId, frCode, -1, null);
-                        faceListener.onFail(new Exception("fr failed errorCode is " + frCode));
+                        listener.onFaceFeatureInfoGet(null, trackId, frCode, -1);
+                        listener.onFail(new Exception("fr failed errorCode is " + frCode));
                     }
                 } else {
-                    faceListener.onFaceFeatureInfoGet(null, trackId, ERROR_FR_ENGINE_IS_NULL, -1, null);
-                    faceListener.onFail(new Exception("fr failed ,frEngine is null"));
+                    listener.onFaceFeatureInfoGet(null, trackId, ERROR_FR_ENGINE_IS_NULL, -1);
+                    listener.onFail(new Exception("fr failed ,frEngine is null"));
                 }
             }
-            nv21Data = null;
+        }
+
+        /**
+         * 提取特征并统计排队（含等待引擎）及提取耗时
+         */
+        private int extractFaceFeature(FaceFeatureExtractor engine, FaceFeature faceFeature) {
+            long extractStartTime = System.nanoTime();
+            int frCode = engine.extractFaceFeature(frame.getData(), frame.getWidth(), frame.getHeight(), frame.getFormat(), faceInfo, faceFeature);
+            if (pipelineMetrics != null) {
+                pipelineMetrics.record(PipelineMetrics.Stage.FR_QUEUE_WAIT, extractStartTime - enqueueTime);
+                pipelineMetrics.recordSince(PipelineMetrics.Stage.FR_EXTRACT, extractStartTime);
+            }
+            return frCode;
         }
     }
 
-//    /**
-//     * 活体检测的线程
-//     */
-//    public class FaceLivenessDetectRunnable implements Runnable {
-//        private FaceInfo faceInfo;
-//        private int width;
-//        private int height;
-//        private int format;
-//        private Integer trackId;
-//        private byte[] nv21Data;
-//        private LivenessType livenessType;
-//
-//        private FaceLivenessDetectRunnable(byte[] nv21Data, FaceInfo faceInfo, int width, int height, int format, Integer trackId, LivenessType livenessType) {
-//            if (nv21Data == null) {
-//                return;
-//            }
-//            this.nv21Data = nv21Data;
-//            this.faceInfo = new FaceInfo(faceInfo);
-//            this.width = width;
-//            this.height = height;
-//            this.format = format;
-//            this.trackId = trackId;
-//            this.livenessType = livenessType;
-//        }
-//
-//        @Override
-//        public void run() {
-//            if (faceListener != null && nv21Data != null) {
-//                if (flEngine != null) {
-//                    List<LivenessInfo> livenessInfoList = new ArrayList<>();
-//                    int flCode;
-//                    synchronized (flEngine) {
-//                        if (livenessType == LivenessType.RGB) {
-//                            flCode = flEngine.process(nv21Data, width, height, format, Arrays.asList(faceInfo), FaceEngine.ASF_LIVENESS);
-//                        } else {
-//                            flCode = flEngine.processIr(nv21Data, width, height, format, Arrays.asList(faceInfo), FaceEngine.ASF_IR_LIVENESS);
-//                        }
-//                    }
-//                    if (flCode == ErrorInfo.MOK) {
-//                        if (livenessType == LivenessType.RGB) {
-//                            flCode = flEngine.getLiveness(livenessInfoList);
-//                        } else {
-//                            flCode = flEngine.getIrLiveness(livenessInfoList);
-//                        }
-//                    }
-//
-//                    if (flCode == ErrorInfo.MOK && livenessInfoList.size() > 0) {
-//                        faceListener.onFaceLivenessInfoGet(livenessInfoList.get(0), trackId, flCode);
-//                    } else {
-//                        faceListener.onFaceLivenessInfoGet(null, trackId, flCode);
-//                        faceListener.onFail(new Exception("fl failed errorCode is " + flCode));
-//                    }
-//                } else {
-//                    faceListener.onFaceLivenessInfoGet(null, trackId, ERROR_FL_ENGINE_IS_NULL);
-//                    faceListener.onFail(new Exception("fl failed ,frEngine is null"));
-//                }
-//            }
-//            nv21Data = null;
-//        }
-//    }
-
-
-    /**
-     * 刷新trackId
+    /**
+     * 活体检测线程，与同一帧的特征提取同时进行
+     */
+    public class FaceLivenessDetectRunnable implements Runnable {
+        private FaceInfo faceInfo;
+        private Integer trackId;
+        private Frame frame;
+
+        private FaceLivenessDetectRunnable(Frame frame, FaceInfo faceInfo, Integer trackId) {
+            if (frame == null) {
+                return;
+            }
+            this.frame = frame.acquire();
+            this.faceInfo = new FaceInfo(faceInfo);
+            this.trackId = trackId;
+        }
+
+        /**
+         * 释放持有的帧，请求完成或取消后调用
+         */
+        private void releaseFrame() {
+            Frame heldFrame = frame;
+            frame = null;
+            if (heldFrame != null) {
+                heldFrame.release();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                detectLiveness();
+            } finally {
+                releaseFrame();
+            }
+        }
+
+        private void detectLiveness() {
+            FaceListener listener = faceListener;
+            if (listener == null || frame == null) {
+                return;
+            }
+            //人脸已离开或帧数据过旧时不再检测，与低优先级特征提取请求一致
+            if (!isTrackLive(trackId) || (frMaxFrameAge > 0 && frame.getAge() > TimeUnit.MILLISECONDS.toNanos(frMaxFrameAge))) {
+                listener.onFaceLivenessInfoGet(null, trackId, ERROR_CANCELED);
+                return;
+            }
+            if (flEngine == null) {
+                listener.onFaceLivenessInfoGet(null, trackId, ERROR_FL_ENGINE_IS_NULL);
+                listener.onFail(new Exception("fl failed ,flEngine is null"));
+                return;
+            }
+            int flCode;
+            long flStartTime = System.nanoTime();
+            synchronized (flEngine) {
+                livenessInfoList.clear();
+                flCode = flEngine.process(frame.getData(), frame.getWidth(), frame.getHeight(), frame.getFormat(),
+                        Collections.singletonList(faceInfo), FaceEngine.ASF_LIVENESS);
+                if (flCode == ErrorInfo.MOK) {
+                    flCode = flEngine.getLiveness(livenessInfoList);
+                }
+            }
+            if (pipelineMetrics != null) {
+                pipelineMetrics.recordSince(PipelineMetrics.Stage.LIVENESS, flStartTime);
+            }
+            if (flCode == ErrorInfo.MOK && livenessInfoList.size() > 0) {
+                listener.onFaceLivenessInfoGet(livenessInfoList.get(0), trackId, flCode);
+            } else {
+                listener.onFaceLivenessInfoGet(null, trackId, flCode);
+                listener.onFail(new Exception("fl failed errorCode is " + flCode));
+            }
+        }
+    }
+
+
+    /**
+     * 刷新trackId，同时取消排队中已离开画面的人脸的特征提取请求，每帧检测完成后调用
      *
      * @param ftFaceList 传入的人脸列表
      */
-    private void refreshTrackId(List<FaceInfo> ftFaceList) {
-        currentTrackIdList.clear();
-
-        for (FaceInfo faceInfo : ftFaceList) {
-            currentTrackIdList.add(faceInfo.getFaceId() + trackedFaceCount);
+    public void refreshTrackId(List<FaceInfo> ftFaceList) {
+        int[] trackIds = new int[ftFaceList.size()];
+        for (int i = 0; i < ftFaceList.size(); i++) {
+            trackIds[i] = ftFaceList.get(i).getFaceId() + trackedFaceCount;
         }
+        liveTrackIds = trackIds;
         if (ftFaceList.size() > 0) {
             currentMaxFaceId = ftFaceList.get(ftFaceList.size() - 1).getFaceId();
         }
 
-        //刷新nameMap
-        clearLeftName(currentTrackIdList);
+        //刷新人脸最后出现时间，淘汰长时间未出现的人脸
+        TrackRegistry registry = trackRegistry;
+        if (registry != null) {
+            registry.refresh(trackIds);
+        }
+        cancelLeftRequests();
+    }
+
+    /**
+     * trackId是否仍在画面中，未调用过{@link #refreshTrackId(List)}时视为在画面中
+     */
+    private boolean isTrackLive(int trackId) {
+        int[] trackIds = liveTrackIds;
+        if (trackIds == null) {
+            return true;
+        }
+        for (int liveTrackId : trackIds) {
+            if (liveTrackId == trackId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 移除排队中已取消的低优先级请求
+     */
+    private void cancelLeftRequests() {
+        //release()可能在其他线程将frThreadQueue置空，只读取一次
+        PriorityBlockingQueue<Runnable> queue = frThreadQueue;
+        if (queue == null || getQueueDepth(Priority.LOW) == 0) {
+            return;
+        }
+        for (Runnable runnable : queue) {
+            FaceRecognizeRunnable task = (FaceRecognizeRunnable) runnable;
+            if (task.isCanceled() && queue.remove(task)) {
+                laneStats[Priority.LOW.ordinal()].queueDepth.decrementAndGet();
+                //无论是否回调都需释放帧，否则该预览缓冲区无法归还缓冲池
+                task.cancel();
+            }
+        }
     }
 
     /**
@@ -321,39 +635,167 @@ public class FaceHelper {
      * @param name    trackId对应的人脸
      */
     public void setName(int trackId, String name) {
-        if (nameMap != null) {
-            nameMap.put(trackId, name);
+        TrackRegistry registry = trackRegistry;
+        if (registry != null) {
+            registry.setName(trackId, name);
         }
     }
 
     public String getName(int trackId) {
-        return nameMap == null ? null : nameMap.get(trackId);
+        TrackRegistry registry = trackRegistry;
+        return registry == null ? null : registry.getName(trackId);
     }
 
     /**
-     * 清除map中已经离开的人脸
+     * @return 人脸登记表，未指定时为内部创建的登记表
+     */
+    public TrackRegistry getTrackRegistry() {
+        return trackRegistry;
+    }
+
+    /**
+     * 获取特征提取引擎池，可用于查看引擎池利用率
      *
-     * @param trackIdList 最新的trackIdList
-     */
-    private void clearLeftName(List<Integer> trackIdList) {
-        Enumeration<Integer> keys = nameMap.keys();
-        while (keys.hasMoreElements()) {
-            int value = keys.nextElement();
-            if (!trackIdList.contains(value)) {
-                nameMap.remove(value);
+     * @return 特征提取引擎池，未指定时为null
+     */
+    public EnginePool<FaceFeatureExtractor> getFrEnginePool() {
+        return frEnginePool;
+    }
+
+    /**
+     * 特征提取请求优先级
+     */
+    public enum Priority {
+        /**
+         * 高优先级，用于身份证数据，不会因预览数据排队而被拒绝
+         */
+        HIGH,
+        /**
+         * 低优先级，用于预览数据，队列繁忙时优先被丢弃
+         */
+        LOW
+    }
+
+    /**
+     * 特征提取队列统计信息
+     */
+    public static final class LaneStats {
+        private final AtomicInteger queueDepth = new AtomicInteger();
+        private final AtomicLong executedCount = new AtomicLong();
+        private final AtomicLong rejectedCount = new AtomicLong();
+        private final AtomicLong preemptedCount = new AtomicLong();
+        private final AtomicLong canceledCount = new AtomicLong();
+        private final AtomicLong totalWaitNanos = new AtomicLong();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+
+        private LaneStats() {
+        }
+
+        /**
+         * 排队数小于capacity时占用一个排队位置
+         *
+         * @return 是否占位成功
+         */
+        private boolean tryReserve(int capacity) {
+            while (true) {
+                int depth = queueDepth.get();
+                if (depth >= capacity) {
+                    return false;
+                }
+                if (queueDepth.compareAndSet(depth, depth + 1)) {
+                    return true;
+                }
             }
         }
+
+        private void onDequeued(long waitNanos) {
+            queueDepth.decrementAndGet();
+            executedCount.incrementAndGet();
+            totalWaitNanos.addAndGet(waitNanos);
+            long max;
+            do {
+                max = maxWaitNanos.get();
+            } while (waitNanos > max && !maxWaitNanos.compareAndSet(max, waitNanos));
+        }
+
+        /**
+         * @return 当前排队的请求数
+         */
+        public int getQueueDepth() {
+            return queueDepth.get();
+        }
+
+        /**
+         * @return 已开始执行的请求数
+         */
+        public long getExecutedCount() {
+            return executedCount.get();
+        }
+
+        /**
+         * @return 因队列已满被拒绝的请求数
+         */
+        public long getRejectedCount() {
+            return rejectedCount.get();
+        }
+
+        /**
+         * @return 排队中被高优先级请求挤掉的请求数
+         */
+        public long getPreemptedCount() {
+            return preemptedCount.get();
+        }
+
+        /**
+         * @return 因人脸离开或帧数据过旧被取消的请求数
+         */
+        public long getCanceledCount() {
+            return canceledCount.get();
+        }
+
+        /**
+         * @return 平均排队时长，单位毫秒
+         */
+        public double getAverageWaitTime() {
+            long count = executedCount.get();
+            return count == 0 ? 0 : totalWaitNanos.get() / 1e6 / count;
+        }
+
+        /**
+         * @return 最长排队时长，单位毫秒
+         */
+        public double getMaxWaitTime() {
+            return maxWaitNanos.get() / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return "LaneStats{" +
+                    "queueDepth=" + getQueueDepth() +
+                    ", executedCount=" + getExecutedCount() +
+                    ", rejectedCount=" + getRejectedCount() +
+                    ", preemptedCount=" + getPreemptedCount() +
+                    ", canceledCount=" + getCanceledCount() +
+                    ", averageWaitTime=" + getAverageWaitTime() +
+                    ", maxWaitTime=" + getMaxWaitTime() +
+                    '}';
+        }
     }
 
     public static final class Builder {
         private FaceEngine ftEngine;
         private FaceEngine frEngine;
         private FaceEngine flEngine;
+        private EnginePool<FaceFeatureExtractor> frEnginePool;
         private Camera.Size previewSize;
         private FaceListener faceListener;
         private int frQueueSize;
+        private int frHighQueueSize;
         private int flQueueSize;
         private int trackedFaceCount;
+        private long frMaxFrameAge;
+        private PipelineMetrics pipelineMetrics;
+        private TrackRegistry trackRegistry;
 
         public Builder() {
         }
@@ -374,6 +816,19 @@ public class FaceHelper {
             return this;
         }
 
+        /**
+         * 指定特征提取引擎池，指定后优先使用引擎池进行特征提取，特征提取线程数与引擎数一致
+         *
+         * @param val 已初始化的特征提取引擎池
+         * @return Builder
+         */
+        @SuppressWarnings("unchecked")
+        public Builder frEnginePool(EnginePool<? extends FaceFeatureExtractor> val) {
+            //引擎池只会归还从自身租出的引擎，按父类型使用是安全的
+            frEnginePool = (EnginePool<FaceFeatureExtractor>) val;
+            return this;
+        }
+
 
         public Builder previewSize(Camera.Size val) {
             previewSize = val;
@@ -391,6 +846,28 @@ public class FaceHelper {
             return this;
         }
 
+        /**
+         * 高优先级请求的排队上限，默认与frQueueSize一致
+         *
+         * @param val 排队上限
+         * @return Builder
+         */
+        public Builder frHighQueueSize(int val) {
+            frHighQueueSize = val;
+            return this;
+        }
+
+        /**
+         * 低优先级请求的最大帧龄，帧采集超过该时长的请求在送入引擎前被取消
+         *
+         * @param val 最大帧龄，单位毫秒，小于等于0表示不限制
+         * @return Builder
+         */
+        public Builder frMaxFrameAge(long val) {
+            frMaxFrameAge = val;
+            return this;
+        }
+
         public Builder flQueueSize(int val) {
             flQueueSize = val;
             return this;
@@ -401,6 +878,28 @@ public class FaceHelper {
             return this;
         }
 
+        /**
+         * 设置耗时统计，为空时不统计
+         *
+         * @param val 耗时统计
+         * @return Builder
+         */
+        public Builder pipelineMetrics(PipelineMetrics val) {
+            pipelineMetrics = val;
+            return this;
+        }
+
+        /**
+         * 设置人脸登记表，可与调用方共用，为空时内部创建，{@link FaceHelper#refreshTrackId(List)}时刷新人脸最后出现时间
+         *
+         * @param val 人脸登记表
+         * @return Builder
+         */
+        public Builder trackRegistry(TrackRegistry val) {
+            trackRegistry = val;
+            return this;
+        }
+
         public FaceHelper build() {
             return new FaceHelper(this);
         }
@@ -23,8 +23,9 @@ public interface FaceListener {
      * @param faceFeature 人脸特征数据
      * @param requestId   请求码
      * @param errorCode   错误码
+     * @param frTime      特征提取耗时
      */
-    void onFaceFeatureInfoGet(@Nullable FaceFeature faceFeature, Integer requestId, Integer errorCode, long frTime, byte[] nv21);
+    void onFaceFeatureInfoGet(@Nullable FaceFeature faceFeature, Integer requestId, Integer errorCode, long frTime);
 
     /**
      * 请求活体检测后的回调
@@ -0,0 +1,108 @@
+package com.arcsoft.idcardveridemo.draw.face;
+
+import android.graphics.Rect;
+
+import com.arcsoft.face.FaceInfo;
+import com.arcsoft.idcardveridemo.camera.Frame;
+
+/**
+ * 人脸质量门限，低于最低分的帧直接丢弃，其余帧在一个短时间窗口内择优，
+ * 窗口结束时将得分最高的帧交给特征提取。窗口内持有得分最高帧的一次引用，被替换或送出后释放。只在检测线程中使用
+ */
+public class FaceQualityGate {
+
+    public interface Callback {
+        /**
+         * 窗口结束，得分最高的帧可用于特征提取
+         *
+         * @param frame    图像帧，仅在回调期间有效，若需在回调之外使用需调用{@link Frame#acquire()}
+         * @param faceInfo 人脸信息，对象会被复用，若需在回调之外使用需拷贝
+         * @param trackId  人脸trackId
+         * @param score    质量得分
+         */
+        void onBestFrame(Frame frame, FaceInfo faceInfo, int trackId, float score);
+    }
+
+    /**
+     * 最低质量得分
+     */
+    private final float minScore;
+    /**
+     * 择优窗口时长，单位毫秒，为0时第一个达标的帧立即送出
+     */
+    private final long window;
+    private final Callback callback;
+
+    private int trackId = -1;
+    private long windowStart;
+    private float bestScore;
+    private Frame bestFrame;
+    private final Rect bestRect = new Rect();
+    private final FaceInfo bestFaceInfo = new FaceInfo();
+
+    /**
+     * @param minScore 最低质量得分
+     * @param window   择优窗口时长，单位毫秒
+     * @param callback 回调
+     */
+    public FaceQualityGate(float minScore, long window, Callback callback) {
+        this.minScore = minScore;
+        this.window = window;
+        this.callback = callback;
+    }
+
+    /**
+     * 送入一帧，门限需要保留该帧时自行持有引用
+     *
+     * @param trackId  人脸trackId
+     * @param frame    图像帧
+     * @param faceInfo 人脸信息
+     * @param score    质量得分
+     * @return 该帧是否成为窗口内得分最高的帧
+     */
+    public boolean offer(int trackId, Frame frame, FaceInfo faceInfo, float score) {
+        long now = System.currentTimeMillis();
+        if (trackId != this.trackId) {
+            reset();
+            this.trackId = trackId;
+        }
+        boolean held = false;
+        if (score >= minScore && (bestFrame == null || score > bestScore)) {
+            if (bestFrame == null) {
+                windowStart = now;
+            } else {
+                bestFrame.release();
+            }
+            bestFrame = frame.acquire();
+            bestScore = score;
+            bestRect.set(faceInfo.getRect());
+            bestFaceInfo.setRect(bestRect);
+            bestFaceInfo.setOrient(faceInfo.getOrient());
+            bestFaceInfo.setFaceId(faceInfo.getFaceId());
+            held = true;
+        }
+        if (bestFrame != null && now - windowStart >= window) {
+            Frame best = bestFrame;
+            bestFrame = null;
+            try {
+                callback.onBestFrame(best, bestFaceInfo, trackId, bestScore);
+            } finally {
+                best.release();
+            }
+        }
+        return held;
+    }
+
+    /**
+     * 释放持有的帧并清空窗口，人脸离开时调用
+     */
+    public void reset() {
+        if (bestFrame != null) {
+            Frame frame = bestFrame;
+            bestFrame = null;
+            frame.release();
+        }
+        trackId = -1;
+        bestScore = 0;
+    }
+}
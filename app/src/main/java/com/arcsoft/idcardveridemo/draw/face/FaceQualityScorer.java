@@ -0,0 +1,197 @@
+package com.arcsoft.idcardveridemo.draw.face;
+
+import android.graphics.Rect;
+
+/**
+ * 人脸质量评分类，在nv21数据的亮度平面上对人脸区域进行评分，综合清晰度、亮度以及人脸大小，
+ * 评分过程不分配内存，可在每帧检测后调用
+ */
+public class FaceQualityScorer {
+    /**
+     * 单个方向上的最大采样点数，人脸较大时按步长采样
+     */
+    private static final int MAX_SAMPLES_PER_LINE = 64;
+
+    /**
+     * 人脸宽度达到该值时大小得分为1，单位像素
+     */
+    private final int minFaceSize;
+    /**
+     * 拉普拉斯方差达到该值时清晰度得分为1
+     */
+    private final float sharpnessReference;
+    /**
+     * 平均亮度在[minBrightness, maxBrightness]内时亮度得分为1
+     */
+    private final int minBrightness;
+    private final int maxBrightness;
+
+    private FaceQualityScorer(Builder builder) {
+        minFaceSize = builder.minFaceSize;
+        sharpnessReference = builder.sharpnessReference;
+        minBrightness = builder.minBrightness;
+        maxBrightness = builder.maxBrightness;
+    }
+
+    /**
+     * 计算人脸质量得分
+     *
+     * @param nv21   图像数据
+     * @param width  图像宽度
+     * @param height 图像高度
+     * @param rect   人脸框
+     * @return 质量得分，范围[0,1]
+     */
+    public float score(byte[] nv21, int width, int height, Rect rect) {
+        return score(nv21, width, height, rect.left, rect.top, rect.right, rect.bottom);
+    }
+
+    /**
+     * 计算人脸质量得分，为清晰度、亮度、大小三项得分的乘积，任一项过差都会使总分很低
+     *
+     * @param nv21   图像数据
+     * @param width  图像宽度
+     * @param height 图像高度
+     * @param left   人脸框左边界
+     * @param top    人脸框上边界
+     * @param right  人脸框右边界
+     * @param bottom 人脸框下边界
+     * @return 质量得分，范围[0,1]
+     */
+    public float score(byte[] nv21, int width, int height, int left, int top, int right, int bottom) {
+        float sizeScore = sizeScore(right - left);
+        if (sizeScore == 0) {
+            return 0;
+        }
+        float brightnessScore = brightnessScore(meanLuma(nv21, width, height, left, top, right, bottom));
+        if (brightnessScore == 0) {
+            return 0;
+        }
+        float sharpnessScore = Math.min(1f, laplacianVariance(nv21, width, height, left, top, right, bottom) / sharpnessReference);
+        return sizeScore * brightnessScore * sharpnessScore;
+    }
+
+    private float sizeScore(int faceWidth) {
+        //小于最小人脸一半的直接判为0分
+        if (faceWidth * 2 < minFaceSize) {
+            return 0;
+        }
+        return Math.min(1f, (float) faceWidth / minFaceSize);
+    }
+
+    private float brightnessScore(float meanLuma) {
+        if (meanLuma < minBrightness) {
+            return meanLuma / minBrightness;
+        }
+        if (meanLuma > maxBrightness) {
+            return (255 - meanLuma) / (255 - maxBrightness);
+        }
+        return 1;
+    }
+
+    /**
+     * 计算区域内的平均亮度
+     *
+     * @return 平均亮度，范围[0,255]，区域为空时返回0
+     */
+    public static float meanLuma(byte[] nv21, int width, int height, int left, int top, int right, int bottom) {
+        left = Math.max(0, left);
+        top = Math.max(0, top);
+        right = Math.min(width, right);
+        bottom = Math.min(height, bottom);
+        if (right <= left || bottom <= top) {
+            return 0;
+        }
+        int step = sampleStep(right - left, bottom - top);
+        long sum = 0;
+        int count = 0;
+        for (int y = top; y < bottom; y += step) {
+            int rowOffset = y * width;
+            for (int x = left; x < right; x += step) {
+                sum += nv21[rowOffset + x] & 0xFF;
+                count++;
+            }
+        }
+        return (float) sum / count;
+    }
+
+    /**
+     * 计算区域内亮度的拉普拉斯方差，值越大图像越清晰
+     *
+     * @return 拉普拉斯方差，区域过小时返回0
+     */
+    public static float laplacianVariance(byte[] nv21, int width, int height, int left, int top, int right, int bottom) {
+        //拉普拉斯算子需要上下左右各一个像素
+        left = Math.max(1, left);
+        top = Math.max(1, top);
+        right = Math.min(width - 1, right);
+        bottom = Math.min(height - 1, bottom);
+        if (right <= left || bottom <= top) {
+            return 0;
+        }
+        int step = sampleStep(right - left, bottom - top);
+        long sum = 0;
+        long squareSum = 0;
+        int count = 0;
+        for (int y = top; y < bottom; y += step) {
+            int offset = y * width;
+            for (int x = left; x < right; x += step) {
+                int index = offset + x;
+                int laplacian = 4 * (nv21[index] & 0xFF)
+                        - (nv21[index - 1] & 0xFF)
+                        - (nv21[index + 1] & 0xFF)
+                        - (nv21[index - width] & 0xFF)
+                        - (nv21[index + width] & 0xFF);
+                sum += laplacian;
+                squareSum += laplacian * laplacian;
+                count++;
+            }
+        }
+        double mean = (double) sum / count;
+        return (float) ((double) squareSum / count - mean * mean);
+    }
+
+    private static int sampleStep(int regionWidth, int regionHeight) {
+        return Math.max(1, Math.max(regionWidth, regionHeight) / MAX_SAMPLES_PER_LINE);
+    }
+
+    public static final class Builder {
+        private int minFaceSize = 80;
+        private float sharpnessReference = 300;
+        private int minBrightness = 60;
+        private int maxBrightness = 200;
+
+        public Builder() {
+        }
+
+        public Builder minFaceSize(int val) {
+            minFaceSize = val;
+            return this;
+        }
+
+        public Builder sharpnessReference(float val) {
+            sharpnessReference = val;
+            return this;
+        }
+
+        public Builder minBrightness(int val) {
+            minBrightness = val;
+            return this;
+        }
+
+        public Builder maxBrightness(int val) {
+            maxBrightness = val;
+            return this;
+        }
+
+        public FaceQualityScorer build() {
+            if (minFaceSize <= 0 || sharpnessReference <= 0) {
+                throw new IllegalArgumentException("minFaceSize and sharpnessReference must > 0");
+            }
+            if (minBrightness <= 0 || maxBrightness >= 255 || minBrightness > maxBrightness) {
+                throw new IllegalArgumentException("brightness range must satisfy 0 < minBrightness <= maxBrightness < 255");
+            }
+            return new FaceQualityScorer(this);
+        }
+    }
+}
@@ -0,0 +1,427 @@
+package com.arcsoft.idcardveridemo.draw.face;
+
+import com.arcsoft.face.FaceFeature;
+import com.arcsoft.face.LivenessInfo;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 人脸登记表，以trackId为KEY保存每个人脸的特征提取状态、最新特征、活体检测状态及结果、质量分、姓名及最后出现时间。
+ * <p>
+ * 使用int为KEY的开放寻址表（线性探测，删除时后移填补空位），各字段存放在并行数组中，读写均不装箱；
+ * 超过{@link Builder#trackTtl(long)}未出现的人脸被淘汰，长时间运行时表的大小只与近期出现过的人脸数有关。
+ * 检测线程、特征提取及活体检测回调线程、UI线程同时访问，所有方法加锁，每次操作只涉及少量数组读写
+ */
+public class TrackRegistry {
+    /**
+     * 空位标记，不可作为trackId
+     */
+    private static final int EMPTY = Integer.MIN_VALUE;
+    private static final int MIN_CAPACITY = 16;
+
+    /**
+     * 人脸未出现超过该时长后淘汰，单位纳秒
+     */
+    private final long trackTtl;
+    /**
+     * 特征有效期，单位纳秒
+     */
+    private final long featureTtl;
+    /**
+     * 两次淘汰检查的最小间隔，单位纳秒
+     */
+    private final long evictInterval;
+
+    private int[] keys;
+    private int[] featureStatuses;
+    private FaceFeature[] features;
+    private long[] featureTimes;
+    private int[] livenessStatuses;
+    private int[] livenesses;
+    private float[] qualityScores;
+    private String[] names;
+    private long[] lastSeenTimes;
+    private int mask;
+    private int size;
+    private long lastEvictTime;
+    private long evictedCount;
+
+    private TrackRegistry(Builder builder) {
+        trackTtl = TimeUnit.MILLISECONDS.toNanos(builder.trackTtl);
+        featureTtl = TimeUnit.MILLISECONDS.toNanos(builder.featureTtl);
+        if (trackTtl <= 0) {
+            throw new IllegalArgumentException("trackTtl must > 0");
+        }
+        evictInterval = Math.max(1, trackTtl / 4);
+        int capacity = MIN_CAPACITY;
+        while (capacity < builder.initialCapacity * 2) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+        lastEvictTime = System.nanoTime();
+    }
+
+    /**
+     * 记录当前画面中的人脸，每帧检测完成后调用，同时淘汰长时间未出现的人脸
+     *
+     * @param trackIds 当前画面中人脸的trackId
+     */
+    public synchronized void refresh(int[] trackIds) {
+        refresh(trackIds, System.nanoTime());
+    }
+
+    synchronized void refresh(int[] trackIds, long now) {
+        for (int trackId : trackIds) {
+            int slot = slotOf(trackId, now);
+            lastSeenTimes[slot] = now;
+        }
+        if (now - lastEvictTime >= evictInterval) {
+            evictExpired(now);
+        }
+    }
+
+    /**
+     * 淘汰超过trackTtl未出现的人脸，并丢弃已过期的特征
+     *
+     * @return 淘汰的人脸数
+     */
+    public synchronized int evictExpired() {
+        return evictExpired(System.nanoTime());
+    }
+
+    synchronized int evictExpired(long now) {
+        lastEvictTime = now;
+        int evicted = 0;
+        int slot = 0;
+        while (slot < keys.length) {
+            if (keys[slot] != EMPTY && now - lastSeenTimes[slot] > trackTtl) {
+                //后移填补后当前位置可能换成了未检查的人脸，需再次检查该位置
+                removeAt(slot);
+                evicted++;
+                continue;
+            }
+            if (keys[slot] != EMPTY && features[slot] != null && now - featureTimes[slot] > featureTtl) {
+                features[slot] = null;
+            }
+            slot++;
+        }
+        //删除时的后移可能把表尾的人脸移到表头已检查过的位置，这些人脸最多在下次检查时淘汰
+        evictedCount += evicted;
+        return evicted;
+    }
+
+    /**
+     * @return 特征提取状态，取值为{@link RequestFeatureStatus}，未登记时为{@link RequestFeatureStatus#NONE}
+     */
+    public synchronized int getFeatureStatus(int trackId) {
+        int slot = find(trackId);
+        return slot < 0 ? RequestFeatureStatus.NONE : featureStatuses[slot];
+    }
+
+    public synchronized void setFeatureStatus(int trackId, int status) {
+        int slot = slotOf(trackId, System.nanoTime());
+        featureStatuses[slot] = status;
+    }
+
+    /**
+     * 保存人脸最新的特征
+     *
+     * @param trackId     人脸trackId
+     * @param faceFeature 人脸特征
+     */
+    public synchronized void putFeature(int trackId, FaceFeature faceFeature) {
+        if (faceFeature == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        int slot = slotOf(trackId, now);
+        features[slot] = faceFeature;
+        featureTimes[slot] = now;
+    }
+
+    /**
+     * @return 有效期内的特征，不存在或已过期时返回null
+     */
+    public synchronized FaceFeature getFreshFeature(int trackId) {
+        return getFreshFeature(trackId, System.nanoTime());
+    }
+
+    synchronized FaceFeature getFreshFeature(int trackId, long now) {
+        int slot = find(trackId);
+        if (slot < 0 || features[slot] == null || now - featureTimes[slot] > featureTtl) {
+            return null;
+        }
+        return features[slot];
+    }
+
+    public synchronized boolean isFeatureFresh(int trackId) {
+        return getFreshFeature(trackId) != null;
+    }
+
+    public synchronized void removeFeature(int trackId) {
+        int slot = find(trackId);
+        if (slot >= 0) {
+            features[slot] = null;
+        }
+    }
+
+    /**
+     * @return 活体检测状态，取值为{@link RequestFeatureStatus}，未登记时为{@link RequestFeatureStatus#NONE}
+     */
+    public synchronized int getLivenessStatus(int trackId) {
+        int slot = find(trackId);
+        return slot < 0 ? RequestFeatureStatus.NONE : livenessStatuses[slot];
+    }
+
+    public synchronized void setLivenessStatus(int trackId, int status) {
+        int slot = slotOf(trackId, System.nanoTime());
+        livenessStatuses[slot] = status;
+    }
+
+    /**
+     * @return 活体检测结果，未检测时为{@link LivenessInfo#UNKNOWN}
+     */
+    public synchronized int getLiveness(int trackId) {
+        int slot = find(trackId);
+        return slot < 0 ? LivenessInfo.UNKNOWN : livenesses[slot];
+    }
+
+    public synchronized void setLiveness(int trackId, int liveness) {
+        int slot = slotOf(trackId, System.nanoTime());
+        livenesses[slot] = liveness;
+    }
+
+    /**
+     * @return 最近一次送入特征提取的帧的质量分，未登记时为0
+     */
+    public synchronized float getQualityScore(int trackId) {
+        int slot = find(trackId);
+        return slot < 0 ? 0 : qualityScores[slot];
+    }
+
+    public synchronized void setQualityScore(int trackId, float score) {
+        int slot = slotOf(trackId, System.nanoTime());
+        qualityScores[slot] = score;
+    }
+
+    public synchronized String getName(int trackId) {
+        int slot = find(trackId);
+        return slot < 0 ? null : names[slot];
+    }
+
+    public synchronized void setName(int trackId, String name) {
+        int slot = slotOf(trackId, System.nanoTime());
+        names[slot] = name;
+    }
+
+    /**
+     * @return 人脸最后出现的时间，与{@link System#nanoTime()}同一时基，未登记时为-1
+     */
+    public synchronized long getLastSeenTime(int trackId) {
+        int slot = find(trackId);
+        return slot < 0 ? -1 : lastSeenTimes[slot];
+    }
+
+    public synchronized boolean contains(int trackId) {
+        return find(trackId) >= 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return 累计淘汰的人脸数
+     */
+    public synchronized long getEvictedCount() {
+        return evictedCount;
+    }
+
+    public synchronized void clear() {
+        allocate(MIN_CAPACITY);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "TrackRegistry{" +
+                "size=" + size +
+                ", capacity=" + keys.length +
+                ", evictedCount=" + evictedCount +
+                '}';
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        featureStatuses = new int[capacity];
+        features = new FaceFeature[capacity];
+        featureTimes = new long[capacity];
+        livenessStatuses = new int[capacity];
+        livenesses = new int[capacity];
+        qualityScores = new float[capacity];
+        names = new String[capacity];
+        lastSeenTimes = new long[capacity];
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    private int hash(int trackId) {
+        //trackId通常连续递增，乘以黄金分割常数后取高位打散
+        int h = trackId * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * @return trackId所在的位置，不存在时返回-1
+     */
+    private int find(int trackId) {
+        int slot = hash(trackId);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == trackId) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * 可能扩容并替换各数组，调用方需先取得位置再访问数组，不可写成 array[slotOf(...)] = value
+     *
+     * @return trackId所在的位置，不存在时登记并以now作为出现时间
+     */
+    private int slotOf(int trackId, long now) {
+        if (trackId == EMPTY) {
+            throw new IllegalArgumentException("invalid trackId: " + trackId);
+        }
+        int slot = find(trackId);
+        if (slot >= 0) {
+            return slot;
+        }
+        //负载因子不超过0.5，保证探测长度较短
+        if ((size + 1) * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        slot = hash(trackId);
+        while (keys[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = trackId;
+        featureStatuses[slot] = RequestFeatureStatus.NONE;
+        livenessStatuses[slot] = RequestFeatureStatus.NONE;
+        livenesses[slot] = LivenessInfo.UNKNOWN;
+        lastSeenTimes[slot] = now;
+        size++;
+        return slot;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldFeatureStatuses = featureStatuses;
+        FaceFeature[] oldFeatures = features;
+        long[] oldFeatureTimes = featureTimes;
+        int[] oldLivenessStatuses = livenessStatuses;
+        int[] oldLivenesses = livenesses;
+        float[] oldQualityScores = qualityScores;
+        String[] oldNames = names;
+        long[] oldLastSeenTimes = lastSeenTimes;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == EMPTY) {
+                continue;
+            }
+            int slot = hash(oldKeys[i]);
+            while (keys[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[i];
+            featureStatuses[slot] = oldFeatureStatuses[i];
+            features[slot] = oldFeatures[i];
+            featureTimes[slot] = oldFeatureTimes[i];
+            livenessStatuses[slot] = oldLivenessStatuses[i];
+            livenesses[slot] = oldLivenesses[i];
+            qualityScores[slot] = oldQualityScores[i];
+            names[slot] = oldNames[i];
+            lastSeenTimes[slot] = oldLastSeenTimes[i];
+            size++;
+        }
+    }
+
+    /**
+     * 删除指定位置的人脸，并将后续探测链上的人脸前移填补空位，不使用删除标记
+     */
+    private void removeAt(int slot) {
+        int hole = slot;
+        int next = (slot + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int home = hash(keys[next]);
+            //空位位于该人脸的初始位置与当前位置之间时，前移后仍可被探测到
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                move(next, hole);
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = EMPTY;
+        features[hole] = null;
+        names[hole] = null;
+        size--;
+    }
+
+    private void move(int from, int to) {
+        keys[to] = keys[from];
+        featureStatuses[to] = featureStatuses[from];
+        features[to] = features[from];
+        featureTimes[to] = featureTimes[from];
+        livenessStatuses[to] = livenessStatuses[from];
+        livenesses[to] = livenesses[from];
+        qualityScores[to] = qualityScores[from];
+        names[to] = names[from];
+        lastSeenTimes[to] = lastSeenTimes[from];
+    }
+
+    public static final class Builder {
+        private long trackTtl = 5000;
+        private long featureTtl = 2000;
+        private int initialCapacity = 16;
+
+        public Builder() {
+        }
+
+        /**
+         * 人脸未出现超过该时长后淘汰
+         *
+         * @param val 时长，单位毫秒
+         * @return Builder
+         */
+        public Builder trackTtl(long val) {
+            trackTtl = val;
+            return this;
+        }
+
+        /**
+         * 特征有效期，超过有效期的特征不再使用
+         *
+         * @param val 有效期，单位毫秒
+         * @return Builder
+         */
+        public Builder featureTtl(long val) {
+            featureTtl = val;
+            return this;
+        }
+
+        /**
+         * @param val 预计同时登记的人脸数
+         * @return Builder
+         */
+        public Builder initialCapacity(int val) {
+            initialCapacity = val;
+            return this;
+        }
+
+        public TrackRegistry build() {
+            return new TrackRegistry(this);
+        }
+    }
+}
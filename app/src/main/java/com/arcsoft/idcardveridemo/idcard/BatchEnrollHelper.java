@@ -0,0 +1,575 @@
+package com.arcsoft.idcardveridemo.idcard;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import com.arcsoft.face.ErrorInfo;
+import com.arcsoft.face.FaceEngine;
+import com.arcsoft.face.FaceFeature;
+import com.arcsoft.face.FaceInfo;
+import com.arcsoft.idcardveridemo.draw.face.EnginePool;
+import com.arcsoft.idcardveridemo.draw.face.FaceDetector;
+import com.arcsoft.idcardveridemo.draw.face.FaceFeatureExtractor;
+import com.arcsoft.imageutil.ArcSoftImageFormat;
+import com.arcsoft.imageutil.ArcSoftImageUtil;
+import com.arcsoft.imageutil.ArcSoftImageUtilError;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 批量录入辅助类，将目录中"姓名_身份证号.jpg"格式的照片批量提取特征并写入{@link FeatureStore}。
+ * <p>
+ * 多个线程并行降采样解码及格式转换，只在人脸检测及特征提取时租用IMAGE模式引擎，解码与引擎调用互相重叠；
+ * 特征由录入线程按批写入特征库并同步到磁盘，之后才将该批图片记入进度文件，中断后再次录入时跳过已记录的图片
+ */
+public class BatchEnrollHelper {
+    private static final String TAG = "BatchEnrollHelper";
+    /**
+     * 录入线程被中断，该图片未处理
+     */
+    private static final int CODE_INTERRUPTED = Integer.MIN_VALUE;
+    private static final long POLL_INTERVAL = 50;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private File directory;
+    private FeatureStore featureStore;
+    /**
+     * 引擎池，引擎同时实现{@link FaceDetector}及{@link FaceFeatureExtractor}，由Builder保证
+     */
+    private EnginePool<FaceDetector> enginePool;
+    private int maxImageSize;
+    private int batchSize;
+    private int threadCount;
+    private File progressFile;
+    private volatile BatchEnrollListener batchEnrollListener;
+
+    private final BitmapPool bitmapPool;
+    private ExecutorService workerExecutor;
+    private Thread enrollThread;
+    private volatile boolean cancelled = false;
+    /**
+     * 各工作线程累计的解码及格式转换耗时，单位纳秒
+     */
+    private final AtomicLong decodeNanos = new AtomicLong();
+    /**
+     * 各工作线程累计的人脸检测及特征提取耗时，不含等待引擎的时间，单位纳秒
+     */
+    private final AtomicLong engineNanos = new AtomicLong();
+
+    private BatchEnrollHelper(Builder builder) {
+        directory = builder.directory;
+        featureStore = builder.featureStore;
+        enginePool = builder.enginePool;
+        maxImageSize = builder.maxImageSize;
+        batchSize = builder.batchSize;
+        progressFile = builder.progressFile;
+        batchEnrollListener = builder.batchEnrollListener;
+        if (directory == null || featureStore == null || enginePool == null) {
+            throw new RuntimeException("directory, featureStore and enginePool must be specified!");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must > 0");
+        }
+        //比引擎多一个线程，引擎被占用时仍有线程在解码下一张图片
+        threadCount = builder.threadCount > 0 ? builder.threadCount : enginePool.size() + 1;
+        if (progressFile == null) {
+            progressFile = new File(directory, ".enroll_progress");
+        }
+        bitmapPool = new BitmapPool(threadCount);
+    }
+
+    /**
+     * 开始录入，立即返回，只能调用一次
+     */
+    public synchronized void start() {
+        if (enrollThread != null) {
+            return;
+        }
+        workerExecutor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+            private final AtomicInteger threadIndex = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(r, TAG + "-worker-" + threadIndex.getAndIncrement());
+            }
+        });
+        enrollThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Report report = enroll();
+                Log.i(TAG, "enroll finished: " + report);
+                BatchEnrollListener listener = batchEnrollListener;
+                if (listener != null) {
+                    listener.onEnrollFinished(report);
+                }
+            }
+        }, TAG);
+        enrollThread.start();
+    }
+
+    /**
+     * 取消录入，正在处理的图片处理完后写入特征库，之后结束录入，进度保留
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * 立即停止录入并中断等待引擎的线程，销毁引擎前调用。未写入特征库的图片下次录入时重新处理
+     */
+    public void release() {
+        cancelled = true;
+        batchEnrollListener = null;
+        synchronized (this) {
+            if (workerExecutor != null) {
+                workerExecutor.shutdownNow();
+            }
+        }
+        bitmapPool.clear();
+    }
+
+    private Report enroll() {
+        long startTime = System.nanoTime();
+        File[] files = directory.listFiles();
+        List<File> images = new ArrayList<>();
+        if (files != null) {
+            //按文件名排序，每次录入的顺序一致
+            Arrays.sort(files);
+            for (File file : files) {
+                if (file.isFile() && SimulatedIdCardReader.isImage(file.getName())) {
+                    images.add(file);
+                }
+            }
+        }
+        Map<String, Integer> finishedFiles = loadProgress();
+        List<File> pendingImages = new ArrayList<>();
+        int skipped = 0;
+        for (File image : images) {
+            Integer code = finishedFiles.get(image.getName());
+            if (code == null) {
+                pendingImages.add(image);
+                continue;
+            }
+            skipped++;
+        }
+        Log.i(TAG, "enroll start: " + images.size() + " images, " + skipped + " already enrolled, " + threadCount + " threads, " + enginePool.size() + " engines");
+
+        LinkedBlockingQueue<Result> results = new LinkedBlockingQueue<>();
+        AtomicInteger nextIndex = new AtomicInteger();
+        for (int i = 0; i < threadCount; i++) {
+            workerExecutor.execute(new Worker(pendingImages, nextIndex, results));
+        }
+        workerExecutor.shutdown();
+
+        List<Result> batch = new ArrayList<>(batchSize);
+        int succeeded = 0;
+        int failed = 0;
+        while (true) {
+            Result result;
+            try {
+                result = results.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (result == null) {
+                if (workerExecutor.isTerminated() && results.isEmpty()) {
+                    break;
+                }
+                continue;
+            }
+            if (result.code == CODE_INTERRUPTED) {
+                continue;
+            }
+            batch.add(result);
+            if (batch.size() >= batchSize) {
+                int committed = commit(batch);
+                succeeded += committed;
+                failed += batch.size() - committed;
+                batch.clear();
+                notifyProgress(skipped + succeeded + failed, images.size(), failed);
+            }
+        }
+        if (!batch.isEmpty()) {
+            int committed = commit(batch);
+            succeeded += committed;
+            failed += batch.size() - committed;
+            notifyProgress(skipped + succeeded + failed, images.size(), failed);
+        }
+        return new Report(images.size(), skipped, succeeded, failed, cancelled, System.nanoTime() - startTime,
+                decodeNanos.get(), engineNanos.get());
+    }
+
+    /**
+     * 将一批特征写入特征库，写入成功后记录进度
+     *
+     * @return 录入成功的图片数
+     */
+    private int commit(List<Result> batch) {
+        Map<String, FaceFeature> features = new LinkedHashMap<>();
+        for (Result result : batch) {
+            if (result.faceFeature != null) {
+                features.put(result.idNumber, result.faceFeature);
+            }
+        }
+        boolean saved = features.isEmpty() || featureStore.putAll(features) == features.size();
+        if (!saved) {
+            Log.e(TAG, "commit: write feature store failed");
+        }
+        StringBuilder progress = new StringBuilder();
+        int committed = 0;
+        for (Result result : batch) {
+            if (result.faceFeature != null) {
+                if (!saved) {
+                    //未写入的图片不记录进度，下次录入时重新处理
+                    continue;
+                }
+                committed++;
+            }
+            progress.append(result.fileName).append('\t').append(result.code).append('\n');
+        }
+        appendProgress(progress.toString());
+        return committed;
+    }
+
+    private void notifyProgress(int processed, int total, int failed) {
+        BatchEnrollListener listener = batchEnrollListener;
+        if (listener != null) {
+            listener.onEnrollProgress(processed, total, failed);
+        }
+    }
+
+    /**
+     * @return 已处理的图片，KEY为文件名，VALUE为处理结果
+     */
+    private Map<String, Integer> loadProgress() {
+        Map<String, Integer> finishedFiles = new HashMap<>();
+        if (!progressFile.exists()) {
+            return finishedFiles;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(progressFile), UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separatorIndex = line.lastIndexOf('\t');
+                if (separatorIndex <= 0) {
+                    continue;
+                }
+                try {
+                    finishedFiles.put(line.substring(0, separatorIndex), Integer.parseInt(line.substring(separatorIndex + 1)));
+                } catch (NumberFormatException e) {
+                    //中断时写了一半的行，忽略后该图片重新处理
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "loadProgress: " + e.getMessage());
+        }
+        return finishedFiles;
+    }
+
+    private void appendProgress(String progress) {
+        if (progress.isEmpty()) {
+            return;
+        }
+        try (FileOutputStream outputStream = new FileOutputStream(progressFile, true)) {
+            outputStream.write(progress.getBytes(UTF_8));
+            outputStream.getFD().sync();
+        } catch (IOException e) {
+            Log.e(TAG, "appendProgress: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 工作线程，依次领取未处理的图片，解码后租用引擎检测人脸并提取特征
+     */
+    private final class Worker implements Runnable {
+        private final List<File> images;
+        private final AtomicInteger nextIndex;
+        private final LinkedBlockingQueue<Result> results;
+        private final List<FaceInfo> faceInfoList = new ArrayList<>();
+        /**
+         * BGR缓冲区，图片大小不变时复用
+         */
+        private byte[] bgrData;
+
+        private Worker(List<File> images, AtomicInteger nextIndex, LinkedBlockingQueue<Result> results) {
+            this.images = images;
+            this.nextIndex = nextIndex;
+            this.results = results;
+        }
+
+        @Override
+        public void run() {
+            while (!cancelled) {
+                int index = nextIndex.getAndIncrement();
+                if (index >= images.size()) {
+                    return;
+                }
+                Result result = process(images.get(index));
+                results.offer(result);
+                if (result.code == CODE_INTERRUPTED) {
+                    return;
+                }
+            }
+        }
+
+        private Result process(File image) {
+            String fileName = image.getName();
+            String idNumber = SimulatedIdCardReader.parseFileName(fileName)[1];
+            long decodeStartTime = System.nanoTime();
+            Bitmap bitmap = bitmapPool.decodeFile(image.getAbsolutePath(), maxImageSize);
+            if (bitmap == null) {
+                return new Result(fileName, idNumber, IdCardIngestHelper.ERROR_DECODE, null);
+            }
+            //图像4字节对齐 裁剪，已对齐时直接使用原图
+            Bitmap alignedBitmap = bitmap.getWidth() % 4 == 0 ? bitmap : ArcSoftImageUtil.getAlignedBitmap(bitmap, true);
+            if (alignedBitmap != bitmap) {
+                bitmapPool.put(bitmap);
+            }
+            int width = alignedBitmap.getWidth();
+            int height = alignedBitmap.getHeight();
+            if (bgrData == null || bgrData.length != width * height * 3) {
+                bgrData = new byte[width * height * 3];
+            }
+            int translateResult = ArcSoftImageUtil.bitmapToImageData(alignedBitmap, bgrData, ArcSoftImageFormat.BGR24);
+            bitmapPool.put(alignedBitmap);
+            decodeNanos.addAndGet(System.nanoTime() - decodeStartTime);
+            if (translateResult != ArcSoftImageUtilError.CODE_SUCCESS) {
+                Log.e(TAG, "translate Error result: " + translateResult + ", file: " + fileName);
+                return new Result(fileName, idNumber, IdCardIngestHelper.ERROR_TRANSLATE, null);
+            }
+
+            FaceDetector engine;
+            try {
+                engine = enginePool.acquire();
+            } catch (InterruptedException e) {
+                return new Result(fileName, idNumber, CODE_INTERRUPTED, null);
+            }
+            long engineStartTime = System.nanoTime();
+            try {
+                faceInfoList.clear();
+                int detectResult = engine.detectFaces(bgrData, width, height, FaceEngine.CP_PAF_BGR24, faceInfoList);
+                if (detectResult != ErrorInfo.MOK || faceInfoList.isEmpty()) {
+                    return new Result(fileName, idNumber, detectResult != ErrorInfo.MOK ? detectResult : IdCardIngestHelper.ERROR_NO_FACE, null);
+                }
+                FaceFeature faceFeature = new FaceFeature();
+                int extractResult = ((FaceFeatureExtractor) engine).extractFaceFeature(bgrData, width, height, FaceEngine.CP_PAF_BGR24,
+                        faceInfoList.get(0), faceFeature);
+                return new Result(fileName, idNumber, extractResult, extractResult == ErrorInfo.MOK ? faceFeature : null);
+            } finally {
+                engineNanos.addAndGet(System.nanoTime() - engineStartTime);
+                enginePool.release(engine);
+            }
+        }
+    }
+
+    private static final class Result {
+        private final String fileName;
+        private final String idNumber;
+        private final int code;
+        private final FaceFeature faceFeature;
+
+        private Result(String fileName, String idNumber, int code, FaceFeature faceFeature) {
+            this.fileName = fileName;
+            this.idNumber = idNumber;
+            this.code = code;
+            this.faceFeature = faceFeature;
+        }
+    }
+
+    /**
+     * 录入统计
+     */
+    public static final class Report {
+        private final int total;
+        private final int skipped;
+        private final int succeeded;
+        private final int failed;
+        private final boolean cancelled;
+        private final long elapsedNanos;
+        private final long decodeNanos;
+        private final long engineNanos;
+
+        Report(int total, int skipped, int succeeded, int failed, boolean cancelled, long elapsedNanos, long decodeNanos, long engineNanos) {
+            this.total = total;
+            this.skipped = skipped;
+            this.succeeded = succeeded;
+            this.failed = failed;
+            this.cancelled = cancelled;
+            this.elapsedNanos = elapsedNanos;
+            this.decodeNanos = decodeNanos;
+            this.engineNanos = engineNanos;
+        }
+
+        /**
+         * @return 目录中的图片总数
+         */
+        public int getTotal() {
+            return total;
+        }
+
+        /**
+         * @return 之前已处理而跳过的图片数
+         */
+        public int getSkipped() {
+            return skipped;
+        }
+
+        public int getSucceeded() {
+            return succeeded;
+        }
+
+        public int getFailed() {
+            return failed;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public long getElapsedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        }
+
+        /**
+         * @return 本次录入的吞吐量，单位张/秒，不含跳过的图片
+         */
+        public float getImagesPerSecond() {
+            return elapsedNanos > 0 ? (succeeded + failed) * 1e9f / elapsedNanos : 0;
+        }
+
+        @Override
+        public String toString() {
+            int processed = succeeded + failed;
+            return "Report{" +
+                    "total=" + total +
+                    ", skipped=" + skipped +
+                    ", succeeded=" + succeeded +
+                    ", failed=" + failed +
+                    ", cancelled=" + cancelled +
+                    ", elapsed=" + getElapsedMillis() + "ms" +
+                    ", imagesPerSecond=" + String.format(Locale.ROOT, "%.1f", getImagesPerSecond()) +
+                    ", avgDecode=" + (processed > 0 ? TimeUnit.NANOSECONDS.toMicros(decodeNanos / processed) : 0) + "us" +
+                    ", avgEngine=" + (processed > 0 ? TimeUnit.NANOSECONDS.toMicros(engineNanos / processed) : 0) + "us" +
+                    '}';
+        }
+    }
+
+    public static final class Builder {
+        private File directory;
+        private FeatureStore featureStore;
+        private EnginePool<FaceDetector> enginePool;
+        private int maxImageSize = 640;
+        private int batchSize = 64;
+        private int threadCount;
+        private File progressFile;
+        private BatchEnrollListener batchEnrollListener;
+
+        public Builder() {
+        }
+
+        /**
+         * @param val 存放照片的目录，文件名格式为"姓名_身份证号.jpg"
+         * @return Builder
+         */
+        public Builder directory(File val) {
+            directory = val;
+            return this;
+        }
+
+        /**
+         * 录入的特征库，应使用不淘汰的特征库（{@link FeatureStore.Builder#evictable(boolean)}），
+         * 否则被淘汰的特征在进度文件中仍记录为已录入，再次录入时不会补回
+         *
+         * @param val 特征库
+         * @return Builder
+         */
+        public Builder featureStore(FeatureStore val) {
+            featureStore = val;
+            return this;
+        }
+
+        /**
+         * 已初始化的IMAGE模式引擎池，每张图片检测及提取时租用一个引擎
+         *
+         * @param val 引擎池
+         * @return Builder
+         */
+        @SuppressWarnings("unchecked")
+        public <T extends FaceDetector & FaceFeatureExtractor> Builder enginePool(EnginePool<T> val) {
+            enginePool = (EnginePool<FaceDetector>) (EnginePool<?>) val;
+            return this;
+        }
+
+        /**
+         * 解码时降采样的目标最长边，单位像素，小于等于0时不降采样
+         *
+         * @param val 目标最长边
+         * @return Builder
+         */
+        public Builder maxImageSize(int val) {
+            maxImageSize = val;
+            return this;
+        }
+
+        /**
+         * 每批写入特征库的图片数，批越大写入及同步次数越少，中断时需要重新处理的图片越多
+         *
+         * @param val 每批图片数
+         * @return Builder
+         */
+        public Builder batchSize(int val) {
+            batchSize = val;
+            return this;
+        }
+
+        /**
+         * 解码线程数，小于等于0时为引擎数加一
+         *
+         * @param val 线程数
+         * @return Builder
+         */
+        public Builder threadCount(int val) {
+            threadCount = val;
+            return this;
+        }
+
+        /**
+         * 进度文件，为空时使用照片目录下的.enroll_progress
+         *
+         * @param val 进度文件
+         * @return Builder
+         */
+        public Builder progressFile(File val) {
+            progressFile = val;
+            return this;
+        }
+
+        public Builder batchEnrollListener(BatchEnrollListener val) {
+            batchEnrollListener = val;
+            return this;
+        }
+
+        public BatchEnrollHelper build() {
+            return new BatchEnrollHelper(this);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.arcsoft.idcardveridemo.idcard;
+
+/**
+ * 批量录入回调，在录入线程中执行
+ */
+public interface BatchEnrollListener {
+    /**
+     * 每批特征写入特征库后的回调
+     *
+     * @param processed 已处理的图片数，包括之前已录入而跳过的图片
+     * @param total     目录中的图片总数
+     * @param failed    本次处理失败的图片数
+     */
+    void onEnrollProgress(int processed, int total, int failed);
+
+    /**
+     * 录入结束或被取消后的回调
+     *
+     * @param report 录入统计
+     */
+    void onEnrollFinished(BatchEnrollHelper.Report report);
+}
@@ -0,0 +1,110 @@
+package com.arcsoft.idcardveridemo.idcard;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Bitmap复用池，解码身份证照片时通过{@link BitmapFactory.Options#inBitmap}复用已不再使用的Bitmap，
+ * 避免每次刷卡都分配新的像素内存
+ */
+public class BitmapPool {
+    private final int maxSize;
+    private final ArrayDeque<Bitmap> bitmaps = new ArrayDeque<>();
+
+    /**
+     * @param maxSize 最多缓存的Bitmap数量
+     */
+    public BitmapPool(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 解码图片文件，优先复用池中足够大的Bitmap
+     *
+     * @param path 图片路径
+     * @return 解码得到的Bitmap，解码失败返回null
+     */
+    public Bitmap decodeFile(String path) {
+        return decodeFile(path, 0);
+    }
+
+    /**
+     * 降采样解码图片文件，解码后的最长边不小于maxSize且尽可能接近，优先复用池中足够大的Bitmap
+     *
+     * @param path    图片路径
+     * @param maxSize 期望的最长边，单位像素，小于等于0时不降采样
+     * @return 解码得到的Bitmap，解码失败返回null
+     */
+    public Bitmap decodeFile(String path, int maxSize) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        int sampleSize = 1;
+        if (maxSize > 0) {
+            //inSampleSize只支持2的幂，取降采样后最长边仍不小于maxSize的最大值
+            while (Math.max(options.outWidth, options.outHeight) / (sampleSize * 2) >= maxSize) {
+                sampleSize *= 2;
+            }
+        }
+        int width = (options.outWidth + sampleSize - 1) / sampleSize;
+        int height = (options.outHeight + sampleSize - 1) / sampleSize;
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inMutable = true;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        options.inBitmap = take(width * height * 4);
+        try {
+            return BitmapFactory.decodeFile(path, options);
+        } catch (IllegalArgumentException e) {
+            //复用失败时放弃复用重新解码
+            options.inBitmap = null;
+            return BitmapFactory.decodeFile(path, options);
+        }
+    }
+
+    /**
+     * 归还不再使用的Bitmap
+     *
+     * @param bitmap 不再使用的Bitmap，调用后调用方不可再使用
+     */
+    public synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()) {
+            return;
+        }
+        if (bitmaps.contains(bitmap)) {
+            return;
+        }
+        if (bitmaps.size() >= maxSize) {
+            bitmaps.pollFirst().recycle();
+        }
+        bitmaps.offerLast(bitmap);
+    }
+
+    /**
+     * 取出一个像素内存不小于byteCount的Bitmap
+     */
+    private synchronized Bitmap take(int byteCount) {
+        Iterator<Bitmap> iterator = bitmaps.iterator();
+        while (iterator.hasNext()) {
+            Bitmap bitmap = iterator.next();
+            if (bitmap.getAllocationByteCount() >= byteCount) {
+                iterator.remove();
+                return bitmap;
+            }
+        }
+        return null;
+    }
+
+    public synchronized void clear() {
+        for (Bitmap bitmap : bitmaps) {
+            bitmap.recycle();
+        }
+        bitmaps.clear();
+    }
+}
@@ -0,0 +1,787 @@
+package com.arcsoft.idcardveridemo.idcard;
+
+import android.util.Log;
+
+import com.arcsoft.face.FaceFeature;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * 身份证人脸特征库，以身份证号的SHA-256为KEY持久化身份证照片的人脸特征，
+ * 同一张身份证再次刷卡时直接读取特征，无需重新进行照片转换、人脸检测及特征提取。
+ * <p>
+ * 文件为只追加的二进制格式：文件头（魔数、格式版本、特征版本）之后依次为记录，
+ * 每条记录为 KEY(32) + 写入时间(8) + 特征长度(4) + 特征数据 + CRC32(4)，特征长度为0表示删除。
+ * 读取通过内存映射进行，内存中的索引按最近使用排序，超过数量上限时淘汰最久未使用的特征（也可配置为不淘汰、拒绝写入），
+ * 无效记录占比过高或文件超过大小上限时压缩文件。文件中不保存身份证号明文
+ */
+public class FeatureStore {
+    private static final String TAG = "FeatureStore";
+    /**
+     * 文件魔数，"AFS1"
+     */
+    private static final int MAGIC = 0x41465331;
+    /**
+     * 文件格式版本，格式变更时递增，版本不一致的文件会被清空
+     */
+    public static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int KEY_SIZE = 32;
+    /**
+     * 记录头大小，KEY + 写入时间 + 特征长度
+     */
+    private static final int RECORD_HEADER_SIZE = KEY_SIZE + 8 + 4;
+    private static final int CRC_SIZE = 4;
+    /**
+     * 单个特征的最大长度，超过视为记录损坏
+     */
+    private static final int MAX_FEATURE_SIZE = 16 * 1024;
+    /**
+     * 无效记录少于该值时不压缩，单位字节
+     */
+    private static final long MIN_COMPACT_GARBAGE = 64 * 1024;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File file;
+    /**
+     * 最多保存的特征数
+     */
+    private final int maxEntries;
+    /**
+     * 超过数量上限时是否淘汰最久未使用的特征，否则拒绝写入新特征
+     */
+    private final boolean evictable;
+    /**
+     * 文件大小上限，单位字节
+     */
+    private final long maxFileSize;
+    /**
+     * 特征版本，一般为引擎版本，不一致时已保存的特征作废
+     */
+    private final int featureVersion;
+
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+    /**
+     * 只读映射，文件追加后按需重新映射
+     */
+    private MappedByteBuffer mappedBuffer;
+    /**
+     * 文件大小，即下一条记录的写入位置
+     */
+    private long fileSize;
+    /**
+     * 被覆盖、删除或淘汰的记录占用的字节数
+     */
+    private long garbageBytes;
+    private boolean opened = false;
+    private boolean closed = false;
+
+    /**
+     * 索引，按访问顺序排列，最久未使用的在最前
+     */
+    private final LinkedHashMap<Key, Entry> index;
+    private final MessageDigest digest;
+    private final CRC32 crc32 = new CRC32();
+    /**
+     * 读写记录时复用的缓冲区
+     */
+    private final byte[] recordBuffer = new byte[RECORD_HEADER_SIZE + MAX_FEATURE_SIZE + CRC_SIZE];
+
+    private long hitCount;
+    private long missCount;
+
+    private FeatureStore(Builder builder) {
+        file = builder.file;
+        maxEntries = builder.maxEntries;
+        evictable = builder.evictable;
+        maxFileSize = builder.maxFileSize;
+        featureVersion = builder.featureVersion;
+        if (file == null) {
+            throw new RuntimeException("file must be specified!");
+        }
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must > 0");
+        }
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        index = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > maxEntries) {
+                    garbageBytes += eldest.getValue().length;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 读取身份证对应的人脸特征，首次调用时打开文件并加载索引
+     *
+     * @param idNumber 身份证号
+     * @return 人脸特征，不存在或记录损坏时返回null
+     */
+    public synchronized FaceFeature get(String idNumber) {
+        if (idNumber == null || !ensureOpen()) {
+            return null;
+        }
+        Key key = new Key(hash(idNumber));
+        Entry entry = index.get(key);
+        if (entry == null) {
+            missCount++;
+            return null;
+        }
+        try {
+            int featureLength = readRecord(entry);
+            if (featureLength <= 0) {
+                Log.e(TAG, "get: corrupted record at " + entry.offset);
+                index.remove(key);
+                garbageBytes += entry.length;
+                missCount++;
+                return null;
+            }
+            hitCount++;
+            return new FaceFeature(Arrays.copyOfRange(recordBuffer, RECORD_HEADER_SIZE, RECORD_HEADER_SIZE + featureLength));
+        } catch (IOException e) {
+            Log.e(TAG, "get: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 保存身份证对应的人脸特征，已存在时覆盖
+     *
+     * @param idNumber    身份证号
+     * @param faceFeature 人脸特征
+     * @return 是否保存成功
+     */
+    public synchronized boolean put(String idNumber, FaceFeature faceFeature) {
+        if (idNumber == null || faceFeature == null || faceFeature.getFeatureData() == null) {
+            return false;
+        }
+        byte[] featureData = faceFeature.getFeatureData();
+        if (featureData.length == 0 || featureData.length > MAX_FEATURE_SIZE || !ensureOpen()) {
+            return false;
+        }
+        Key key = new Key(hash(idNumber));
+        if (!evictable && index.size() >= maxEntries && !index.containsKey(key)) {
+            Log.w(TAG, "put: store is full, " + index.size() + " features");
+            return false;
+        }
+        try {
+            long offset = append(key.hash, featureData);
+            Entry old = index.put(key, new Entry(offset, RECORD_HEADER_SIZE + featureData.length + CRC_SIZE));
+            if (old != null) {
+                garbageBytes += old.length;
+            }
+            compactIfNeeded();
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "put: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 批量保存人脸特征，所有记录一次写入并同步到磁盘，适用于批量录入。
+     * 返回后已写入的特征在进程或系统异常退出后仍然有效
+     *
+     * @param features 人脸特征，KEY为身份证号，已存在时覆盖
+     * @return 保存成功的特征数
+     */
+    public synchronized int putAll(Map<String, FaceFeature> features) {
+        if (features == null || features.isEmpty() || !ensureOpen()) {
+            return 0;
+        }
+        List<Key> keys = new ArrayList<>(features.size());
+        List<byte[]> featureDataList = new ArrayList<>(features.size());
+        int batchLength = 0;
+        for (Map.Entry<String, FaceFeature> entry : features.entrySet()) {
+            byte[] featureData = entry.getValue() == null ? null : entry.getValue().getFeatureData();
+            if (entry.getKey() == null || featureData == null || featureData.length == 0 || featureData.length > MAX_FEATURE_SIZE) {
+                continue;
+            }
+            keys.add(new Key(hash(entry.getKey())));
+            featureDataList.add(featureData);
+            batchLength += RECORD_HEADER_SIZE + featureData.length + CRC_SIZE;
+        }
+        if (keys.isEmpty()) {
+            return 0;
+        }
+        if (!evictable && index.size() + countNewKeys(keys) > maxEntries) {
+            Log.w(TAG, "putAll: store is full, " + index.size() + " features, " + keys.size() + " to put");
+            return 0;
+        }
+        ByteBuffer batch = ByteBuffer.allocate(batchLength);
+        int[] lengths = new int[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            lengths[i] = writeRecord(batch, keys.get(i).hash, featureDataList.get(i));
+        }
+        batch.flip();
+        try {
+            long offset = fileSize;
+            while (batch.hasRemaining()) {
+                channel.write(batch, offset + batch.position());
+            }
+            channel.force(false);
+            fileSize += batchLength;
+            for (int i = 0; i < keys.size(); i++) {
+                Entry old = index.put(keys.get(i), new Entry(offset, lengths[i]));
+                if (old != null) {
+                    garbageBytes += old.length;
+                }
+                offset += lengths[i];
+            }
+            compactIfNeeded();
+            return keys.size();
+        } catch (IOException e) {
+            Log.e(TAG, "putAll: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * 依次读取所有有效的特征，不改变淘汰顺序
+     *
+     * @param featureVisitor 回调，在持有特征库锁时调用，不应再访问特征库
+     * @return 读取的特征数
+     */
+    public synchronized int forEach(FeatureVisitor featureVisitor) {
+        if (featureVisitor == null || !ensureOpen()) {
+            return 0;
+        }
+        int count = 0;
+        for (Map.Entry<Key, Entry> entry : index.entrySet()) {
+            try {
+                int featureLength = readRecord(entry.getValue());
+                if (featureLength <= 0) {
+                    Log.e(TAG, "forEach: corrupted record at " + entry.getValue().offset);
+                    continue;
+                }
+                featureVisitor.visit(entry.getKey().toDisplayId(),
+                        new FaceFeature(Arrays.copyOfRange(recordBuffer, RECORD_HEADER_SIZE, RECORD_HEADER_SIZE + featureLength)));
+                count++;
+            } catch (IOException e) {
+                Log.e(TAG, "forEach: " + e.getMessage());
+                break;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 删除身份证对应的人脸特征
+     *
+     * @param idNumber 身份证号
+     */
+    public synchronized void remove(String idNumber) {
+        if (idNumber == null || !ensureOpen()) {
+            return;
+        }
+        Key key = new Key(hash(idNumber));
+        Entry old = index.remove(key);
+        if (old == null) {
+            return;
+        }
+        try {
+            //写入删除标记，重新打开时不再加载该特征
+            append(key.hash, null);
+            garbageBytes += old.length + RECORD_HEADER_SIZE + CRC_SIZE;
+            compactIfNeeded();
+        } catch (IOException e) {
+            Log.e(TAG, "remove: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 压缩文件，只保留有效的特征，按最近使用顺序写入，重新打开后淘汰顺序保持不变
+     *
+     * @return 是否压缩成功
+     */
+    public synchronized boolean compact() {
+        if (!ensureOpen()) {
+            return false;
+        }
+        try {
+            compact(maxFileSize);
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "compact: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * @return 有效的特征数
+     */
+    public synchronized int size() {
+        return ensureOpen() ? index.size() : 0;
+    }
+
+    /**
+     * @return 文件大小，单位字节
+     */
+    public synchronized long getFileSize() {
+        return fileSize;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * 关闭文件，之后的读写均失败
+     */
+    public synchronized void close() {
+        closed = true;
+        opened = false;
+        closeFile();
+        index.clear();
+    }
+
+    private boolean ensureOpen() {
+        if (opened) {
+            return true;
+        }
+        if (closed) {
+            return false;
+        }
+        try {
+            open();
+            opened = true;
+        } catch (IOException e) {
+            Log.e(TAG, "open: " + e.getMessage());
+            closeFile();
+        }
+        return opened;
+    }
+
+    private void open() throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("can not create " + parent);
+        }
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        channel = randomAccessFile.getChannel();
+        fileSize = channel.size();
+        if (!readHeader()) {
+            Log.i(TAG, "open: create new store " + file);
+            reset();
+            return;
+        }
+        long position = loadRecords();
+        if (position < fileSize) {
+            //文件尾部的记录不完整或校验失败，一般是写入时断电，截掉之后的数据
+            Log.e(TAG, "open: drop " + (fileSize - position) + " bytes after " + position);
+            channel.truncate(position);
+            fileSize = position;
+            mappedBuffer = null;
+        }
+        compactIfNeeded();
+    }
+
+    private boolean readHeader() throws IOException {
+        if (fileSize < HEADER_SIZE) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        header.flip();
+        return header.getInt() == MAGIC && header.getInt() == FORMAT_VERSION && header.getInt() == featureVersion;
+    }
+
+    /**
+     * 清空文件并写入文件头
+     */
+    private void reset() throws IOException {
+        channel.truncate(0);
+        channel.write(createHeader(), 0);
+        fileSize = HEADER_SIZE;
+        garbageBytes = 0;
+        mappedBuffer = null;
+        index.clear();
+    }
+
+    private ByteBuffer createHeader() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(featureVersion).putInt(0);
+        header.flip();
+        return header;
+    }
+
+    /**
+     * 从文件头之后依次加载记录，遇到不完整或校验失败的记录时停止
+     *
+     * @return 最后一条有效记录的结束位置
+     */
+    private long loadRecords() throws IOException {
+        long position = HEADER_SIZE;
+        while (position + RECORD_HEADER_SIZE + CRC_SIZE <= fileSize) {
+            Entry entry = new Entry(position, 0);
+            int featureLength = readRecordLength(position);
+            if (featureLength < 0 || position + RECORD_HEADER_SIZE + featureLength + CRC_SIZE > fileSize) {
+                break;
+            }
+            entry.length = RECORD_HEADER_SIZE + featureLength + CRC_SIZE;
+            if (readRecord(entry) < 0) {
+                break;
+            }
+            Key key = new Key(Arrays.copyOf(recordBuffer, KEY_SIZE));
+            Entry old = featureLength == 0 ? index.remove(key) : index.put(key, entry);
+            if (old != null) {
+                garbageBytes += old.length;
+            }
+            if (featureLength == 0) {
+                garbageBytes += entry.length;
+            }
+            position += entry.length;
+        }
+        return position;
+    }
+
+    /**
+     * @return 记录中的特征长度，不合法时返回-1
+     */
+    private int readRecordLength(long position) throws IOException {
+        MappedByteBuffer buffer = map(position + RECORD_HEADER_SIZE);
+        int featureLength = buffer.getInt((int) position + KEY_SIZE + 8);
+        return featureLength < 0 || featureLength > MAX_FEATURE_SIZE ? -1 : featureLength;
+    }
+
+    /**
+     * 将记录读入{@link #recordBuffer}并校验
+     *
+     * @return 特征长度，校验失败返回-1
+     */
+    private int readRecord(Entry entry) throws IOException {
+        MappedByteBuffer buffer = map(entry.offset + entry.length).duplicate();
+        buffer.position((int) entry.offset);
+        buffer.get(recordBuffer, 0, entry.length);
+        int dataLength = entry.length - CRC_SIZE;
+        crc32.reset();
+        crc32.update(recordBuffer, 0, dataLength);
+        if ((int) crc32.getValue() != getInt(recordBuffer, dataLength)) {
+            return -1;
+        }
+        return dataLength - RECORD_HEADER_SIZE;
+    }
+
+    /**
+     * 在文件末尾追加一条记录
+     *
+     * @param keyHash     KEY
+     * @param featureData 特征数据，为null时写入删除标记
+     * @return 记录的位置
+     */
+    private long append(byte[] keyHash, byte[] featureData) throws IOException {
+        ByteBuffer record = ByteBuffer.wrap(recordBuffer);
+        int recordLength = writeRecord(record, keyHash, featureData);
+        record.flip();
+        long offset = fileSize;
+        while (record.hasRemaining()) {
+            channel.write(record, offset + record.position());
+        }
+        fileSize += recordLength;
+        return offset;
+    }
+
+    /**
+     * 将一条记录写入buffer的当前位置
+     *
+     * @param buffer      基于数组的缓冲区，剩余空间需足够容纳记录
+     * @param keyHash     KEY
+     * @param featureData 特征数据，为null时写入删除标记
+     * @return 记录长度
+     */
+    private int writeRecord(ByteBuffer buffer, byte[] keyHash, byte[] featureData) {
+        int start = buffer.position();
+        int featureLength = featureData == null ? 0 : featureData.length;
+        buffer.put(keyHash).putLong(System.currentTimeMillis()).putInt(featureLength);
+        if (featureData != null) {
+            buffer.put(featureData);
+        }
+        crc32.reset();
+        crc32.update(buffer.array(), buffer.arrayOffset() + start, buffer.position() - start);
+        buffer.putInt((int) crc32.getValue());
+        return buffer.position() - start;
+    }
+
+    private void compactIfNeeded() throws IOException {
+        if (!evictable) {
+            //不淘汰时只清除无效记录
+            if (garbageBytes >= MIN_COMPACT_GARBAGE && (fileSize > maxFileSize || garbageBytes > fileSize - HEADER_SIZE - garbageBytes)) {
+                compact(Long.MAX_VALUE);
+            }
+        } else if (fileSize > maxFileSize) {
+            //超过大小上限时额外淘汰最久未使用的特征，避免每次写入都触发压缩
+            compact(maxFileSize * 3 / 4);
+        } else if (garbageBytes >= MIN_COMPACT_GARBAGE && garbageBytes > fileSize - HEADER_SIZE - garbageBytes) {
+            compact(maxFileSize);
+        }
+    }
+
+    /**
+     * 将有效记录写入临时文件后替换原文件
+     *
+     * @param targetSize 压缩后的文件大小上限，超过时淘汰最久未使用的特征
+     */
+    private void compact(long targetSize) throws IOException {
+        long liveBytes = HEADER_SIZE;
+        for (Entry entry : index.values()) {
+            liveBytes += entry.length;
+        }
+        Iterator<Entry> evictIterator = index.values().iterator();
+        while (liveBytes > targetSize && evictIterator.hasNext()) {
+            liveBytes -= evictIterator.next().length;
+            evictIterator.remove();
+        }
+
+        File tempFile = new File(file.getPath() + ".tmp");
+        Entry[] entries = index.values().toArray(new Entry[0]);
+        long[] offsets = new long[entries.length];
+        RandomAccessFile tempRandomAccessFile = new RandomAccessFile(tempFile, "rw");
+        try {
+            FileChannel tempChannel = tempRandomAccessFile.getChannel();
+            tempChannel.truncate(0);
+            tempChannel.write(createHeader(), 0);
+            long position = HEADER_SIZE;
+            for (int i = 0; i < entries.length; i++) {
+                if (readRecord(entries[i]) < 0) {
+                    //损坏的记录不再保留
+                    offsets[i] = -1;
+                    continue;
+                }
+                ByteBuffer record = ByteBuffer.wrap(recordBuffer, 0, entries[i].length);
+                while (record.hasRemaining()) {
+                    tempChannel.write(record, position + record.position());
+                }
+                offsets[i] = position;
+                position += entries[i].length;
+            }
+            tempChannel.force(true);
+        } finally {
+            tempRandomAccessFile.close();
+        }
+        closeFile();
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            randomAccessFile = new RandomAccessFile(file, "rw");
+            channel = randomAccessFile.getChannel();
+            throw new IOException("can not rename " + tempFile);
+        }
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        channel = randomAccessFile.getChannel();
+        fileSize = channel.size();
+        garbageBytes = 0;
+        for (int i = 0; i < entries.length; i++) {
+            entries[i].offset = offsets[i];
+        }
+        Iterator<Entry> iterator = index.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().offset < 0) {
+                iterator.remove();
+            }
+        }
+        Log.i(TAG, "compact: " + index.size() + " features, " + fileSize + " bytes");
+    }
+
+    /**
+     * 获取至少覆盖到end的只读映射
+     */
+    private MappedByteBuffer map(long end) throws IOException {
+        if (mappedBuffer == null || mappedBuffer.capacity() < end) {
+            mappedBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+        }
+        return mappedBuffer;
+    }
+
+    private void closeFile() {
+        mappedBuffer = null;
+        channel = null;
+        if (randomAccessFile != null) {
+            try {
+                randomAccessFile.close();
+            } catch (IOException e) {
+                Log.e(TAG, "close: " + e.getMessage());
+            }
+            randomAccessFile = null;
+        }
+    }
+
+    /**
+     * 身份证号去除首尾空白并统一大小写后计算SHA-256
+     */
+    private byte[] hash(String idNumber) {
+        digest.reset();
+        return digest.digest(idNumber.trim().toUpperCase(Locale.US).getBytes(UTF_8));
+    }
+
+    /**
+     * @return 本批中特征库尚未保存的KEY数
+     */
+    private int countNewKeys(List<Key> keys) {
+        Set<Key> newKeys = new HashSet<>();
+        for (Key key : keys) {
+            if (!index.containsKey(key)) {
+                newKeys.add(key);
+            }
+        }
+        return newKeys.size();
+    }
+
+    private static int getInt(byte[] data, int offset) {
+        return (data[offset] & 0xFF) << 24 | (data[offset + 1] & 0xFF) << 16
+                | (data[offset + 2] & 0xFF) << 8 | (data[offset + 3] & 0xFF);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "FeatureStore{" +
+                "size=" + index.size() +
+                ", fileSize=" + fileSize +
+                ", garbageBytes=" + garbageBytes +
+                ", hitCount=" + hitCount +
+                ", missCount=" + missCount +
+                '}';
+    }
+
+    private static final class Key {
+        private final byte[] hash;
+        private final int hashCode;
+
+        private Key(byte[] hash) {
+            this.hash = hash;
+            //SHA-256本身分布均匀，直接取前4字节
+            hashCode = getInt(hash, 0);
+        }
+
+        /**
+         * @return KEY前8字节的十六进制，用于显示及日志，不含身份证号明文
+         */
+        private String toDisplayId() {
+            StringBuilder builder = new StringBuilder(16);
+            for (int i = 0; i < 8; i++) {
+                builder.append(String.format(Locale.US, "%02x", hash[i]));
+            }
+            return builder.toString();
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key && Arrays.equals(hash, ((Key) obj).hash);
+        }
+    }
+
+    private static final class Entry {
+        /**
+         * 记录在文件中的位置
+         */
+        private long offset;
+        /**
+         * 记录总长度，含记录头及CRC
+         */
+        private int length;
+
+        private Entry(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    public static final class Builder {
+        private File file;
+        private int maxEntries = 1000;
+        private boolean evictable = true;
+        private long maxFileSize = 4 * 1024 * 1024;
+        private int featureVersion;
+
+        public Builder() {
+        }
+
+        public Builder file(File val) {
+            file = val;
+            return this;
+        }
+
+        /**
+         * 最多保存的特征数，超过时淘汰最久未使用的特征
+         *
+         * @param val 特征数
+         * @return Builder
+         */
+        public Builder maxEntries(int val) {
+            maxEntries = val;
+            return this;
+        }
+
+        /**
+         * 超过数量上限时是否淘汰最久未使用的特征，默认淘汰；不淘汰时拒绝写入新特征，文件超过大小上限时只清除无效记录，
+         * 适用于批量录入等不能丢失特征的场景
+         *
+         * @param val 是否淘汰
+         * @return Builder
+         */
+        public Builder evictable(boolean val) {
+            evictable = val;
+            return this;
+        }
+
+        /**
+         * 文件大小上限，超过时压缩文件
+         *
+         * @param val 文件大小，单位字节
+         * @return Builder
+         */
+        public Builder maxFileSize(long val) {
+            maxFileSize = val;
+            return this;
+        }
+
+        /**
+         * 特征版本，更换引擎等导致特征不兼容时修改，打开版本不一致的文件时已保存的特征作废
+         *
+         * @param val 特征版本
+         * @return Builder
+         */
+        public Builder featureVersion(int val) {
+            featureVersion = val;
+            return this;
+        }
+
+        public FeatureStore build() {
+            return new FeatureStore(this);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.arcsoft.idcardveridemo.idcard;
+
+import com.arcsoft.face.FaceFeature;
+
+/**
+ * 遍历特征库的回调
+ */
+public interface FeatureVisitor {
+    /**
+     * @param displayId   由KEY生成的显示id，不含身份证号明文
+     * @param faceFeature 人脸特征
+     */
+    void visit(String displayId, FaceFeature faceFeature);
+}
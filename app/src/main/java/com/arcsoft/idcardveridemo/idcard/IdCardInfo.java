@@ -0,0 +1,39 @@
+package com.arcsoft.idcardveridemo.idcard;
+
+import android.graphics.Bitmap;
+
+/**
+ * 身份证信息
+ */
+public class IdCardInfo {
+    /**
+     * 姓名
+     */
+    private String name;
+    /**
+     * 身份证号
+     */
+    private String idNumber;
+    /**
+     * 身份证照片
+     */
+    private Bitmap photo;
+
+    public IdCardInfo(String name, String idNumber, Bitmap photo) {
+        this.name = name;
+        this.idNumber = idNumber;
+        this.photo = photo;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getIdNumber() {
+        return idNumber;
+    }
+
+    public Bitmap getPhoto() {
+        return photo;
+    }
+}
@@ -0,0 +1,303 @@
+package com.arcsoft.idcardveridemo.idcard;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import com.arcsoft.face.ErrorInfo;
+import com.arcsoft.face.FaceEngine;
+import com.arcsoft.face.FaceInfo;
+import com.arcsoft.idcardveridemo.camera.Frame;
+import com.arcsoft.idcardveridemo.metrics.PipelineMetrics;
+import com.arcsoft.imageutil.ArcSoftImageFormat;
+import com.arcsoft.imageutil.ArcSoftImageUtil;
+import com.arcsoft.imageutil.ArcSoftImageUtilError;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 身份证照片处理辅助类，在后台线程中完成照片对齐、BGR转换及人脸检测，避免占用主线程。
+ * BGR缓冲区按大小复用，包装为{@link Frame}交给使用者，帧的所有持有者释放后缓冲区归还到池中，
+ * 照片Bitmap处理完毕后归还到{@link BitmapPool}供下次解码复用
+ */
+public class IdCardIngestHelper implements Frame.Recycler {
+    private static final String TAG = "IdCardIngestHelper";
+    /**
+     * 照片解码失败
+     */
+    public static final int ERROR_DECODE = -1;
+    /**
+     * 照片转换失败
+     */
+    public static final int ERROR_TRANSLATE = -2;
+    /**
+     * 未检测到人脸
+     */
+    public static final int ERROR_NO_FACE = -3;
+    /**
+     * 同一大小最多缓存的BGR缓冲区数量
+     */
+    private static final int MAX_BUFFERS_PER_SIZE = 2;
+    /**
+     * 最多缓存的BGR缓冲区大小种类
+     */
+    private static final int MAX_BUFFER_SIZES = 4;
+
+    /**
+     * 身份证照片人脸检测引擎，需为IMAGE模式
+     */
+    private FaceEngine idFaceEngine;
+    private IdCardIngestListener idCardIngestListener;
+    private BitmapPool bitmapPool;
+    /**
+     * 缩略图最长边，单位像素
+     */
+    private int thumbnailSize;
+    /**
+     * 耗时统计，可为空
+     */
+    private PipelineMetrics pipelineMetrics;
+
+    private final ExecutorService ingestExecutor;
+    /**
+     * BGR缓冲区池，KEY为缓冲区长度，即对齐后的 width * height * 3
+     */
+    private final LinkedHashMap<Integer, ArrayDeque<byte[]>> imageDataPool = new LinkedHashMap<Integer, ArrayDeque<byte[]>>(MAX_BUFFER_SIZES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, ArrayDeque<byte[]>> eldest) {
+            return size() > MAX_BUFFER_SIZES;
+        }
+    };
+    private final List<FaceInfo> faceInfoList = new ArrayList<>();
+
+    private IdCardIngestHelper(Builder builder) {
+        idFaceEngine = builder.idFaceEngine;
+        idCardIngestListener = builder.idCardIngestListener;
+        bitmapPool = builder.bitmapPool;
+        thumbnailSize = builder.thumbnailSize;
+        pipelineMetrics = builder.pipelineMetrics;
+        if (idFaceEngine == null) {
+            throw new RuntimeException("idFaceEngine must be specified!");
+        }
+        ingestExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, TAG));
+    }
+
+    /**
+     * 在后台处理身份证照片
+     *
+     * @param photo 身份证照片，处理完成后归还到BitmapPool，调用方不可再使用
+     */
+    public void ingest(Bitmap photo) {
+        ingestExecutor.execute(() -> process(photo));
+    }
+
+    /**
+     * 在后台解码并处理身份证照片文件
+     *
+     * @param path 照片路径
+     */
+    public void ingest(String path) {
+        ingestExecutor.execute(() -> {
+            Bitmap photo = bitmapPool != null ? bitmapPool.decodeFile(path) : BitmapFactory.decodeFile(path);
+            if (photo == null) {
+                notifyFailed(ERROR_DECODE);
+                return;
+            }
+            process(photo);
+        });
+    }
+
+    private void process(Bitmap photo) {
+        long convertStartTime = System.nanoTime();
+        //图像4字节对齐 裁剪，已对齐时直接使用原图
+        Bitmap alignedBitmap = photo.getWidth() % 4 == 0 ? photo : ArcSoftImageUtil.getAlignedBitmap(photo, true);
+        if (alignedBitmap != photo) {
+            recycleBitmap(photo);
+        }
+        int width = alignedBitmap.getWidth();
+        int height = alignedBitmap.getHeight();
+        //转换为bgr格式
+        byte[] bgrData = acquireImageData(width * height * 3);
+        int translateResult = ArcSoftImageUtil.bitmapToImageData(alignedBitmap, bgrData, ArcSoftImageFormat.BGR24);
+        if (translateResult != ArcSoftImageUtilError.CODE_SUCCESS) {
+            Log.e(TAG, "translate Error result: " + translateResult);
+            releaseImageData(bgrData);
+            recycleBitmap(alignedBitmap);
+            notifyFailed(ERROR_TRANSLATE);
+            return;
+        }
+        if (pipelineMetrics != null) {
+            pipelineMetrics.recordSince(PipelineMetrics.Stage.CARD_CONVERT, convertStartTime);
+        }
+        Bitmap thumbnail = createThumbnail(alignedBitmap);
+        recycleBitmap(alignedBitmap);
+
+        faceInfoList.clear();
+        //video模式不适合静态图片检测，这里使用IMAGE模式的idFaceEngine
+        long detectStartTime = System.nanoTime();
+        int detectResult = idFaceEngine.detectFaces(bgrData, width, height, FaceEngine.CP_PAF_BGR24, faceInfoList);
+        if (pipelineMetrics != null) {
+            pipelineMetrics.recordSince(PipelineMetrics.Stage.CARD_DETECT, detectStartTime);
+        }
+        if (detectResult != ErrorInfo.MOK || faceInfoList.size() == 0) {
+            releaseImageData(bgrData);
+            notifyFailed(detectResult != ErrorInfo.MOK ? detectResult : ERROR_NO_FACE);
+            return;
+        }
+        Frame frame = new Frame(bgrData, width, height, FaceEngine.CP_PAF_BGR24, this).open(convertStartTime);
+        try {
+            IdCardIngestListener listener = idCardIngestListener;
+            if (listener != null) {
+                listener.onIdCardFaceDetected(frame, faceInfoList.get(0), thumbnail);
+            }
+        } finally {
+            frame.release();
+        }
+    }
+
+    private Bitmap createThumbnail(Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        float scale = Math.min(1f, (float) thumbnailSize / Math.max(width, height));
+        Bitmap thumbnail = Bitmap.createScaledBitmap(bitmap, Math.max(1, (int) (width * scale)), Math.max(1, (int) (height * scale)), true);
+        //未缩放时createScaledBitmap返回原图，原图会被复用，需拷贝一份
+        if (thumbnail == bitmap) {
+            thumbnail = bitmap.copy(bitmap.getConfig(), false);
+        }
+        return thumbnail;
+    }
+
+    private void recycleBitmap(Bitmap bitmap) {
+        if (bitmapPool != null) {
+            bitmapPool.put(bitmap);
+        }
+    }
+
+    /**
+     * 取出一个指定长度的BGR缓冲区
+     */
+    private byte[] acquireImageData(int length) {
+        synchronized (imageDataPool) {
+            ArrayDeque<byte[]> buffers = imageDataPool.get(length);
+            if (buffers != null && !buffers.isEmpty()) {
+                return buffers.pollFirst();
+            }
+        }
+        return new byte[length];
+    }
+
+    /**
+     * 帧的所有持有者释放后归还BGR缓冲区
+     *
+     * @param frame 引用计数已归零的帧
+     */
+    @Override
+    public void recycle(Frame frame) {
+        releaseImageData(frame.getData());
+    }
+
+    /**
+     * 归还BGR缓冲区
+     *
+     * @param bgrData BGR缓冲区
+     */
+    private void releaseImageData(byte[] bgrData) {
+        if (bgrData == null) {
+            return;
+        }
+        synchronized (imageDataPool) {
+            ArrayDeque<byte[]> buffers = imageDataPool.get(bgrData.length);
+            if (buffers == null) {
+                buffers = new ArrayDeque<>(MAX_BUFFERS_PER_SIZE);
+                imageDataPool.put(bgrData.length, buffers);
+            }
+            if (buffers.size() < MAX_BUFFERS_PER_SIZE && !containsBuffer(buffers, bgrData)) {
+                buffers.offerLast(bgrData);
+            }
+        }
+    }
+
+    private static boolean containsBuffer(ArrayDeque<byte[]> buffers, byte[] data) {
+        Iterator<byte[]> iterator = buffers.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() == data) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void notifyFailed(int errorCode) {
+        IdCardIngestListener listener = idCardIngestListener;
+        if (listener != null) {
+            listener.onIdCardIngestFailed(errorCode);
+        }
+    }
+
+    /**
+     * 停止处理线程并释放缓存
+     */
+    public void release() {
+        ingestExecutor.shutdownNow();
+        synchronized (imageDataPool) {
+            imageDataPool.clear();
+        }
+        if (bitmapPool != null) {
+            bitmapPool.clear();
+        }
+        idCardIngestListener = null;
+    }
+
+    public static final class Builder {
+        private FaceEngine idFaceEngine;
+        private IdCardIngestListener idCardIngestListener;
+        private BitmapPool bitmapPool;
+        private int thumbnailSize = 320;
+        private PipelineMetrics pipelineMetrics;
+
+        public Builder() {
+        }
+
+        public Builder idFaceEngine(FaceEngine val) {
+            idFaceEngine = val;
+            return this;
+        }
+
+        public Builder idCardIngestListener(IdCardIngestListener val) {
+            idCardIngestListener = val;
+            return this;
+        }
+
+        public Builder bitmapPool(BitmapPool val) {
+            bitmapPool = val;
+            return this;
+        }
+
+        public Builder thumbnailSize(int val) {
+            thumbnailSize = val;
+            return this;
+        }
+
+        /**
+         * 设置耗时统计，为空时不统计
+         *
+         * @param val 耗时统计
+         * @return Builder
+         */
+        public Builder pipelineMetrics(PipelineMetrics val) {
+            pipelineMetrics = val;
+            return this;
+        }
+
+        public IdCardIngestHelper build() {
+            return new IdCardIngestHelper(this);
+        }
+    }
+}
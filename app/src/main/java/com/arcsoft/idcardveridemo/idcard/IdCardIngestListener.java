@@ -0,0 +1,28 @@
+package com.arcsoft.idcardveridemo.idcard;
+
+import android.graphics.Bitmap;
+
+import com.arcsoft.face.FaceInfo;
+import com.arcsoft.idcardveridemo.camera.Frame;
+
+/**
+ * 身份证照片处理回调，在处理线程中执行
+ */
+public interface IdCardIngestListener {
+    /**
+     * 身份证照片处理完成并检测到人脸
+     *
+     * @param frame     BGR24格式图像帧，仅在回调期间有效，若需在回调之外使用需调用{@link Frame#acquire()}，
+     *                  所有持有者释放后缓冲区归还给{@link IdCardIngestHelper}复用
+     * @param faceInfo  人脸信息
+     * @param thumbnail 用于界面显示的缩略图
+     */
+    void onIdCardFaceDetected(Frame frame, FaceInfo faceInfo, Bitmap thumbnail);
+
+    /**
+     * 身份证照片处理失败
+     *
+     * @param errorCode 错误码
+     */
+    void onIdCardIngestFailed(int errorCode);
+}
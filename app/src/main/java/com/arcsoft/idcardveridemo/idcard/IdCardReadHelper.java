@@ -0,0 +1,265 @@
+package com.arcsoft.idcardveridemo.idcard;
+
+import android.util.Log;
+
+import com.arcsoft.idcardveridemo.metrics.PipelineMetrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 读卡辅助类，支持阻塞读卡及回调两种方式。
+ * 没有卡片时按退避间隔轮询读卡器，暂停期间读卡线程挂起，不占用CPU
+ */
+public class IdCardReadHelper {
+    private static final String TAG = "IdCardReadHelper";
+
+    private IdCardReader idCardReader;
+    private IdCardReadListener idCardReadListener;
+    /**
+     * 耗时统计，可为空
+     */
+    private PipelineMetrics pipelineMetrics;
+    /**
+     * 最小轮询间隔，单位毫秒，读卡成功或恢复读卡后从该值开始
+     */
+    private long minPollInterval;
+    /**
+     * 最大轮询间隔，单位毫秒，连续读卡失败时间隔逐步翻倍直到该值
+     */
+    private long maxPollInterval;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition resumeCondition = lock.newCondition();
+    /**
+     * 是否暂停读卡
+     */
+    private boolean paused = false;
+    private Thread readThread;
+
+    private IdCardReadHelper(Builder builder) {
+        idCardReader = builder.idCardReader;
+        idCardReadListener = builder.idCardReadListener;
+        pipelineMetrics = builder.pipelineMetrics;
+        minPollInterval = builder.minPollInterval;
+        maxPollInterval = Math.max(builder.minPollInterval, builder.maxPollInterval);
+        if (idCardReader == null) {
+            throw new RuntimeException("idCardReader must be specified!");
+        }
+    }
+
+    /**
+     * 初始化读卡器
+     *
+     * @return 初始化结果，{@link IdCardReader#CODE_SUCCESS}表示成功
+     */
+    public int init() {
+        return idCardReader.init();
+    }
+
+    /**
+     * 阻塞读卡，直到读卡成功、超时或线程被中断
+     *
+     * @param timeout 超时时间，单位毫秒，小于等于0表示不超时
+     * @return 身份证信息，超时返回null
+     * @throws InterruptedException 读卡线程被中断
+     */
+    public IdCardInfo read(long timeout) throws InterruptedException {
+        long deadline = timeout > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout) : Long.MAX_VALUE;
+        long interval = minPollInterval;
+        while (true) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            IdCardInfo idCardInfo = idCardReader.read();
+            if (idCardInfo != null) {
+                return idCardInfo;
+            }
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                return null;
+            }
+            Thread.sleep(Math.min(interval, remaining));
+            interval = Math.min(maxPollInterval, interval * 2);
+        }
+    }
+
+    /**
+     * 启动读卡线程，读卡成功后通过{@link IdCardReadListener}回调并暂停读卡
+     */
+    public void start() {
+        lock.lock();
+        try {
+            if (readThread != null) {
+                return;
+            }
+            paused = false;
+            readThread = new ReadThread();
+            readThread.start();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 暂停读卡
+     */
+    public void pause() {
+        lock.lock();
+        try {
+            paused = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 恢复读卡
+     */
+    public void resume() {
+        lock.lock();
+        try {
+            paused = false;
+            resumeCondition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isPaused() {
+        lock.lock();
+        try {
+            return paused;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 停止读卡线程并关闭读卡器
+     */
+    public void release() {
+        Thread thread;
+        lock.lock();
+        try {
+            thread = readThread;
+            readThread = null;
+        } finally {
+            lock.unlock();
+        }
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        idCardReader.release();
+        idCardReadListener = null;
+    }
+
+    /**
+     * 等待恢复读卡
+     */
+    private void awaitResumed() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (paused) {
+                resumeCondition.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 读卡线程
+     */
+    private class ReadThread extends Thread {
+
+        private ReadThread() {
+            super(TAG);
+        }
+
+        @Override
+        public void run() {
+            long interval = minPollInterval;
+            try {
+                while (!isInterrupted()) {
+                    awaitResumed();
+                    long readStartTime = System.nanoTime();
+                    IdCardInfo idCardInfo = idCardReader.read();
+                    if (idCardInfo == null) {
+                        //没有卡片时逐步拉长轮询间隔
+                        Thread.sleep(interval);
+                        interval = Math.min(maxPollInterval, interval * 2);
+                        continue;
+                    }
+                    interval = minPollInterval;
+                    if (pipelineMetrics != null) {
+                        pipelineMetrics.recordSince(PipelineMetrics.Stage.CARD_READ, readStartTime);
+                    }
+                    //读卡成功后暂停，等待本次比对结束后再恢复
+                    pause();
+                    IdCardReadListener listener = idCardReadListener;
+                    if (listener != null) {
+                        listener.onIdCardRead(idCardInfo);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Log.i(TAG, "read thread interrupted");
+            }
+        }
+    }
+
+    public static final class Builder {
+        private IdCardReader idCardReader;
+        private IdCardReadListener idCardReadListener;
+        private long minPollInterval = 50;
+        private long maxPollInterval = 400;
+        private PipelineMetrics pipelineMetrics;
+
+        public Builder() {
+        }
+
+        public Builder idCardReader(IdCardReader val) {
+            idCardReader = val;
+            return this;
+        }
+
+        public Builder idCardReadListener(IdCardReadListener val) {
+            idCardReadListener = val;
+            return this;
+        }
+
+        public Builder minPollInterval(long val) {
+            minPollInterval = val;
+            return this;
+        }
+
+        public Builder maxPollInterval(long val) {
+            maxPollInterval = val;
+            return this;
+        }
+
+        /**
+         * 设置耗时统计，为空时不统计
+         *
+         * @param val 耗时统计
+         * @return Builder
+         */
+        public Builder pipelineMetrics(PipelineMetrics val) {
+            pipelineMetrics = val;
+            return this;
+        }
+
+        public IdCardReadHelper build() {
+            if (minPollInterval <= 0) {
+                throw new IllegalArgumentException("minPollInterval must > 0");
+            }
+            return new IdCardReadHelper(this);
+        }
+    }
+}
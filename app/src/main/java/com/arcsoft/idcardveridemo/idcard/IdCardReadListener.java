@@ -0,0 +1,13 @@
+package com.arcsoft.idcardveridemo.idcard;
+
+/**
+ * 读卡回调，在读卡线程中执行
+ */
+public interface IdCardReadListener {
+    /**
+     * 读卡成功后回调，回调后读卡暂停，需调用{@link IdCardReadHelper#resume()}继续读卡
+     *
+     * @param idCardInfo 身份证信息
+     */
+    void onIdCardRead(IdCardInfo idCardInfo);
+}
@@ -0,0 +1,30 @@
+package com.arcsoft.idcardveridemo.idcard;
+
+/**
+ * 身份证读卡器接口，不同厂商的读卡器实现该接口后即可接入{@link IdCardReadHelper}
+ */
+public interface IdCardReader {
+    /**
+     * 读卡成功
+     */
+    int CODE_SUCCESS = 0;
+
+    /**
+     * 初始化读卡器
+     *
+     * @return 初始化结果，{@link #CODE_SUCCESS}表示成功
+     */
+    int init();
+
+    /**
+     * 尝试读卡一次，包括认证、读卡及照片解码，不应长时间阻塞
+     *
+     * @return 身份证信息，没有卡片或读卡失败时返回null
+     */
+    IdCardInfo read();
+
+    /**
+     * 关闭读卡器
+     */
+    void release();
+}
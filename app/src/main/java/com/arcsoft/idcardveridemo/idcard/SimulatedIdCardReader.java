@@ -0,0 +1,116 @@
+package com.arcsoft.idcardveridemo.idcard;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 模拟读卡器，以文件或目录中的图片模拟身份证，无需读卡器硬件即可调试读卡流程。
+ * 每张新增或被修改的图片模拟一次刷卡，文件名格式为"姓名_身份证号.jpg"，没有下划线时整个文件名作为姓名
+ */
+public class SimulatedIdCardReader implements IdCardReader {
+    private static final String TAG = "SimulatedIdCardReader";
+    private static final int CODE_NOT_FOUND = -1;
+
+    private final File source;
+    /**
+     * 已读取过的图片，KEY为路径，VALUE为读取时的修改时间
+     */
+    private final Map<String, Long> consumedFiles = new HashMap<>();
+    /**
+     * 解码照片使用的Bitmap复用池，可为空
+     */
+    private final BitmapPool bitmapPool;
+
+    /**
+     * @param source 图片文件或存放图片的目录
+     */
+    public SimulatedIdCardReader(File source) {
+        this(source, null);
+    }
+
+    /**
+     * @param source     图片文件或存放图片的目录
+     * @param bitmapPool 解码照片使用的Bitmap复用池
+     */
+    public SimulatedIdCardReader(File source, BitmapPool bitmapPool) {
+        this.source = source;
+        this.bitmapPool = bitmapPool;
+    }
+
+    @Override
+    public int init() {
+        return source.exists() ? CODE_SUCCESS : CODE_NOT_FOUND;
+    }
+
+    @Override
+    public IdCardInfo read() {
+        File file = nextFile();
+        if (file == null) {
+            return null;
+        }
+        consumedFiles.put(file.getAbsolutePath(), file.lastModified());
+        Bitmap photo = bitmapPool != null ? bitmapPool.decodeFile(file.getAbsolutePath()) : BitmapFactory.decodeFile(file.getAbsolutePath());
+        if (photo == null) {
+            Log.e(TAG, "decode failed: " + file);
+            return null;
+        }
+        String[] nameAndIdNumber = parseFileName(file.getName());
+        return new IdCardInfo(nameAndIdNumber[0], nameAndIdNumber[1], photo);
+    }
+
+    /**
+     * 解析"姓名_身份证号.jpg"格式的文件名，没有下划线时整个文件名同时作为姓名及身份证号
+     *
+     * @param fileName 文件名
+     * @return 姓名及身份证号
+     */
+    static String[] parseFileName(String fileName) {
+        int dotIndex = fileName.lastIndexOf('.');
+        String baseName = dotIndex > 0 ? fileName.substring(0, dotIndex) : fileName;
+        int separatorIndex = baseName.indexOf('_');
+        if (separatorIndex > 0) {
+            return new String[]{baseName.substring(0, separatorIndex), baseName.substring(separatorIndex + 1)};
+        }
+        return new String[]{baseName, baseName};
+    }
+
+    @Override
+    public void release() {
+        consumedFiles.clear();
+    }
+
+    /**
+     * @return 修改时间最早的未读取图片，没有时返回null
+     */
+    private File nextFile() {
+        File[] files = source.isDirectory() ? source.listFiles() : new File[]{source};
+        if (files == null) {
+            return null;
+        }
+        File next = null;
+        for (File file : files) {
+            if (!file.isFile() || !isImage(file.getName())) {
+                continue;
+            }
+            Long consumedTime = consumedFiles.get(file.getAbsolutePath());
+            if (consumedTime != null && consumedTime == file.lastModified()) {
+                continue;
+            }
+            if (next == null || file.lastModified() < next.lastModified()) {
+                next = file;
+            }
+        }
+        return next;
+    }
+
+    static boolean isImage(String fileName) {
+        String lowerCase = fileName.toLowerCase(Locale.ROOT);
+        return lowerCase.endsWith(".jpg") || lowerCase.endsWith(".jpeg") || lowerCase.endsWith(".png") || lowerCase.endsWith(".bmp");
+    }
+}
@@ -0,0 +1,183 @@
+package com.arcsoft.idcardveridemo.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 固定内存的耗时直方图，桶按对数-线性划分（与HdrHistogram相同的思路）：
+ * 小于{@link #SUB_BUCKET_COUNT}微秒的值每微秒一个桶，更大的值在每个2的幂区间内再均分为{@link #SUB_BUCKET_HALF}个桶，
+ * 相对误差不超过1/{@link #SUB_BUCKET_HALF}。记录只有一次原子自增，不分配对象，可在生产环境中常开
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >> 1;
+    /**
+     * 可记录的最大值对应的最高位，2^32微秒约为71分钟，超过的值计入最后一个桶
+     */
+    private static final int MAX_MAGNITUDE = 32;
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (MAX_MAGNITUDE - SUB_BUCKET_BITS) * SUB_BUCKET_HALF;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    /**
+     * 累计耗时，单位微秒
+     */
+    private final AtomicLong totalValue = new AtomicLong();
+    /**
+     * 最大耗时，单位微秒
+     */
+    private final AtomicLong maxValue = new AtomicLong();
+
+    /**
+     * 记录一次耗时
+     *
+     * @param nanos 耗时，单位纳秒
+     */
+    public void recordNanos(long nanos) {
+        record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    /**
+     * 记录一次耗时
+     *
+     * @param micros 耗时，单位微秒
+     */
+    public void record(long micros) {
+        if (micros < 0) {
+            return;
+        }
+        counts.incrementAndGet(bucketIndex(micros));
+        totalCount.incrementAndGet();
+        totalValue.addAndGet(micros);
+        long max;
+        do {
+            max = maxValue.get();
+        } while (micros > max && !maxValue.compareAndSet(max, micros));
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        if (magnitude >= MAX_MAGNITUDE) {
+            return BUCKET_COUNT - 1;
+        }
+        int shift = magnitude - SUB_BUCKET_BITS + 1;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKET_HALF;
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF + subBucket;
+    }
+
+    /**
+     * @return 桶内的最大值，单位微秒
+     */
+    static long highestValueInBucket(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int offset = index - SUB_BUCKET_COUNT;
+        int shift = offset / SUB_BUCKET_HALF + 1;
+        long subBucket = offset % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * 拷贝当前累计数据，拷贝期间的并发记录可能部分计入，不影响统计意义
+     */
+    public Snapshot snapshot() {
+        long[] bucketCounts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            bucketCounts[i] = counts.get(i);
+        }
+        return new Snapshot(bucketCounts, totalCount.get(), totalValue.get(), maxValue.get());
+    }
+
+    /**
+     * 直方图快照，耗时单位均为微秒
+     */
+    public static final class Snapshot {
+        private final long[] bucketCounts;
+        private final long count;
+        private final long total;
+        private final long max;
+
+        private Snapshot(long[] bucketCounts, long count, long total, long max) {
+            this.bucketCounts = bucketCounts;
+            this.count = count;
+            this.total = total;
+            this.max = max;
+        }
+
+        /**
+         * 计算两次累计快照之间的区间数据
+         *
+         * @param previous 较早的快照
+         * @return 区间快照，最大值为区间内有数据的最高桶上限
+         */
+        public Snapshot since(Snapshot previous) {
+            long[] delta = new long[bucketCounts.length];
+            long intervalMax = 0;
+            for (int i = 0; i < delta.length; i++) {
+                delta[i] = bucketCounts[i] - previous.bucketCounts[i];
+                if (delta[i] > 0) {
+                    intervalMax = Math.min(highestValueInBucket(i), max);
+                }
+            }
+            return new Snapshot(delta, count - previous.count, total - previous.total, intervalMax);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : (double) total / count;
+        }
+
+        /**
+         * @param percentile 百分位，范围(0,100]
+         * @return 该百分位的耗时上限，单位微秒
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (count <= 0) {
+                return 0;
+            }
+            long target = Math.max(1, (long) Math.ceil(percentile / 100d * count));
+            long accumulated = 0;
+            for (int i = 0; i < bucketCounts.length; i++) {
+                accumulated += bucketCounts[i];
+                if (accumulated >= target) {
+                    return Math.min(highestValueInBucket(i), max);
+                }
+            }
+            return max;
+        }
+
+        public long getP50() {
+            return getValueAtPercentile(50);
+        }
+
+        public long getP95() {
+            return getValueAtPercentile(95);
+        }
+
+        public long getP99() {
+            return getValueAtPercentile(99);
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count +
+                    ", p50=" + getP50() / 1000f + "ms" +
+                    ", p95=" + getP95() / 1000f + "ms" +
+                    ", p99=" + getP99() / 1000f + "ms" +
+                    ", max=" + max / 1000f + "ms";
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.arcsoft.idcardveridemo.metrics;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 人证核验流程各阶段耗时统计，每个阶段一个{@link LatencyHistogram}，
+ * 支持定期输出区间快照及将累计数据追加写入本地文件
+ */
+public class PipelineMetrics {
+    private static final String TAG = "PipelineMetrics";
+
+    public enum Stage {
+        /**
+         * 读卡器读取身份证
+         */
+        CARD_READ,
+        /**
+         * 身份证照片对齐及BGR转换
+         */
+        CARD_CONVERT,
+        /**
+         * 身份证照片人脸检测
+         */
+        CARD_DETECT,
+        /**
+         * 预览帧人脸检测
+         */
+        LIVE_DETECT,
+        /**
+         * 特征提取请求排队及等待引擎
+         */
+        FR_QUEUE_WAIT,
+        /**
+         * 特征提取
+         */
+        FR_EXTRACT,
+        /**
+         * 活体检测，与特征提取同时进行
+         */
+        LIVENESS,
+        /**
+         * 特征比对
+         */
+        COMPARE,
+        /**
+         * 身份证特征就绪到显示比对结果
+         */
+        SESSION,
+        /**
+         * 布控名单检索
+         */
+        WATCHLIST_SEARCH
+    }
+
+    /**
+     * 区间快照回调，在统计线程中执行
+     */
+    public interface SnapshotListener {
+        /**
+         * @param snapshots 上次回调以来各阶段的区间快照
+         */
+        void onSnapshot(Map<Stage, LatencyHistogram.Snapshot> snapshots);
+    }
+
+    private final LatencyHistogram[] histograms;
+    private ScheduledExecutorService snapshotScheduler;
+    private Map<Stage, LatencyHistogram.Snapshot> lastSnapshots;
+
+    public PipelineMetrics() {
+        Stage[] stages = Stage.values();
+        histograms = new LatencyHistogram[stages.length];
+        for (int i = 0; i < stages.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * 记录阶段耗时
+     *
+     * @param stage 阶段
+     * @param nanos 耗时，单位纳秒
+     */
+    public void record(Stage stage, long nanos) {
+        histograms[stage.ordinal()].recordNanos(nanos);
+    }
+
+    /**
+     * 记录从startNanos到现在的阶段耗时
+     *
+     * @param stage      阶段
+     * @param startNanos 阶段开始时的{@link System#nanoTime()}
+     */
+    public void recordSince(Stage stage, long startNanos) {
+        record(stage, System.nanoTime() - startNanos);
+    }
+
+    public LatencyHistogram getHistogram(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    /**
+     * @return 各阶段的累计快照
+     */
+    public Map<Stage, LatencyHistogram.Snapshot> snapshot() {
+        Map<Stage, LatencyHistogram.Snapshot> snapshots = new EnumMap<>(Stage.class);
+        for (Stage stage : Stage.values()) {
+            snapshots.put(stage, histograms[stage.ordinal()].snapshot());
+        }
+        return snapshots;
+    }
+
+    /**
+     * 开始定期输出区间快照，重复调用会替换之前的定时任务
+     *
+     * @param period   间隔，单位毫秒
+     * @param listener 快照回调
+     */
+    public synchronized void startPeriodicSnapshot(long period, SnapshotListener listener) {
+        stopPeriodicSnapshot();
+        lastSnapshots = snapshot();
+        snapshotScheduler = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, TAG));
+        snapshotScheduler.scheduleAtFixedRate(() -> listener.onSnapshot(intervalSnapshot()), period, period, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized Map<Stage, LatencyHistogram.Snapshot> intervalSnapshot() {
+        Map<Stage, LatencyHistogram.Snapshot> current = snapshot();
+        Map<Stage, LatencyHistogram.Snapshot> interval = new EnumMap<>(Stage.class);
+        for (Stage stage : Stage.values()) {
+            interval.put(stage, current.get(stage).since(lastSnapshots.get(stage)));
+        }
+        lastSnapshots = current;
+        return interval;
+    }
+
+    public synchronized void stopPeriodicSnapshot() {
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdownNow();
+            snapshotScheduler = null;
+        }
+    }
+
+    /**
+     * 停止定期输出，并在统计线程中将累计数据追加写入文件，不阻塞调用线程
+     *
+     * @param dumpFile 目标文件
+     */
+    public synchronized void stopPeriodicSnapshot(File dumpFile) {
+        ScheduledExecutorService scheduler = snapshotScheduler != null
+                ? snapshotScheduler : Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, TAG));
+        snapshotScheduler = null;
+        //shutdown取消定时任务，已提交的写入任务仍会执行
+        scheduler.execute(() -> dumpTo(dumpFile));
+        scheduler.shutdown();
+    }
+
+    /**
+     * 将各阶段累计数据追加写入文件，每个阶段一行
+     *
+     * @param file 目标文件
+     * @return 是否写入成功
+     */
+    public boolean dumpTo(File file) {
+        Map<Stage, LatencyHistogram.Snapshot> snapshots = snapshot();
+        long now = System.currentTimeMillis();
+        FileWriter writer = null;
+        try {
+            writer = new FileWriter(file, true);
+            for (Map.Entry<Stage, LatencyHistogram.Snapshot> entry : snapshots.entrySet()) {
+                writer.write(now + " " + entry.getKey() + " " + entry.getValue() + "\n");
+            }
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "dump failed: " + file, e);
+            return false;
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("PipelineMetrics{");
+        for (Map.Entry<Stage, LatencyHistogram.Snapshot> entry : snapshot().entrySet()) {
+            builder.append("\n  ").append(entry.getKey()).append(": ").append(entry.getValue());
+        }
+        return builder.append("\n}").toString();
+    }
+}
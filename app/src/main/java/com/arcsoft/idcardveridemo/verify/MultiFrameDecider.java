@@ -0,0 +1,169 @@
+package com.arcsoft.idcardveridemo.verify;
+
+/**
+ * 多帧比对决策类，对同一人脸的多帧比对分数进行综合判断。
+ * 分数达到高置信度阈值时立即通过，低于低置信度阈值的帧数达到上限时立即拒绝，
+ * 否则继续比对直到达到最大帧数，再以最高分与比对阈值判断结果
+ */
+public class MultiFrameDecider {
+
+    public enum Decision {
+        /**
+         * 比对通过
+         */
+        PASS,
+        /**
+         * 比对不通过
+         */
+        FAIL,
+        /**
+         * 需要更多帧
+         */
+        PENDING
+    }
+
+    /**
+     * 最大比对帧数
+     */
+    private final int maxFrames;
+    /**
+     * 高置信度阈值，单帧分数达到该值立即通过
+     */
+    private final float acceptScore;
+    /**
+     * 比对阈值，达到最大帧数后以最高分与该值比较
+     */
+    private final float threshold;
+    /**
+     * 低置信度阈值，低于该值的帧计为低分帧
+     */
+    private final float rejectScore;
+    /**
+     * 低分帧数达到该值立即拒绝
+     */
+    private final int rejectFrames;
+
+    private int trackId = -1;
+    private int frameCount;
+    private int lowScoreCount;
+    private float bestScore;
+    /**
+     * 上一次决策使用的帧数
+     */
+    private int lastDecisionFrames;
+
+    private MultiFrameDecider(Builder builder) {
+        maxFrames = builder.maxFrames;
+        acceptScore = builder.acceptScore;
+        threshold = builder.threshold;
+        rejectScore = builder.rejectScore;
+        rejectFrames = builder.rejectFrames;
+        if (maxFrames <= 0 || rejectFrames <= 0) {
+            throw new IllegalArgumentException("maxFrames and rejectFrames must > 0");
+        }
+        if (rejectScore > threshold || threshold > acceptScore) {
+            throw new IllegalArgumentException("scores must satisfy rejectScore <= threshold <= acceptScore");
+        }
+    }
+
+    /**
+     * 送入一帧的比对分数，人脸trackId变化时重新开始计数
+     *
+     * @param trackId 人脸trackId
+     * @param score   比对分数
+     * @return 决策结果，返回{@link Decision#PENDING}时需继续送入下一帧的分数
+     */
+    public synchronized Decision offer(int trackId, float score) {
+        if (trackId != this.trackId) {
+            reset();
+            this.trackId = trackId;
+        }
+        frameCount++;
+        bestScore = Math.max(bestScore, score);
+        Decision decision;
+        if (score >= acceptScore) {
+            decision = Decision.PASS;
+        } else if (score < rejectScore && ++lowScoreCount >= rejectFrames) {
+            decision = Decision.FAIL;
+        } else if (frameCount >= maxFrames) {
+            decision = bestScore > threshold ? Decision.PASS : Decision.FAIL;
+        } else {
+            decision = Decision.PENDING;
+        }
+        if (decision != Decision.PENDING) {
+            lastDecisionFrames = frameCount;
+        }
+        return decision;
+    }
+
+    /**
+     * 重置决策状态，新的身份证数据到达或完成一次决策后调用
+     */
+    public synchronized void reset() {
+        trackId = -1;
+        frameCount = 0;
+        lowScoreCount = 0;
+        bestScore = 0;
+    }
+
+    /**
+     * @return 当前决策已使用的帧数
+     */
+    public synchronized int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @return 当前决策的最高分
+     */
+    public synchronized float getBestScore() {
+        return bestScore;
+    }
+
+    /**
+     * @return 上一次决策使用的帧数
+     */
+    public synchronized int getLastDecisionFrames() {
+        return lastDecisionFrames;
+    }
+
+    public static final class Builder {
+        private int maxFrames = 3;
+        private float acceptScore = 0.9f;
+        private float threshold = 0.82f;
+        private float rejectScore = 0.6f;
+        private int rejectFrames = 2;
+
+        public Builder() {
+        }
+
+        public Builder maxFrames(int val) {
+            maxFrames = val;
+            return this;
+        }
+
+        public Builder acceptScore(float val) {
+            acceptScore = val;
+            return this;
+        }
+
+        public Builder threshold(float val) {
+            threshold = val;
+            return this;
+        }
+
+        public Builder rejectScore(float val) {
+            rejectScore = val;
+            return this;
+        }
+
+        public Builder rejectFrames(int val) {
+            rejectFrames = val;
+            return this;
+        }
+
+        public MultiFrameDecider build() {
+            return new MultiFrameDecider(this);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.arcsoft.idcardveridemo.verify;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 人证比对会话状态机，所有状态切换均通过CAS完成，读卡线程、特征提取线程、检测线程与主线程可以安全地并发推进会话。
+ * 超时统一由一个调度线程处理，超时任务绑定会话id，会话已切换时自动失效
+ */
+public class VerifySession {
+
+    public enum State {
+        /**
+         * 等待身份证
+         */
+        CARD_PENDING,
+        /**
+         * 身份证特征已就绪，等待预览人脸特征
+         */
+        CARD_READY,
+        /**
+         * 身份证与预览人脸特征均已就绪
+         */
+        LIVE_READY,
+        /**
+         * 比对中
+         */
+        COMPARING,
+        /**
+         * 显示比对结果
+         */
+        SHOWING_RESULT
+    }
+
+    /**
+     * 会话快照，不可变，每次状态切换生成新的快照
+     */
+    public static final class Snapshot {
+        private final long sessionId;
+        private final State state;
+        /**
+         * 会话内首次进入各状态的时间点，下标为{@link State#ordinal()}，单位纳秒，未进入过为0。
+         * 多帧比对重试会回到已进入过的状态，只记录首次进入的时间，各状态之间的耗时包含全部重试
+         */
+        private final long[] stateTimes;
+        /**
+         * 最近一次进入当前状态的时间点，单位纳秒
+         */
+        private final long enterTime;
+
+        private Snapshot(long sessionId, State state, long[] stateTimes, long enterTime) {
+            this.sessionId = sessionId;
+            this.state = state;
+            this.stateTimes = stateTimes;
+            this.enterTime = enterTime;
+        }
+
+        private Snapshot next(long sessionId, State state, long time) {
+            long[] times = sessionId == this.sessionId ? stateTimes.clone() : new long[stateTimes.length];
+            if (times[state.ordinal()] == 0) {
+                times[state.ordinal()] = time;
+            }
+            return new Snapshot(sessionId, state, times, time);
+        }
+
+        public long getSessionId() {
+            return sessionId;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        /**
+         * @param state 状态
+         * @return 本次会话首次进入该状态的时间点，单位纳秒，未进入过返回0
+         */
+        public long getStateTime(State state) {
+            return stateTimes[state.ordinal()];
+        }
+
+        /**
+         * @return 最近一次进入当前状态的时间点，单位纳秒
+         */
+        public long getEnterTime() {
+            return enterTime;
+        }
+
+        /**
+         * @param from 起始状态
+         * @param to   结束状态
+         * @return 本次会话中首次进入两个状态之间的耗时，单位毫秒，任一状态未进入过返回-1
+         */
+        public long getElapsed(State from, State to) {
+            long start = getStateTime(from);
+            long end = getStateTime(to);
+            if (start == 0 || end == 0) {
+                return -1;
+            }
+            return TimeUnit.NANOSECONDS.toMillis(end - start);
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot{" +
+                    "sessionId=" + sessionId +
+                    ", state=" + state +
+                    ", cardToLive=" + getElapsed(State.CARD_READY, State.LIVE_READY) +
+                    ", liveToComparing=" + getElapsed(State.LIVE_READY, State.COMPARING) +
+                    ", comparingToResult=" + getElapsed(State.COMPARING, State.SHOWING_RESULT) +
+                    ", cardToResult=" + getElapsed(State.CARD_READY, State.SHOWING_RESULT) +
+                    '}';
+        }
+    }
+
+    private final AtomicReference<Snapshot> snapshot;
+    private final ScheduledExecutorService timeoutScheduler;
+    private final VerifySessionListener verifySessionListener;
+    /**
+     * 超时到达时若正在比对，延后该时长再判断，单位毫秒
+     */
+    private final long comparingRecheckDelay;
+
+    private VerifySession(Builder builder) {
+        verifySessionListener = builder.verifySessionListener;
+        comparingRecheckDelay = builder.comparingRecheckDelay;
+        snapshot = new AtomicReference<>(new Snapshot(0, State.CARD_PENDING, new long[State.values().length], 0));
+        timeoutScheduler = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "VerifySession-timeout"));
+    }
+
+    public Snapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    public State getState() {
+        return snapshot.get().state;
+    }
+
+    /**
+     * 身份证特征就绪时开始新的会话，比对进行中时不打断
+     *
+     * @return 新会话的快照，比对进行中返回null
+     */
+    public Snapshot startSession() {
+        while (true) {
+            Snapshot current = snapshot.get();
+            if (current.state == State.COMPARING) {
+                return null;
+            }
+            Snapshot next = current.next(current.sessionId + 1, State.CARD_READY, System.nanoTime());
+            if (snapshot.compareAndSet(current, next)) {
+                notifyStateChanged(current, next);
+                return next;
+            }
+        }
+    }
+
+    /**
+     * 在指定会话中切换状态
+     *
+     * @param sessionId 会话id
+     * @param from      期望的当前状态
+     * @param to        目标状态
+     * @return 是否切换成功，会话已变化或当前状态不是from时返回false
+     */
+    public boolean transition(long sessionId, State from, State to) {
+        while (true) {
+            Snapshot current = snapshot.get();
+            if (current.sessionId != sessionId || current.state != from) {
+                return false;
+            }
+            Snapshot next = current.next(sessionId, to, System.nanoTime());
+            if (snapshot.compareAndSet(current, next)) {
+                notifyStateChanged(current, next);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 延时执行任务，执行时会话仍处于指定状态才会执行
+     *
+     * @param sessionId 会话id
+     * @param state     执行任务时要求的状态
+     * @param delay     延时，单位毫秒
+     * @param action    任务
+     * @return 任务句柄，会话已释放时返回null
+     */
+    public ScheduledFuture<?> schedule(long sessionId, State state, long delay, Runnable action) {
+        if (timeoutScheduler.isShutdown()) {
+            return null;
+        }
+        return timeoutScheduler.schedule(() -> {
+            Snapshot current = snapshot.get();
+            if (current.sessionId == sessionId && current.state == state) {
+                action.run();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 会话超时处理，超时时若会话仍处于from中的某个状态则切换到target；
+     * 若正在比对则不打断，等待比对结束后再判断
+     *
+     * @param sessionId 会话id
+     * @param delay     超时时长，单位毫秒
+     * @param target    超时后切换到的状态
+     * @param from      允许超时切换的状态
+     */
+    public void scheduleTimeout(long sessionId, long delay, State target, State... from) {
+        if (timeoutScheduler.isShutdown()) {
+            return;
+        }
+        timeoutScheduler.schedule(() -> {
+            Snapshot current = snapshot.get();
+            if (current.sessionId != sessionId) {
+                return;
+            }
+            if (current.state == State.COMPARING) {
+                scheduleTimeout(sessionId, comparingRecheckDelay, target, from);
+                return;
+            }
+            for (State state : from) {
+                if (transition(sessionId, state, target)) {
+                    return;
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void notifyStateChanged(Snapshot previous, Snapshot current) {
+        if (verifySessionListener != null) {
+            verifySessionListener.onStateChanged(previous, current);
+        }
+    }
+
+    /**
+     * 停止超时调度
+     */
+    public void release() {
+        timeoutScheduler.shutdownNow();
+    }
+
+    public static final class Builder {
+        private VerifySessionListener verifySessionListener;
+        private long comparingRecheckDelay = 100;
+
+        public Builder() {
+        }
+
+        public Builder verifySessionListener(VerifySessionListener val) {
+            verifySessionListener = val;
+            return this;
+        }
+
+        public Builder comparingRecheckDelay(long val) {
+            comparingRecheckDelay = val;
+            return this;
+        }
+
+        public VerifySession build() {
+            return new VerifySession(this);
+        }
+    }
+}
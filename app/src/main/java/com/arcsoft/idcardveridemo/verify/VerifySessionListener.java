@@ -0,0 +1,14 @@
+package com.arcsoft.idcardveridemo.verify;
+
+/**
+ * 人证比对会话状态回调，在执行状态切换的线程中调用
+ */
+public interface VerifySessionListener {
+    /**
+     * 会话状态切换成功后回调
+     *
+     * @param previous 切换前的快照
+     * @param current  切换后的快照
+     */
+    void onStateChanged(VerifySession.Snapshot previous, VerifySession.Snapshot current);
+}
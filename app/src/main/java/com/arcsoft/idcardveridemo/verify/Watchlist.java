@@ -0,0 +1,155 @@
+package com.arcsoft.idcardveridemo.verify;
+
+import com.arcsoft.face.FaceFeature;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 布控名单，所有特征连续存放在一个数组中，第i个特征位于 [i * featureSize, (i + 1) * featureSize)，
+ * 避免数千至数十万个FaceFeature对象带来的内存开销及遍历时的缓存失效。
+ * 检索期间持有读锁，增删名单需等待检索结束
+ */
+public class Watchlist {
+    private final int featureSize;
+    private byte[] features;
+    private String[] ids;
+    private int size;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * @param featureSize     单个特征长度，一般为{@link FaceFeature#FEATURE_SIZE}
+     * @param initialCapacity 初始容量
+     */
+    public Watchlist(int featureSize, int initialCapacity) {
+        if (featureSize <= 0) {
+            throw new IllegalArgumentException("featureSize must > 0");
+        }
+        this.featureSize = featureSize;
+        int capacity = Math.max(1, initialCapacity);
+        features = new byte[capacity * featureSize];
+        ids = new String[capacity];
+    }
+
+    /**
+     * 添加一个特征，特征数据会被拷贝
+     *
+     * @param id          名单人员标识
+     * @param faceFeature 人脸特征
+     * @return 特征在名单中的位置
+     */
+    public int add(String id, FaceFeature faceFeature) {
+        byte[] featureData = faceFeature.getFeatureData();
+        if (featureData == null || featureData.length != featureSize) {
+            throw new IllegalArgumentException("feature size must be " + featureSize);
+        }
+        lock.writeLock().lock();
+        try {
+            if (size == ids.length) {
+                int capacity = ids.length * 2;
+                features = Arrays.copyOf(features, capacity * featureSize);
+                ids = Arrays.copyOf(ids, capacity);
+            }
+            System.arraycopy(featureData, 0, features, size * featureSize, featureSize);
+            ids[size] = id;
+            return size++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 移除标识对应的所有特征，最后一个特征移入空出的位置，因此其他特征的位置可能变化
+     *
+     * @param id 名单人员标识
+     * @return 移除的特征数
+     */
+    public int remove(String id) {
+        lock.writeLock().lock();
+        try {
+            int removed = 0;
+            int i = 0;
+            while (i < size) {
+                if (id == null ? ids[i] == null : id.equals(ids[i])) {
+                    size--;
+                    System.arraycopy(features, size * featureSize, features, i * featureSize, featureSize);
+                    ids[i] = ids[size];
+                    ids[size] = null;
+                    removed++;
+                } else {
+                    i++;
+                }
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            Arrays.fill(ids, 0, size, null);
+            size = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param index 特征位置
+     * @return 名单人员标识
+     */
+    public String getId(int index) {
+        lock.readLock().lock();
+        try {
+            return ids[index];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getFeatureSize() {
+        return featureSize;
+    }
+
+    /**
+     * 检索开始前调用，检索期间名单不会变化
+     *
+     * @return 当前名单大小
+     */
+    int beginRead() {
+        lock.readLock().lock();
+        return size;
+    }
+
+    /**
+     * 检索结束后调用，与{@link #beginRead()}成对使用
+     */
+    void endRead() {
+        lock.readLock().unlock();
+    }
+
+    /**
+     * 将特征拷贝到dst，需在{@link #beginRead()}与{@link #endRead()}之间调用
+     */
+    void copyFeature(int index, byte[] dst) {
+        System.arraycopy(features, index * featureSize, dst, 0, featureSize);
+    }
+
+    /**
+     * 需在{@link #beginRead()}与{@link #endRead()}之间调用
+     */
+    String getIdLocked(int index) {
+        return ids[index];
+    }
+}
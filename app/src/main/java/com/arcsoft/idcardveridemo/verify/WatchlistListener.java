@@ -0,0 +1,17 @@
+package com.arcsoft.idcardveridemo.verify;
+
+import java.util.List;
+
+/**
+ * 布控名单检索回调，在检索线程中执行
+ */
+public interface WatchlistListener {
+    /**
+     * 异步检索完成
+     *
+     * @param requestId 请求码，一般使用trackId
+     * @param matches   相似度不低于阈值的前k个结果，按相似度从高到低排列，无结果时为空列表
+     * @param cost      检索耗时，单位纳秒
+     */
+    void onWatchlistSearched(int requestId, List<WatchlistSearcher.Match> matches, long cost);
+}
@@ -0,0 +1,460 @@
+package com.arcsoft.idcardveridemo.verify;
+
+import android.os.Process;
+import android.util.Log;
+
+import com.arcsoft.face.FaceFeature;
+import com.arcsoft.face.enums.CompareModel;
+import com.arcsoft.idcardveridemo.draw.face.EnginePool;
+import com.arcsoft.idcardveridemo.draw.face.FaceFeatureComparator;
+import com.arcsoft.idcardveridemo.metrics.PipelineMetrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 布控名单1:N检索，将名单划分为多个区间，每个区间租用一个比对引擎并行比对，合并各区间的前k个结果。
+ * 异步检索在独立线程中进行，与1:1人证比对同时执行，不增加闸机结果的等待时间
+ */
+public class WatchlistSearcher {
+    private static final String TAG = "WatchlistSearcher";
+    /**
+     * 每个区间最少的特征数，名单较小时减少区间数，避免线程切换开销超过比对本身
+     */
+    private static final int MIN_PARTITION_SIZE = 256;
+
+    /**
+     * 检索结果
+     */
+    public static final class Match {
+        private final int index;
+        private final String id;
+        private final float score;
+
+        Match(int index, String id, float score) {
+            this.index = index;
+            this.id = id;
+            this.score = score;
+        }
+
+        /**
+         * @return 特征在名单中的位置，名单变化后可能失效
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public float getScore() {
+            return score;
+        }
+
+        @Override
+        public String toString() {
+            return "Match{" +
+                    "id=" + id +
+                    ", score=" + score +
+                    '}';
+        }
+    }
+
+    private Watchlist watchlist;
+    private EnginePool<? extends FaceFeatureComparator> comparatorPool;
+    private CompareModel compareModel;
+    private int topK;
+    /**
+     * 结果的最低相似度
+     */
+    private float minScore;
+    /**
+     * 最大区间数，不超过引擎数
+     */
+    private int partitionCount;
+    private int threadPriority;
+    private PipelineMetrics pipelineMetrics;
+    private volatile WatchlistListener watchlistListener;
+
+    /**
+     * 区间比对线程，检索线程自身处理第一个区间，因此比区间数少一个
+     */
+    private final ExecutorService partitionExecutor;
+    /**
+     * 异步检索线程，只保留最新的一个待检索请求
+     */
+    private final ThreadPoolExecutor searchExecutor;
+
+    private WatchlistSearcher(Builder builder) {
+        watchlist = builder.watchlist;
+        comparatorPool = builder.comparatorPool;
+        compareModel = builder.compareModel;
+        topK = builder.topK;
+        minScore = builder.minScore;
+        threadPriority = builder.threadPriority;
+        pipelineMetrics = builder.pipelineMetrics;
+        watchlistListener = builder.watchlistListener;
+        if (watchlist == null || comparatorPool == null) {
+            throw new RuntimeException("watchlist and comparatorPool must be specified!");
+        }
+        if (topK <= 0) {
+            throw new IllegalArgumentException("topK must > 0");
+        }
+        partitionCount = builder.partitionCount > 0 ? Math.min(builder.partitionCount, comparatorPool.size()) : comparatorPool.size();
+        partitionExecutor = partitionCount > 1 ? Executors.newFixedThreadPool(partitionCount - 1, newThreadFactory(TAG + "-partition")) : null;
+        searchExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1),
+                newThreadFactory(TAG), new ThreadPoolExecutor.DiscardOldestPolicy());
+    }
+
+    private ThreadFactory newThreadFactory(String name) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return r -> new Thread(() -> {
+            //设置优先级失败时以默认优先级运行，线程退出会导致检索一直等待区间结果
+            try {
+                Process.setThreadPriority(threadPriority);
+            } catch (IllegalArgumentException | SecurityException e) {
+                Log.w(TAG, "setThreadPriority failed: " + e);
+            }
+            r.run();
+        }, name + "-" + threadCount.getAndIncrement());
+    }
+
+    /**
+     * 在检索线程中异步检索，检索线程繁忙时只保留最新的请求，结果通过{@link WatchlistListener}回调
+     *
+     * @param requestId 请求码，一般使用trackId
+     * @param probe     待检索的人脸特征，检索期间不可修改
+     * @return 是否接收了请求，已释放时返回false
+     */
+    public boolean searchAsync(int requestId, FaceFeature probe) {
+        if (probe == null || searchExecutor.isShutdown()) {
+            return false;
+        }
+        searchExecutor.execute(() -> {
+            long startTime = System.nanoTime();
+            List<Match> matches;
+            try {
+                matches = search(probe);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long cost = System.nanoTime() - startTime;
+            if (pipelineMetrics != null) {
+                pipelineMetrics.record(PipelineMetrics.Stage.WATCHLIST_SEARCH, cost);
+            }
+            WatchlistListener listener = watchlistListener;
+            if (listener != null) {
+                listener.onWatchlistSearched(requestId, matches, cost);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 在当前线程检索，各区间并行比对
+     *
+     * @param probe 待检索的人脸特征
+     * @return 相似度不低于阈值的前k个结果，按相似度从高到低排列
+     * @throws InterruptedException 等待引擎或区间结果时被中断
+     */
+    public List<Match> search(FaceFeature probe) throws InterruptedException {
+        int count = watchlist.beginRead();
+        try {
+            if (count == 0) {
+                return Collections.emptyList();
+            }
+            int partitions = Math.max(1, Math.min(partitionCount, count / MIN_PARTITION_SIZE));
+            AtomicBoolean aborted = new AtomicBoolean();
+            CountDownLatch finished = new CountDownLatch(partitions - 1);
+            List<PartitionTask> tasks = new ArrayList<>(partitions - 1);
+            for (int i = 1; i < partitions; i++) {
+                int from = (int) ((long) count * i / partitions);
+                int to = (int) ((long) count * (i + 1) / partitions);
+                tasks.add(new PartitionTask(probe, from, to, aborted, finished));
+            }
+            try {
+                for (PartitionTask task : tasks) {
+                    try {
+                        task.future = partitionExecutor.submit(task);
+                    } catch (RejectedExecutionException e) {
+                        //区间线程已停止，由检索线程自行处理该区间
+                    }
+                }
+                TopK result = searchPartition(comparatorPool, probe, 0, count / partitions, aborted);
+                for (PartitionTask task : tasks) {
+                    //尚未开始的区间直接在检索线程中处理，不依赖区间线程是否仍在运行
+                    TopK partial = task.runIfUnclaimed();
+                    result.merge(partial != null ? partial : task.future.get());
+                }
+                return result.toMatches(watchlist);
+            } catch (ExecutionException e) {
+                Log.e(TAG, "search: " + e.getCause());
+                return Collections.emptyList();
+            } finally {
+                //通知仍在比对的区间尽快结束，并等待所有区间结束后才释放读锁，避免释放后仍在读取名单
+                aborted.set(true);
+                for (PartitionTask task : tasks) {
+                    task.skip();
+                    if (task.future != null) {
+                        task.future.cancel(true);
+                    }
+                }
+                awaitUninterruptibly(finished);
+            }
+        } finally {
+            watchlist.endRead();
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 区间比对任务，由区间线程或检索线程中先开始的一方执行，另一方跳过；执行结束或被跳过时计数一次
+     */
+    private final class PartitionTask implements Callable<TopK> {
+        private final FaceFeature probe;
+        private final int from;
+        private final int to;
+        private final AtomicBoolean aborted;
+        private final CountDownLatch finished;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private Future<TopK> future;
+
+        private PartitionTask(FaceFeature probe, int from, int to, AtomicBoolean aborted, CountDownLatch finished) {
+            this.probe = probe;
+            this.from = from;
+            this.to = to;
+            this.aborted = aborted;
+            this.finished = finished;
+        }
+
+        @Override
+        public TopK call() throws InterruptedException {
+            return runIfUnclaimed();
+        }
+
+        /**
+         * @return 比对结果，已由其他线程执行或已跳过时返回null
+         */
+        private TopK runIfUnclaimed() throws InterruptedException {
+            if (!claimed.compareAndSet(false, true)) {
+                return null;
+            }
+            try {
+                return searchPartition(comparatorPool, probe, from, to, aborted);
+            } finally {
+                finished.countDown();
+            }
+        }
+
+        /**
+         * 跳过尚未开始的任务
+         */
+        private void skip() {
+            if (claimed.compareAndSet(false, true)) {
+                finished.countDown();
+            }
+        }
+    }
+
+    /**
+     * 租用一个引擎比对 [from, to) 区间内的特征，被中断或检索已中止时抛出{@link InterruptedException}
+     */
+    private <T extends FaceFeatureComparator> TopK searchPartition(EnginePool<T> pool, FaceFeature probe, int from, int to,
+                                                                   AtomicBoolean aborted) throws InterruptedException {
+        TopK topK = new TopK(this.topK);
+        FaceFeature candidate = new FaceFeature(new byte[watchlist.getFeatureSize()]);
+        byte[] candidateData = candidate.getFeatureData();
+        T comparator = pool.acquire();
+        try {
+            for (int i = from; i < to; i++) {
+                if (aborted.get() || Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                watchlist.copyFeature(i, candidateData);
+                float score = comparator.compareFaceFeature(probe, candidate, compareModel);
+                if (score >= minScore) {
+                    topK.offer(i, score);
+                }
+            }
+        } finally {
+            pool.release(comparator);
+        }
+        return topK;
+    }
+
+    /**
+     * 停止检索线程，未开始的请求被丢弃
+     */
+    public void release() {
+        watchlistListener = null;
+        searchExecutor.shutdownNow();
+        if (partitionExecutor != null) {
+            partitionExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 前k个结果，按相似度从高到低排列
+     */
+    private static final class TopK {
+        private final int[] indexes;
+        private final float[] scores;
+        private int size;
+
+        private TopK(int k) {
+            indexes = new int[k];
+            scores = new float[k];
+        }
+
+        private void offer(int index, float score) {
+            if (size == scores.length && score <= scores[size - 1]) {
+                return;
+            }
+            int position = size == scores.length ? size - 1 : size++;
+            while (position > 0 && scores[position - 1] < score) {
+                scores[position] = scores[position - 1];
+                indexes[position] = indexes[position - 1];
+                position--;
+            }
+            scores[position] = score;
+            indexes[position] = index;
+        }
+
+        private void merge(TopK other) {
+            for (int i = 0; i < other.size; i++) {
+                offer(other.indexes[i], other.scores[i]);
+            }
+        }
+
+        private List<Match> toMatches(Watchlist watchlist) {
+            List<Match> matches = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                matches.add(new Match(indexes[i], watchlist.getIdLocked(indexes[i]), scores[i]));
+            }
+            return matches;
+        }
+    }
+
+    public static final class Builder {
+        private Watchlist watchlist;
+        private EnginePool<? extends FaceFeatureComparator> comparatorPool;
+        private CompareModel compareModel = CompareModel.LIFE_PHOTO;
+        private int topK = 5;
+        private float minScore;
+        private int partitionCount;
+        private int threadPriority = Process.THREAD_PRIORITY_BACKGROUND;
+        private PipelineMetrics pipelineMetrics;
+        private WatchlistListener watchlistListener;
+
+        public Builder() {
+        }
+
+        public Builder watchlist(Watchlist val) {
+            watchlist = val;
+            return this;
+        }
+
+        /**
+         * 比对引擎池，每个区间租用一个引擎，不应与特征提取共用，避免检索占用特征提取的引擎
+         *
+         * @param val 比对引擎池
+         * @return Builder
+         */
+        public Builder comparatorPool(EnginePool<? extends FaceFeatureComparator> val) {
+            comparatorPool = val;
+            return this;
+        }
+
+        public Builder compareModel(CompareModel val) {
+            compareModel = val;
+            return this;
+        }
+
+        public Builder topK(int val) {
+            topK = val;
+            return this;
+        }
+
+        /**
+         * 结果的最低相似度，低于该值的特征不出现在结果中
+         *
+         * @param val 最低相似度
+         * @return Builder
+         */
+        public Builder minScore(float val) {
+            minScore = val;
+            return this;
+        }
+
+        /**
+         * 最大区间数，小于等于0或大于引擎数时使用引擎数
+         *
+         * @param val 区间数
+         * @return Builder
+         */
+        public Builder partitionCount(int val) {
+            partitionCount = val;
+            return this;
+        }
+
+        /**
+         * 检索线程优先级，默认为后台优先级，避免与检测及特征提取争抢CPU，取值参考{@link Process}中的THREAD_PRIORITY_*
+         *
+         * @param val 线程优先级
+         * @return Builder
+         */
+        public Builder threadPriority(int val) {
+            threadPriority = val;
+            return this;
+        }
+
+        /**
+         * 设置耗时统计，为空时不统计
+         *
+         * @param val 耗时统计
+         * @return Builder
+         */
+        public Builder pipelineMetrics(PipelineMetrics val) {
+            pipelineMetrics = val;
+            return this;
+        }
+
+        public Builder watchlistListener(WatchlistListener val) {
+            watchlistListener = val;
+            return this;
+        }
+
+        public WatchlistSearcher build() {
+            return new WatchlistSearcher(this);
+        }
+    }
+}
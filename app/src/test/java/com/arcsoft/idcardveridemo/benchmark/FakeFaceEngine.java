@@ -0,0 +1,202 @@
+package com.arcsoft.idcardveridemo.benchmark;
+
+import android.graphics.Rect;
+
+import com.arcsoft.face.ErrorInfo;
+import com.arcsoft.face.FaceFeature;
+import com.arcsoft.face.FaceInfo;
+import com.arcsoft.face.enums.CompareModel;
+import com.arcsoft.idcardveridemo.draw.face.FaceDetector;
+import com.arcsoft.idcardveridemo.draw.face.FaceFeatureComparator;
+import com.arcsoft.idcardveridemo.draw.face.FaceFeatureExtractor;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 模拟FaceEngine，按配置的耗时及错误率返回结果，不依赖native库。
+ * 每隔{@link Builder#framesPerTrack(int)}帧换一个人脸trackId，模拟不同的人依次站到镜头前。
+ * 特征比对按真实特征的布局（8字节头 + 浮点向量）计算点积，比对耗时即为实际计算耗时
+ */
+public class FakeFaceEngine implements FaceDetector, FaceFeatureExtractor, FaceFeatureComparator {
+    /**
+     * 特征头长度，之后为小端序的浮点向量
+     */
+    static final int FEATURE_HEADER_SIZE = 8;
+
+    private final long detectNanos;
+    private final long extractNanos;
+    /**
+     * 耗时抖动比例，实际耗时在 [1 - jitter, 1 + jitter] 倍之间均匀分布
+     */
+    private final float jitter;
+    private final float detectErrorRate;
+    private final float extractErrorRate;
+    private final int framesPerTrack;
+    private final Random random;
+
+    private long detectCount;
+
+    private FakeFaceEngine(Builder builder) {
+        detectNanos = TimeUnit.MICROSECONDS.toNanos(builder.detectMicros);
+        extractNanos = TimeUnit.MICROSECONDS.toNanos(builder.extractMicros);
+        jitter = builder.jitter;
+        detectErrorRate = builder.detectErrorRate;
+        extractErrorRate = builder.extractErrorRate;
+        framesPerTrack = builder.framesPerTrack;
+        random = new Random(builder.seed);
+    }
+
+    @Override
+    public int detectFaces(byte[] data, int width, int height, int format, List<FaceInfo> faceInfoList) {
+        int trackId;
+        boolean failed;
+        long nanos;
+        synchronized (this) {
+            trackId = (int) (detectCount++ / framesPerTrack);
+            failed = random.nextFloat() < detectErrorRate;
+            nanos = jittered(detectNanos);
+        }
+        busyWait(nanos);
+        if (failed) {
+            return ErrorInfo.MERR_UNKNOWN;
+        }
+        FaceInfo faceInfo = new FaceInfo(new Rect(width / 4, height / 4, width * 3 / 4, height * 3 / 4), 1);
+        faceInfo.setFaceId(trackId);
+        faceInfoList.add(faceInfo);
+        return ErrorInfo.MOK;
+    }
+
+    @Override
+    public int extractFaceFeature(byte[] data, int width, int height, int format, FaceInfo faceInfo, FaceFeature faceFeature) {
+        boolean failed;
+        long nanos;
+        synchronized (this) {
+            failed = random.nextFloat() < extractErrorRate;
+            nanos = jittered(extractNanos);
+        }
+        busyWait(nanos);
+        if (failed) {
+            return ErrorInfo.MERR_UNKNOWN;
+        }
+        byte[] featureData = new byte[FaceFeature.FEATURE_SIZE];
+        featureData[0] = (byte) faceInfo.getFaceId();
+        faceFeature.setFeatureData(featureData);
+        return ErrorInfo.MOK;
+    }
+
+    @Override
+    public float compareFaceFeature(FaceFeature feature1, FaceFeature feature2, CompareModel compareModel) {
+        byte[] data1 = feature1.getFeatureData();
+        byte[] data2 = feature2.getFeatureData();
+        if (data1.length != data2.length) {
+            return COMPARE_FAILED;
+        }
+        float dot = 0;
+        for (int i = FEATURE_HEADER_SIZE; i + 4 <= data1.length; i += 4) {
+            dot += getFloat(data1, i) * getFloat(data2, i);
+        }
+        return Math.max(0f, Math.min(1f, dot));
+    }
+
+    private static float getFloat(byte[] data, int offset) {
+        return Float.intBitsToFloat((data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8
+                | (data[offset + 2] & 0xFF) << 16 | (data[offset + 3] & 0xFF) << 24);
+    }
+
+    /**
+     * 生成单位长度的随机特征，用于比对基准测试
+     *
+     * @param random 随机数
+     * @return 特征
+     */
+    public static FaceFeature randomFeature(Random random) {
+        int dimension = (FaceFeature.FEATURE_SIZE - FEATURE_HEADER_SIZE) / 4;
+        float[] vector = new float[dimension];
+        double norm = 0;
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        byte[] data = new byte[FaceFeature.FEATURE_SIZE];
+        for (int i = 0; i < dimension; i++) {
+            int bits = Float.floatToIntBits(vector[i] * scale);
+            int offset = FEATURE_HEADER_SIZE + i * 4;
+            data[offset] = (byte) bits;
+            data[offset + 1] = (byte) (bits >> 8);
+            data[offset + 2] = (byte) (bits >> 16);
+            data[offset + 3] = (byte) (bits >> 24);
+        }
+        return new FaceFeature(data);
+    }
+
+    private long jittered(long nanos) {
+        return (long) (nanos * (1 - jitter + 2 * jitter * random.nextFloat()));
+    }
+
+    /**
+     * 模拟引擎占用CPU，短耗时使用park避免sleep的精度问题
+     */
+    static void busyWait(long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    public static final class Builder {
+        private long detectMicros = 15_000;
+        private long extractMicros = 80_000;
+        private float jitter = 0.2f;
+        private float detectErrorRate;
+        private float extractErrorRate;
+        private int framesPerTrack = 60;
+        private long seed = 1;
+
+        public Builder() {
+        }
+
+        public Builder detectMicros(long val) {
+            detectMicros = val;
+            return this;
+        }
+
+        public Builder extractMicros(long val) {
+            extractMicros = val;
+            return this;
+        }
+
+        public Builder jitter(float val) {
+            jitter = val;
+            return this;
+        }
+
+        public Builder detectErrorRate(float val) {
+            detectErrorRate = val;
+            return this;
+        }
+
+        public Builder extractErrorRate(float val) {
+            extractErrorRate = val;
+            return this;
+        }
+
+        public Builder framesPerTrack(int val) {
+            framesPerTrack = val;
+            return this;
+        }
+
+        public Builder seed(long val) {
+            seed = val;
+            return this;
+        }
+
+        public FakeFaceEngine build() {
+            return new FakeFaceEngine(this);
+        }
+    }
+}
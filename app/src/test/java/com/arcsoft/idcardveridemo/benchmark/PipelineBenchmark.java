@@ -0,0 +1,249 @@
+package com.arcsoft.idcardveridemo.benchmark;
+
+import android.support.annotation.Nullable;
+
+import com.arcsoft.face.ErrorInfo;
+import com.arcsoft.face.FaceEngine;
+import com.arcsoft.face.FaceFeature;
+import com.arcsoft.face.FaceInfo;
+import com.arcsoft.face.LivenessInfo;
+import com.arcsoft.idcardveridemo.camera.Frame;
+import com.arcsoft.idcardveridemo.draw.face.EnginePool;
+import com.arcsoft.idcardveridemo.draw.face.FaceDetectHelper;
+import com.arcsoft.idcardveridemo.draw.face.FaceDetectListener;
+import com.arcsoft.idcardveridemo.draw.face.FaceHelper;
+import com.arcsoft.idcardveridemo.draw.face.FaceListener;
+import com.arcsoft.idcardveridemo.draw.face.RequestFeatureStatus;
+import com.arcsoft.idcardveridemo.draw.face.TrackRegistry;
+import com.arcsoft.idcardveridemo.metrics.LatencyHistogram;
+import com.arcsoft.idcardveridemo.verify.MultiFrameDecider;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 主机端流水线基准测试，使用{@link FakeFaceEngine}驱动 检测 -> 特征提取 -> 比对 -> 多帧决策 流程，
+ * 用于在上线前评估队列大小、引擎数等参数的调整效果。
+ * <p>
+ * 默认跳过，运行方式：
+ * ./gradlew :app:testDebugUnitTest --tests '*PipelineBenchmark' -Dbenchmark.enabled=true [-Dbenchmark.frames=/path/to/nv21]
+ * 帧率、引擎数、队列大小、各环节耗时及错误率均可通过benchmark.*系统属性调整，见下方字段定义
+ */
+public class PipelineBenchmark {
+    private static final int DEFAULT_WIDTH = 640;
+    private static final int DEFAULT_HEIGHT = 480;
+    private static final int DEFAULT_FRAME_COUNT = 30;
+    /**
+     * FaceHelper中的队列已满错误码
+     */
+    private static final int ERROR_BUSY = -1;
+
+    private final long durationMs = property("benchmark.durationMs", 20_000);
+    private final long fps = property("benchmark.fps", 30);
+    private final int frEngineCount = (int) property("benchmark.frEngines", 2);
+    private final int frQueueSize = (int) property("benchmark.frQueueSize", 5);
+    private final long frMaxFrameAge = property("benchmark.frMaxFrameAge", 300);
+    private final long detectMicros = property("benchmark.detectMicros", 15_000);
+    private final long extractMicros = property("benchmark.extractMicros", 80_000);
+    private final long compareMicros = property("benchmark.compareMicros", 500);
+    private final int framesPerTrack = (int) property("benchmark.framesPerTrack", 60);
+    private final float detectErrorRate = property("benchmark.detectErrorRate", 0f);
+    private final float extractErrorRate = property("benchmark.extractErrorRate", 0.02f);
+    /**
+     * 人证一致的人所占比例
+     */
+    private final float genuineRate = property("benchmark.genuineRate", 0.8f);
+
+    private final TrackRegistry trackRegistry = new TrackRegistry.Builder().build();
+    /**
+     * 每个trackId首次被检测到的时间，单位纳秒
+     */
+    private final ConcurrentHashMap<Integer, Long> firstSeenTimes = new ConcurrentHashMap<>();
+    private final MultiFrameDecider multiFrameDecider = new MultiFrameDecider.Builder().build();
+    private final LatencyHistogram decisionLatency = new LatencyHistogram();
+    private final LatencyHistogram frLatency = new LatencyHistogram();
+
+    private final AtomicLong requestedCount = new AtomicLong();
+    private final AtomicLong extractedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong canceledCount = new AtomicLong();
+    private final AtomicLong passCount = new AtomicLong();
+    private final AtomicLong failCount = new AtomicLong();
+
+    private volatile FaceHelper faceHelper;
+
+    @Test
+    public void runPipeline() throws Exception {
+        Assume.assumeTrue("benchmark disabled, run with -Dbenchmark.enabled=true", Boolean.getBoolean("benchmark.enabled"));
+        String frameDir = System.getProperty("benchmark.frames");
+        RecordedFrameSource frameSource = RecordedFrameSource.load(frameDir == null ? null : new File(frameDir),
+                DEFAULT_WIDTH, DEFAULT_HEIGHT, DEFAULT_FRAME_COUNT);
+
+        FakeFaceEngine detector = new FakeFaceEngine.Builder()
+                .detectMicros(detectMicros)
+                .detectErrorRate(detectErrorRate)
+                .framesPerTrack(framesPerTrack)
+                .build();
+        List<FakeFaceEngine> extractors = new ArrayList<>();
+        for (int i = 0; i < frEngineCount; i++) {
+            extractors.add(new FakeFaceEngine.Builder()
+                    .extractMicros(extractMicros)
+                    .extractErrorRate(extractErrorRate)
+                    .seed(i + 2)
+                    .build());
+        }
+        EnginePool<FakeFaceEngine> frEnginePool = new EnginePool<>(extractors);
+        faceHelper = new FaceHelper.Builder()
+                .frEnginePool(frEnginePool)
+                .faceListener(faceListener)
+                .frQueueSize(frQueueSize)
+                .frMaxFrameAge(frMaxFrameAge)
+                .trackRegistry(trackRegistry)
+                .build();
+        FaceDetectHelper faceDetectHelper = new FaceDetectHelper.Builder()
+                .faceDetector(detector)
+                .faceDetectListener(faceDetectListener)
+                .build();
+        faceDetectHelper.start();
+
+        //按固定帧率送入帧，模拟相机预览
+        long frameInterval = TimeUnit.SECONDS.toNanos(1) / fps;
+        long startTime = System.nanoTime();
+        long endTime = startTime + TimeUnit.MILLISECONDS.toNanos(durationMs);
+        long nextFrameTime = startTime;
+        while (nextFrameTime < endTime) {
+            FakeFaceEngine.busyWait(nextFrameTime - System.nanoTime());
+            //与CameraHelper一致：回调期间持有一次引用，送入检测后释放
+            Frame frame = Frame.wrap(frameSource.next(), frameSource.getWidth(), frameSource.getHeight(), FaceEngine.CP_PAF_NV21);
+            faceDetectHelper.offer(frame);
+            frame.release();
+            nextFrameTime += frameInterval;
+        }
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        faceDetectHelper.release();
+        //等待已排队的特征提取完成
+        long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((faceHelper.getQueueDepth(FaceHelper.Priority.LOW) > 0 || frEnginePool.getInUseCount() > 0)
+                && System.nanoTime() < drainDeadline) {
+            Thread.sleep(10);
+        }
+
+        LatencyHistogram.Snapshot decision = decisionLatency.snapshot();
+        System.out.println("==== PipelineBenchmark ====");
+        System.out.println("config: frames=" + frameSource.size() + " " + frameSource.getWidth() + "x" + frameSource.getHeight()
+                + ", fps=" + fps + ", frEngines=" + frEngineCount + ", frQueueSize=" + frQueueSize
+                + ", detect=" + detectMicros + "us, extract=" + extractMicros + "us, compare=" + compareMicros + "us");
+        System.out.println(String.format("frames: offered=%d, detected=%d, dropped=%d, sustained=%.1f fps",
+                faceDetectHelper.getOfferedFrameCount(), faceDetectHelper.getDetectedFrameCount(),
+                faceDetectHelper.getDroppedFrameCount(), faceDetectHelper.getDetectedFrameCount() / seconds));
+        System.out.println(String.format("extract: requested=%d, succeeded=%d (%.1f/s), failed=%d, rejected=%d, canceled=%d",
+                requestedCount.get(), extractedCount.get(), extractedCount.get() / seconds,
+                failedCount.get(), rejectedCount.get(), canceledCount.get()));
+        System.out.println("fr latency: " + frLatency.snapshot());
+        System.out.println("fr low lane: " + faceHelper.getLaneStats(FaceHelper.Priority.LOW));
+        System.out.println("fr engine pool: " + frEnginePool);
+        System.out.println("track registry: " + trackRegistry);
+        System.out.println("decisions: pass=" + passCount.get() + ", fail=" + failCount.get() + ", latency: " + decision);
+        faceHelper.release();
+
+        assertTrue("no frame detected", faceDetectHelper.getDetectedFrameCount() > 0);
+    }
+
+    private final FaceDetectListener faceDetectListener = new FaceDetectListener() {
+        @Override
+        public void onFaceDetected(Frame frame, List<FaceInfo> faceInfoList, int errorCode) {
+            FaceHelper helper = faceHelper;
+            if (errorCode != ErrorInfo.MOK || helper == null) {
+                return;
+            }
+            helper.refreshTrackId(faceInfoList);
+            if (faceInfoList.isEmpty()) {
+                return;
+            }
+            //与MainActivity一致：每个trackId同一时刻只有一个请求，失败或需要更多帧时重新请求
+            FaceInfo faceInfo = faceInfoList.get(0);
+            int trackId = faceInfo.getFaceId();
+            firstSeenTimes.putIfAbsent(trackId, System.nanoTime());
+            int status = trackRegistry.getFeatureStatus(trackId);
+            if (status == RequestFeatureStatus.NONE || status == RequestFeatureStatus.FAILED || status == RequestFeatureStatus.TO_RETRY) {
+                trackRegistry.setFeatureStatus(trackId, RequestFeatureStatus.SEARCHING);
+                requestedCount.incrementAndGet();
+                helper.requestFaceFeature(frame, faceInfo, trackId);
+            }
+        }
+
+        @Override
+        public void onFrameProcessed(long cost) {
+        }
+    };
+
+    private final FaceListener faceListener = new FaceListener() {
+        @Override
+        public void onFail(Exception e) {
+        }
+
+        @Override
+        public void onFaceFeatureInfoGet(@Nullable FaceFeature faceFeature, Integer requestId, Integer errorCode, long frTime) {
+            if (errorCode != ErrorInfo.MOK) {
+                if (errorCode == FaceHelper.ERROR_CANCELED) {
+                    canceledCount.incrementAndGet();
+                } else if (errorCode == ERROR_BUSY) {
+                    rejectedCount.incrementAndGet();
+                } else {
+                    failedCount.incrementAndGet();
+                }
+                trackRegistry.setFeatureStatus(requestId, RequestFeatureStatus.FAILED);
+                return;
+            }
+            extractedCount.incrementAndGet();
+            frLatency.record(TimeUnit.MILLISECONDS.toMicros(frTime));
+            FakeFaceEngine.busyWait(TimeUnit.MICROSECONDS.toNanos(compareMicros));
+            MultiFrameDecider.Decision decision = multiFrameDecider.offer(requestId, score(requestId));
+            if (decision == MultiFrameDecider.Decision.PENDING) {
+                trackRegistry.setFeatureStatus(requestId, RequestFeatureStatus.TO_RETRY);
+                return;
+            }
+            trackRegistry.setFeatureStatus(requestId, RequestFeatureStatus.SUCCEED);
+            multiFrameDecider.reset();
+            (decision == MultiFrameDecider.Decision.PASS ? passCount : failCount).incrementAndGet();
+            Long firstSeenTime = firstSeenTimes.get(requestId);
+            if (firstSeenTime != null) {
+                decisionLatency.recordNanos(System.nanoTime() - firstSeenTime);
+            }
+        }
+
+        @Override
+        public void onFaceLivenessInfoGet(@Nullable LivenessInfo livenessInfo, Integer requestId, Integer errorCode) {
+        }
+    };
+
+    /**
+     * 模拟比对分数，人证一致时分数集中在0.85附近，否则集中在0.3附近
+     */
+    private float score(int trackId) {
+        boolean genuine = new Random(trackId).nextFloat() < genuineRate;
+        float noise = (float) (ThreadLocalRandom.current().nextGaussian() * 0.05);
+        return genuine ? 0.85f + noise : 0.3f + noise * 2;
+    }
+
+    private static long property(String key, long defaultValue) {
+        return Long.getLong(key, defaultValue);
+    }
+
+    private static float property(String key, float defaultValue) {
+        String value = System.getProperty(key);
+        return value == null ? defaultValue : Float.parseFloat(value);
+    }
+}
@@ -0,0 +1,97 @@
+package com.arcsoft.idcardveridemo.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 录制的NV21帧数据，文件名格式为"宽x高_序号.nv21"，按文件名顺序循环输出。
+ * 未指定目录或目录中没有帧文件时生成随机噪声帧代替
+ */
+public class RecordedFrameSource {
+    private static final Pattern FILE_NAME_PATTERN = Pattern.compile("(\\d+)x(\\d+)_.*\\.nv21");
+
+    private final List<byte[]> frames = new ArrayList<>();
+    private final int width;
+    private final int height;
+    private int index;
+
+    private RecordedFrameSource(List<byte[]> frames, int width, int height) {
+        this.frames.addAll(frames);
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * 加载目录中的帧文件，只保留与第一个文件尺寸一致的帧
+     *
+     * @param dir           帧文件目录，可为空
+     * @param defaultWidth  生成帧的宽度
+     * @param defaultHeight 生成帧的高度
+     * @param defaultCount  生成帧的数量
+     */
+    public static RecordedFrameSource load(File dir, int defaultWidth, int defaultHeight, int defaultCount) throws IOException {
+        File[] files = dir == null ? null : dir.listFiles((d, name) -> FILE_NAME_PATTERN.matcher(name).matches());
+        if (files != null && files.length > 0) {
+            Arrays.sort(files);
+            List<byte[]> frames = new ArrayList<>();
+            int width = 0;
+            int height = 0;
+            for (File file : files) {
+                Matcher matcher = FILE_NAME_PATTERN.matcher(file.getName());
+                if (!matcher.matches()) {
+                    continue;
+                }
+                int w = Integer.parseInt(matcher.group(1));
+                int h = Integer.parseInt(matcher.group(2));
+                if (frames.isEmpty()) {
+                    width = w;
+                    height = h;
+                } else if (w != width || h != height) {
+                    continue;
+                }
+                byte[] frame = new byte[w * h * 3 / 2];
+                try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                    raf.readFully(frame);
+                }
+                frames.add(frame);
+            }
+            return new RecordedFrameSource(frames, width, height);
+        }
+        Random random = new Random(0);
+        List<byte[]> frames = new ArrayList<>();
+        for (int i = 0; i < defaultCount; i++) {
+            byte[] frame = new byte[defaultWidth * defaultHeight * 3 / 2];
+            random.nextBytes(frame);
+            frames.add(frame);
+        }
+        return new RecordedFrameSource(frames, defaultWidth, defaultHeight);
+    }
+
+    /**
+     * @return 下一帧，帧数据只读，多次输出同一帧时为同一个数组
+     */
+    public byte[] next() {
+        byte[] frame = frames.get(index);
+        index = (index + 1) % frames.size();
+        return frame;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int size() {
+        return frames.size();
+    }
+}
@@ -0,0 +1,123 @@
+package com.arcsoft.idcardveridemo.draw;
+
+import android.hardware.Camera;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * 验证{@link DrawHelper#mapRects(int[], int[], int)}预计算的变换与
+ * {@link DrawHelper#adjustRect(int[], int, int, int, int, int, int, boolean, boolean, boolean)}结果一致
+ */
+public class DrawHelperTest {
+    private static final int[] ORIENTATIONS = {0, 90, 180, 270};
+    private static final int[] CAMERA_IDS = {Camera.CameraInfo.CAMERA_FACING_BACK, Camera.CameraInfo.CAMERA_FACING_FRONT};
+    private static final int[][] PREVIEW_SIZES = {{640, 480}, {1280, 720}, {1920, 1080}};
+    private static final int[][] CANVAS_SIZES = {{1080, 1920}, {1920, 1080}, {480, 480}, {333, 777}};
+    private static final int RECT_COUNT = 64;
+
+    @Test
+    public void mapRects_matchesAdjustRect() {
+        Random random = new Random(0);
+        for (int[] previewSize : PREVIEW_SIZES) {
+            for (int[] canvasSize : CANVAS_SIZES) {
+                for (int orientation : ORIENTATIONS) {
+                    for (int cameraId : CAMERA_IDS) {
+                        for (int mirrorFlags = 0; mirrorFlags < 8; mirrorFlags++) {
+                            boolean isMirror = (mirrorFlags & 1) != 0;
+                            boolean mirrorHorizontal = (mirrorFlags & 2) != 0;
+                            boolean mirrorVertical = (mirrorFlags & 4) != 0;
+                            DrawHelper drawHelper = new DrawHelper(previewSize[0], previewSize[1], canvasSize[0],
+                                    canvasSize[1], orientation, cameraId, isMirror, mirrorHorizontal, mirrorVertical);
+                            assertEquivalent(drawHelper, randomRects(random, previewSize[0], previewSize[1]));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void mapRects_unknownOrientation_matchesAdjustRect() {
+        Random random = new Random(1);
+        for (int mirrorFlags = 0; mirrorFlags < 8; mirrorFlags++) {
+            DrawHelper drawHelper = new DrawHelper(640, 480, 1080, 1920, 45, Camera.CameraInfo.CAMERA_FACING_FRONT,
+                    (mirrorFlags & 1) != 0, (mirrorFlags & 2) != 0, (mirrorFlags & 4) != 0);
+            assertEquivalent(drawHelper, randomRects(random, 640, 480));
+        }
+    }
+
+    @Test
+    public void mapRects_rebuildsTransformInSetters() {
+        Random random = new Random(2);
+        DrawHelper drawHelper = new DrawHelper(640, 480, 1080, 1920, 90, Camera.CameraInfo.CAMERA_FACING_BACK,
+                false, false, false);
+        drawHelper.setPreviewWidth(1280);
+        drawHelper.setPreviewHeight(720);
+        drawHelper.setCanvasWidth(720);
+        drawHelper.setCanvasHeight(1280);
+        drawHelper.setCameraDisplayOrientation(270);
+        drawHelper.setCameraId(Camera.CameraInfo.CAMERA_FACING_FRONT);
+        drawHelper.setMirror(true);
+        drawHelper.setMirrorHorizontal(false);
+        drawHelper.setMirrorVertical(true);
+        assertEquivalent(drawHelper, randomRects(random, 1280, 720));
+    }
+
+    @Test
+    public void mapRects_inPlace() {
+        DrawHelper drawHelper = new DrawHelper(640, 480, 1080, 1920, 90, Camera.CameraInfo.CAMERA_FACING_FRONT,
+                true, false, false);
+        int[] rects = randomRects(new Random(3), 640, 480);
+        int[] expected = expected(drawHelper, rects);
+        drawHelper.mapRects(rects, rects, RECT_COUNT);
+        assertArrayEquals(expected, rects);
+    }
+
+    private static void assertEquivalent(DrawHelper drawHelper, int[] rects) {
+        int[] actual = new int[rects.length];
+        drawHelper.mapRects(rects, actual, RECT_COUNT);
+        assertArrayEquals(describe(drawHelper), expected(drawHelper, rects), actual);
+    }
+
+    private static int[] expected(DrawHelper drawHelper, int[] rects) {
+        int[] expected = new int[rects.length];
+        int[] rect = new int[4];
+        for (int i = 0; i < RECT_COUNT; i++) {
+            System.arraycopy(rects, i * 4, rect, 0, 4);
+            DrawHelper.adjustRect(rect, drawHelper.getPreviewWidth(), drawHelper.getPreviewHeight(),
+                    drawHelper.getCanvasWidth(), drawHelper.getCanvasHeight(), drawHelper.getCameraDisplayOrientation(),
+                    drawHelper.getCameraId(), drawHelper.isMirror(), drawHelper.isMirrorHorizontal(),
+                    drawHelper.isMirrorVertical());
+            System.arraycopy(rect, 0, expected, i * 4, 4);
+        }
+        return expected;
+    }
+
+    /**
+     * 生成随机人脸框，包含部分超出预览范围的框
+     */
+    private static int[] randomRects(Random random, int previewWidth, int previewHeight) {
+        int[] rects = new int[RECT_COUNT * 4];
+        for (int i = 0; i < RECT_COUNT; i++) {
+            int left = random.nextInt(previewWidth + 100) - 50;
+            int top = random.nextInt(previewHeight + 100) - 50;
+            rects[i * 4] = left;
+            rects[i * 4 + 1] = top;
+            rects[i * 4 + 2] = left + random.nextInt(previewWidth / 2) + 1;
+            rects[i * 4 + 3] = top + random.nextInt(previewHeight / 2) + 1;
+        }
+        return rects;
+    }
+
+    private static String describe(DrawHelper drawHelper) {
+        return "preview=" + drawHelper.getPreviewWidth() + "x" + drawHelper.getPreviewHeight()
+                + ", canvas=" + drawHelper.getCanvasWidth() + "x" + drawHelper.getCanvasHeight()
+                + ", orientation=" + drawHelper.getCameraDisplayOrientation()
+                + ", cameraId=" + drawHelper.getCameraId()
+                + ", mirror=" + drawHelper.isMirror() + "/" + drawHelper.isMirrorHorizontal() + "/" + drawHelper.isMirrorVertical();
+    }
+}
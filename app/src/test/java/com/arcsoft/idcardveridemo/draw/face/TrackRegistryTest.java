@@ -0,0 +1,154 @@
+package com.arcsoft.idcardveridemo.draw.face;
+
+import com.arcsoft.face.FaceFeature;
+import com.arcsoft.face.LivenessInfo;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 验证{@link TrackRegistry}的查找、扩容、淘汰及删除后移与{@link HashMap}结果一致
+ */
+public class TrackRegistryTest {
+    private static final long TRACK_TTL = 1000;
+    private static final long TRACK_TTL_NANOS = TimeUnit.MILLISECONDS.toNanos(TRACK_TTL);
+
+    @Test
+    public void absentTrack_returnsDefaults() {
+        TrackRegistry registry = new TrackRegistry.Builder().build();
+        assertEquals(RequestFeatureStatus.NONE, registry.getFeatureStatus(1));
+        assertEquals(RequestFeatureStatus.NONE, registry.getLivenessStatus(1));
+        assertEquals(LivenessInfo.UNKNOWN, registry.getLiveness(1));
+        assertEquals(0f, registry.getQualityScore(1), 0f);
+        assertNull(registry.getName(1));
+        assertNull(registry.getFreshFeature(1));
+        assertEquals(-1, registry.getLastSeenTime(1));
+        assertFalse(registry.contains(1));
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void setters_keepOtherFields() {
+        TrackRegistry registry = new TrackRegistry.Builder().build();
+        FaceFeature feature = new FaceFeature(new byte[FaceFeature.FEATURE_SIZE]);
+        registry.setFeatureStatus(7, RequestFeatureStatus.SEARCHING);
+        registry.setLivenessStatus(7, RequestFeatureStatus.SUCCEED);
+        registry.setLiveness(7, LivenessInfo.ALIVE);
+        registry.setQualityScore(7, 0.75f);
+        registry.setName(7, "name");
+        registry.putFeature(7, feature);
+        registry.setFeatureStatus(7, RequestFeatureStatus.SUCCEED);
+        assertEquals(1, registry.size());
+        assertEquals(RequestFeatureStatus.SUCCEED, registry.getFeatureStatus(7));
+        assertEquals(RequestFeatureStatus.SUCCEED, registry.getLivenessStatus(7));
+        assertEquals(LivenessInfo.ALIVE, registry.getLiveness(7));
+        assertEquals(0.75f, registry.getQualityScore(7), 0f);
+        assertEquals("name", registry.getName(7));
+        assertSame(feature, registry.getFreshFeature(7));
+        registry.removeFeature(7);
+        assertNull(registry.getFreshFeature(7));
+        assertEquals(RequestFeatureStatus.SUCCEED, registry.getFeatureStatus(7));
+    }
+
+    @Test
+    public void feature_expiresAfterTtl() {
+        TrackRegistry registry = new TrackRegistry.Builder().trackTtl(TRACK_TTL).featureTtl(200).build();
+        FaceFeature feature = new FaceFeature(new byte[FaceFeature.FEATURE_SIZE]);
+        long now = System.nanoTime();
+        registry.putFeature(3, feature);
+        assertNotNull(registry.getFreshFeature(3, now));
+        assertNull(registry.getFreshFeature(3, now + TimeUnit.MILLISECONDS.toNanos(500)));
+        //淘汰检查同时丢弃过期特征，人脸本身仍在有效期内
+        registry.evictExpired(now + TimeUnit.MILLISECONDS.toNanos(500));
+        assertTrue(registry.contains(3));
+        assertNull(registry.getFreshFeature(3, now));
+    }
+
+    @Test
+    public void grow_keepsAllTracks() {
+        TrackRegistry registry = new TrackRegistry.Builder().trackTtl(TRACK_TTL).initialCapacity(1).build();
+        long now = System.nanoTime();
+        int count = 10000;
+        for (int i = 0; i < count; i++) {
+            registry.refresh(new int[]{i}, now);
+            registry.setName(i, "name" + i);
+            registry.setQualityScore(i, i);
+        }
+        assertEquals(count, registry.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals("name" + i, registry.getName(i));
+            assertEquals(i, registry.getQualityScore(i), 0f);
+        }
+        assertFalse(registry.contains(count));
+    }
+
+    @Test
+    public void evict_removesOnlyExpiredTracks() {
+        TrackRegistry registry = new TrackRegistry.Builder().trackTtl(TRACK_TTL).build();
+        long now = System.nanoTime();
+        registry.refresh(new int[]{1, 2, 3}, now);
+        registry.refresh(new int[]{2}, now + TRACK_TTL_NANOS / 2);
+        assertEquals(2, registry.evictExpired(now + TRACK_TTL_NANOS + 1));
+        assertFalse(registry.contains(1));
+        assertTrue(registry.contains(2));
+        assertFalse(registry.contains(3));
+        assertEquals(1, registry.size());
+        assertEquals(2, registry.getEvictedCount());
+    }
+
+    @Test
+    public void randomRefreshAndEvict_matchesHashMap() {
+        Random random = new Random(0);
+        TrackRegistry registry = new TrackRegistry.Builder().trackTtl(TRACK_TTL).build();
+        Map<Integer, Long> expected = new HashMap<>();
+        long now = System.nanoTime();
+        //trackId取值范围较小，使探测链频繁相互重叠，覆盖删除后移的各种情况
+        int idRange = 200;
+        for (int step = 0; step < 5000; step++) {
+            now += TimeUnit.MILLISECONDS.toNanos(random.nextInt(100));
+            int[] trackIds = new int[random.nextInt(8)];
+            for (int i = 0; i < trackIds.length; i++) {
+                trackIds[i] = random.nextInt(idRange) - idRange / 2;
+            }
+            registry.refresh(trackIds, now);
+            for (int trackId : trackIds) {
+                registry.setName(trackId, "name" + trackId);
+                expected.put(trackId, now);
+            }
+            if (random.nextInt(10) == 0) {
+                registry.evictExpired(now);
+                Iterator<Map.Entry<Integer, Long>> iterator = expected.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    if (now - iterator.next().getValue() > TRACK_TTL_NANOS) {
+                        iterator.remove();
+                    }
+                }
+                //删除后移可能把表尾的人脸移到已检查过的位置，留到下次检查淘汰，因此只比较未过期的人脸
+                for (int trackId = -idRange / 2; trackId < idRange / 2; trackId++) {
+                    if (expected.containsKey(trackId)) {
+                        assertTrue("missing " + trackId, registry.contains(trackId));
+                        assertEquals("name" + trackId, registry.getName(trackId));
+                        assertEquals((long) expected.get(trackId), registry.getLastSeenTime(trackId));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void reservedTrackId_isRejected() {
+        new TrackRegistry.Builder().build().setName(Integer.MIN_VALUE, "name");
+    }
+}
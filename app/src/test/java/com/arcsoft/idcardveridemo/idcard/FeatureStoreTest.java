@@ -0,0 +1,210 @@
+package com.arcsoft.idcardveridemo.idcard;
+
+import com.arcsoft.face.FaceFeature;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 验证{@link FeatureStore}的持久化、淘汰、压缩及损坏检测
+ */
+public class FeatureStoreTest {
+    private static final int FEATURE_SIZE = 1032;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void putAndGet_survivesReopen() throws IOException {
+        File file = temporaryFolder.newFile();
+        FeatureStore store = new FeatureStore.Builder().file(file).build();
+        assertTrue(store.put("11010119900101123x", feature(1)));
+        assertTrue(store.put("110101199001011234", feature(2)));
+        store.put("110101199001011234", feature(3));
+        store.close();
+
+        store = new FeatureStore.Builder().file(file).build();
+        assertEquals(2, store.size());
+        //身份证号大小写不敏感
+        assertArrayEquals(feature(1).getFeatureData(), store.get("11010119900101123X").getFeatureData());
+        assertArrayEquals(feature(3).getFeatureData(), store.get("110101199001011234").getFeatureData());
+        assertNull(store.get("110101199001019999"));
+        store.close();
+    }
+
+    @Test
+    public void putAll_survivesReopen() throws IOException {
+        File file = temporaryFolder.newFile();
+        FeatureStore store = new FeatureStore.Builder().file(file).build();
+        store.put("1", feature(0));
+        Map<String, FaceFeature> features = new LinkedHashMap<>();
+        for (int i = 1; i <= 10; i++) {
+            features.put(String.valueOf(i), feature(i));
+        }
+        assertEquals(10, store.putAll(features));
+        store.close();
+
+        store = new FeatureStore.Builder().file(file).build();
+        assertEquals(10, store.size());
+        for (int i = 1; i <= 10; i++) {
+            assertArrayEquals(feature(i).getFeatureData(), store.get(String.valueOf(i)).getFeatureData());
+        }
+        store.close();
+    }
+
+    @Test
+    public void remove_survivesReopen() throws IOException {
+        File file = temporaryFolder.newFile();
+        FeatureStore store = new FeatureStore.Builder().file(file).build();
+        store.put("1", feature(1));
+        store.put("2", feature(2));
+        store.remove("1");
+        store.close();
+
+        store = new FeatureStore.Builder().file(file).build();
+        assertNull(store.get("1"));
+        assertArrayEquals(feature(2).getFeatureData(), store.get("2").getFeatureData());
+        store.close();
+    }
+
+    @Test
+    public void maxEntries_evictsLeastRecentlyUsed() throws IOException {
+        File file = temporaryFolder.newFile();
+        FeatureStore store = new FeatureStore.Builder().file(file).maxEntries(3).build();
+        store.put("1", feature(1));
+        store.put("2", feature(2));
+        store.put("3", feature(3));
+        store.get("1");
+        store.put("4", feature(4));
+        assertEquals(3, store.size());
+        assertNull(store.get("2"));
+        assertArrayEquals(feature(1).getFeatureData(), store.get("1").getFeatureData());
+        store.close();
+    }
+
+    @Test
+    public void notEvictable_rejectsNewFeaturesWhenFull() throws IOException {
+        File file = temporaryFolder.newFile();
+        FeatureStore store = new FeatureStore.Builder().file(file).maxEntries(3).maxFileSize(2 * FEATURE_SIZE).evictable(false).build();
+        assertTrue(store.put("1", feature(1)));
+        assertTrue(store.put("2", feature(2)));
+        Map<String, FaceFeature> features = new LinkedHashMap<>();
+        features.put("2", feature(20));
+        features.put("3", feature(3));
+        features.put("4", feature(4));
+        //整批写入会超过数量上限，全部拒绝
+        assertEquals(0, store.putAll(features));
+        features.remove("4");
+        assertEquals(2, store.putAll(features));
+        assertFalse(store.put("4", feature(4)));
+        //已存在的特征仍可覆盖
+        assertTrue(store.put("1", feature(10)));
+        assertEquals(3, store.size());
+        store.close();
+
+        store = new FeatureStore.Builder().file(file).maxEntries(3).maxFileSize(2 * FEATURE_SIZE).evictable(false).build();
+        assertEquals(3, store.size());
+        assertArrayEquals(feature(10).getFeatureData(), store.get("1").getFeatureData());
+        assertArrayEquals(feature(20).getFeatureData(), store.get("2").getFeatureData());
+        assertArrayEquals(feature(3).getFeatureData(), store.get("3").getFeatureData());
+        store.close();
+    }
+
+    @Test
+    public void forEach_visitsAllFeaturesWithoutIdNumber() throws IOException {
+        File file = temporaryFolder.newFile();
+        FeatureStore store = new FeatureStore.Builder().file(file).build();
+        store.put("110101199001011234", feature(1));
+        store.put("110101199001015678", feature(2));
+        store.remove("110101199001015678");
+        store.put("110101199001019999", feature(3));
+        Map<String, FaceFeature> visited = new LinkedHashMap<>();
+        assertEquals(2, store.forEach(visited::put));
+        assertEquals(2, visited.size());
+        for (String displayId : visited.keySet()) {
+            assertEquals(16, displayId.length());
+            assertFalse(displayId.contains("1101011990"));
+        }
+        store.close();
+    }
+
+    @Test
+    public void maxFileSize_compactsAndKeepsRecentFeatures() throws IOException {
+        File file = temporaryFolder.newFile();
+        long maxFileSize = 20 * FEATURE_SIZE;
+        FeatureStore store = new FeatureStore.Builder().file(file).maxFileSize(maxFileSize).build();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(store.put(String.valueOf(i), feature(i)));
+            assertTrue(store.getFileSize() <= maxFileSize);
+        }
+        assertArrayEquals(feature(99).getFeatureData(), store.get("99").getFeatureData());
+        assertNull(store.get("0"));
+        int size = store.size();
+        store.close();
+
+        store = new FeatureStore.Builder().file(file).maxFileSize(maxFileSize).build();
+        assertEquals(size, store.size());
+        assertArrayEquals(feature(99).getFeatureData(), store.get("99").getFeatureData());
+        store.close();
+    }
+
+    @Test
+    public void corruptedTail_isDropped() throws IOException {
+        File file = temporaryFolder.newFile();
+        FeatureStore store = new FeatureStore.Builder().file(file).build();
+        store.put("1", feature(1));
+        store.put("2", feature(2));
+        long fileSize = store.getFileSize();
+        store.close();
+        //破坏最后一条记录的特征数据
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.seek(fileSize - 10);
+            randomAccessFile.write(0x5A);
+        }
+
+        store = new FeatureStore.Builder().file(file).build();
+        assertArrayEquals(feature(1).getFeatureData(), store.get("1").getFeatureData());
+        assertNull(store.get("2"));
+        assertTrue(store.getFileSize() < fileSize);
+        //截断后可继续追加
+        store.put("2", feature(2));
+        store.close();
+        store = new FeatureStore.Builder().file(file).build();
+        assertArrayEquals(feature(2).getFeatureData(), store.get("2").getFeatureData());
+        store.close();
+    }
+
+    @Test
+    public void featureVersionMismatch_discardsFeatures() throws IOException {
+        File file = temporaryFolder.newFile();
+        FeatureStore store = new FeatureStore.Builder().file(file).featureVersion(1).build();
+        store.put("1", feature(1));
+        store.close();
+
+        store = new FeatureStore.Builder().file(file).featureVersion(2).build();
+        assertNull(store.get("1"));
+        assertEquals(0, store.size());
+        store.close();
+    }
+
+    private static FaceFeature feature(int seed) {
+        byte[] data = new byte[FEATURE_SIZE];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (seed * 31 + i);
+        }
+        return new FaceFeature(data);
+    }
+}
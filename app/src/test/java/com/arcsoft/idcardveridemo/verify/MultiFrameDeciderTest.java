@@ -0,0 +1,89 @@
+package com.arcsoft.idcardveridemo.verify;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 验证{@link MultiFrameDecider}的提前通过、提前拒绝、多帧决策及重置
+ */
+public class MultiFrameDeciderTest {
+
+    private static MultiFrameDecider newDecider() {
+        return new MultiFrameDecider.Builder()
+                .maxFrames(3)
+                .acceptScore(0.9f)
+                .threshold(0.82f)
+                .rejectScore(0.6f)
+                .rejectFrames(2)
+                .build();
+    }
+
+    @Test
+    public void highScore_acceptsImmediately() {
+        MultiFrameDecider decider = newDecider();
+        assertEquals(MultiFrameDecider.Decision.PASS, decider.offer(1, 0.95f));
+        assertEquals(1, decider.getLastDecisionFrames());
+    }
+
+    @Test
+    public void lowScores_rejectEarly() {
+        MultiFrameDecider decider = newDecider();
+        assertEquals(MultiFrameDecider.Decision.PENDING, decider.offer(1, 0.3f));
+        assertEquals(MultiFrameDecider.Decision.FAIL, decider.offer(1, 0.4f));
+        assertEquals(2, decider.getLastDecisionFrames());
+    }
+
+    @Test
+    public void pendingFrames_decideOnBestScoreAtMaxFrames() {
+        MultiFrameDecider decider = newDecider();
+        assertEquals(MultiFrameDecider.Decision.PENDING, decider.offer(1, 0.7f));
+        assertEquals(MultiFrameDecider.Decision.PENDING, decider.offer(1, 0.85f));
+        assertEquals(2, decider.getFrameCount());
+        //第三帧分数低于阈值，但最高分高于阈值
+        assertEquals(MultiFrameDecider.Decision.PASS, decider.offer(1, 0.75f));
+        assertEquals(0.85f, decider.getBestScore(), 0f);
+        assertEquals(3, decider.getLastDecisionFrames());
+
+        decider.reset();
+        assertEquals(MultiFrameDecider.Decision.PENDING, decider.offer(2, 0.7f));
+        assertEquals(MultiFrameDecider.Decision.PENDING, decider.offer(2, 0.8f));
+        assertEquals(MultiFrameDecider.Decision.FAIL, decider.offer(2, 0.5f));
+    }
+
+    @Test
+    public void reset_clearsFramesAndLowScores() {
+        MultiFrameDecider decider = newDecider();
+        assertEquals(MultiFrameDecider.Decision.PENDING, decider.offer(1, 0.3f));
+        decider.reset();
+        assertEquals(0, decider.getFrameCount());
+        assertEquals(0f, decider.getBestScore(), 0f);
+        //重置后之前的低分帧不再计入
+        assertEquals(MultiFrameDecider.Decision.PENDING, decider.offer(1, 0.3f));
+        assertEquals(1, decider.getFrameCount());
+    }
+
+    @Test
+    public void trackChange_restartsCounting() {
+        MultiFrameDecider decider = newDecider();
+        assertEquals(MultiFrameDecider.Decision.PENDING, decider.offer(1, 0.3f));
+        assertEquals(MultiFrameDecider.Decision.PENDING, decider.offer(2, 0.3f));
+        assertEquals(1, decider.getFrameCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builder_rejectsThresholdAboveAcceptScore() {
+        new MultiFrameDecider.Builder().acceptScore(0.8f).threshold(0.85f).rejectScore(0.6f).build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builder_rejectsRejectScoreAboveThreshold() {
+        new MultiFrameDecider.Builder().acceptScore(0.9f).threshold(0.7f).rejectScore(0.75f).build();
+    }
+
+    @Test
+    public void builder_acceptsEqualScores() {
+        MultiFrameDecider decider = new MultiFrameDecider.Builder().acceptScore(0.8f).threshold(0.8f).rejectScore(0.8f).build();
+        assertEquals(MultiFrameDecider.Decision.PASS, decider.offer(1, 0.8f));
+    }
+}
@@ -0,0 +1,64 @@
+package com.arcsoft.idcardveridemo.verify;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 验证{@link VerifySession}多帧比对重试时保留首次进入各状态的时间，会话耗时包含全部重试
+ */
+public class VerifySessionTest {
+    private final VerifySession verifySession = new VerifySession.Builder().build();
+
+    @After
+    public void tearDown() {
+        verifySession.release();
+    }
+
+    @Test
+    public void retry_keepsFirstStateTimes() throws InterruptedException {
+        VerifySession.Snapshot start = verifySession.startSession();
+        assertNotNull(start);
+        long sessionId = start.getSessionId();
+        long cardReadyTime = start.getStateTime(VerifySession.State.CARD_READY);
+        long firstComparingTime = 0;
+        //前几次比对结果待定，回到CARD_READY重新提取
+        for (int i = 0; i < 3; i++) {
+            Thread.sleep(2);
+            assertTrue(verifySession.transition(sessionId, VerifySession.State.CARD_READY, VerifySession.State.LIVE_READY));
+            assertTrue(verifySession.transition(sessionId, VerifySession.State.LIVE_READY, VerifySession.State.COMPARING));
+            if (i == 0) {
+                firstComparingTime = verifySession.getSnapshot().getStateTime(VerifySession.State.COMPARING);
+            }
+            assertTrue(verifySession.transition(sessionId, VerifySession.State.COMPARING, VerifySession.State.CARD_READY));
+        }
+        VerifySession.Snapshot retry = verifySession.getSnapshot();
+        assertEquals(cardReadyTime, retry.getStateTime(VerifySession.State.CARD_READY));
+        assertTrue(retry.getEnterTime() > cardReadyTime);
+
+        Thread.sleep(2);
+        assertTrue(verifySession.transition(sessionId, VerifySession.State.CARD_READY, VerifySession.State.LIVE_READY));
+        assertTrue(verifySession.transition(sessionId, VerifySession.State.LIVE_READY, VerifySession.State.COMPARING));
+        assertTrue(verifySession.transition(sessionId, VerifySession.State.COMPARING, VerifySession.State.SHOWING_RESULT));
+        VerifySession.Snapshot result = verifySession.getSnapshot();
+        assertEquals(cardReadyTime, result.getStateTime(VerifySession.State.CARD_READY));
+        assertEquals(firstComparingTime, result.getStateTime(VerifySession.State.COMPARING));
+        assertEquals(result.getEnterTime(), result.getStateTime(VerifySession.State.SHOWING_RESULT));
+        assertTrue(result.getElapsed(VerifySession.State.CARD_READY, VerifySession.State.SHOWING_RESULT) >= 8);
+    }
+
+    @Test
+    public void newSession_resetsStateTimes() {
+        VerifySession.Snapshot first = verifySession.startSession();
+        assertNotNull(first);
+        assertTrue(verifySession.transition(first.getSessionId(), VerifySession.State.CARD_READY, VerifySession.State.LIVE_READY));
+        VerifySession.Snapshot second = verifySession.startSession();
+        assertNotNull(second);
+        assertEquals(0, second.getStateTime(VerifySession.State.LIVE_READY));
+        assertFalse(verifySession.transition(first.getSessionId(), VerifySession.State.CARD_READY, VerifySession.State.LIVE_READY));
+    }
+}
@@ -0,0 +1,199 @@
+package com.arcsoft.idcardveridemo.verify;
+
+import com.arcsoft.face.FaceFeature;
+import com.arcsoft.face.enums.CompareModel;
+import com.arcsoft.idcardveridemo.benchmark.FakeFaceEngine;
+import com.arcsoft.idcardveridemo.draw.face.EnginePool;
+import com.arcsoft.idcardveridemo.draw.face.FaceFeatureComparator;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 验证{@link WatchlistSearcher}分区并行检索的结果与逐条比对一致
+ */
+public class WatchlistSearcherTest {
+    private static final int WATCHLIST_SIZE = 3000;
+
+    @Test
+    public void search_matchesBruteForce() throws InterruptedException {
+        Random random = new Random(0);
+        List<FaceFeature> features = new ArrayList<>();
+        Watchlist watchlist = new Watchlist(FaceFeature.FEATURE_SIZE, 16);
+        for (int i = 0; i < WATCHLIST_SIZE; i++) {
+            FaceFeature feature = FakeFaceEngine.randomFeature(random);
+            features.add(feature);
+            watchlist.add("id" + i, feature);
+        }
+        //名单中的第42个特征作为探针，必须排在第一位
+        FaceFeature probe = features.get(42);
+        for (int partitions = 1; partitions <= 4; partitions++) {
+            for (int topK : new int[]{1, 5, 20}) {
+                List<WatchlistSearcher.Match> matches = search(watchlist, partitions, topK, 0f, probe);
+                assertEquals(topK, matches.size());
+                assertEquals("id42", matches.get(0).getId());
+                assertEquals(bruteForce(features, probe, topK), scores(matches));
+            }
+        }
+    }
+
+    @Test
+    public void search_appliesMinScore() throws InterruptedException {
+        Random random = new Random(1);
+        Watchlist watchlist = new Watchlist(FaceFeature.FEATURE_SIZE, 16);
+        for (int i = 0; i < WATCHLIST_SIZE; i++) {
+            watchlist.add("id" + i, FakeFaceEngine.randomFeature(random));
+        }
+        FaceFeature probe = FakeFaceEngine.randomFeature(random);
+        assertTrue(search(watchlist, 3, 5, 0.8f, probe).isEmpty());
+
+        watchlist.add("target", probe);
+        List<WatchlistSearcher.Match> matches = search(watchlist, 3, 5, 0.8f, probe);
+        assertEquals(1, matches.size());
+        assertEquals("target", matches.get(0).getId());
+    }
+
+    @Test
+    public void search_afterRelease_runsPartitionsInline() throws InterruptedException {
+        Random random = new Random(3);
+        List<FaceFeature> features = new ArrayList<>();
+        Watchlist watchlist = new Watchlist(FaceFeature.FEATURE_SIZE, 16);
+        for (int i = 0; i < WATCHLIST_SIZE; i++) {
+            FaceFeature feature = FakeFaceEngine.randomFeature(random);
+            features.add(feature);
+            watchlist.add("id" + i, feature);
+        }
+        List<FakeFaceEngine> comparators = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            comparators.add(new FakeFaceEngine.Builder().build());
+        }
+        WatchlistSearcher searcher = new WatchlistSearcher.Builder()
+                .watchlist(watchlist)
+                .comparatorPool(new EnginePool<>(comparators))
+                .topK(5)
+                .build();
+        //区间线程已停止时由检索线程处理所有区间
+        searcher.release();
+        FaceFeature probe = features.get(7);
+        assertEquals(bruteForce(features, probe, 5), scores(searcher.search(probe)));
+    }
+
+    @Test
+    public void interruptedSearch_waitsForPartitionsBeforeUnlock() throws InterruptedException {
+        Random random = new Random(4);
+        Watchlist watchlist = new Watchlist(FaceFeature.FEATURE_SIZE, 16);
+        for (int i = 0; i < WATCHLIST_SIZE; i++) {
+            watchlist.add("id" + i, FakeFaceEngine.randomFeature(random));
+        }
+        AtomicBoolean searchReturned = new AtomicBoolean();
+        AtomicInteger comparedAfterReturn = new AtomicInteger();
+        AtomicInteger compareCount = new AtomicInteger();
+        FakeFaceEngine delegate = new FakeFaceEngine.Builder().build();
+        List<FaceFeatureComparator> comparators = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            comparators.add((feature1, feature2, compareModel) -> {
+                if (searchReturned.get()) {
+                    comparedAfterReturn.incrementAndGet();
+                }
+                compareCount.incrementAndGet();
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(200));
+                return delegate.compareFaceFeature(feature1, feature2, compareModel);
+            });
+        }
+        EnginePool<FaceFeatureComparator> pool = new EnginePool<>(comparators);
+        WatchlistSearcher searcher = new WatchlistSearcher.Builder()
+                .watchlist(watchlist)
+                .comparatorPool(pool)
+                .build();
+        FaceFeature probe = FakeFaceEngine.randomFeature(random);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        Thread searchThread = new Thread(() -> {
+            try {
+                searcher.search(probe);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+            searchReturned.set(true);
+        });
+        searchThread.start();
+        while (compareCount.get() == 0) {
+            Thread.sleep(1);
+        }
+        searchThread.interrupt();
+        searchThread.join();
+        int countAtReturn = compareCount.get();
+        Thread.sleep(50);
+        searcher.release();
+
+        assertTrue(interrupted.get());
+        assertTrue(countAtReturn < WATCHLIST_SIZE);
+        //检索返回（读锁释放）后不应再有区间读取名单
+        assertEquals(0, comparedAfterReturn.get());
+        assertEquals(countAtReturn, compareCount.get());
+        assertEquals(0, pool.getInUseCount());
+        assertFalse(searchThread.isAlive());
+    }
+
+    @Test
+    public void remove_movesLastFeature() {
+        Random random = new Random(2);
+        Watchlist watchlist = new Watchlist(FaceFeature.FEATURE_SIZE, 1);
+        watchlist.add("a", FakeFaceEngine.randomFeature(random));
+        watchlist.add("b", FakeFaceEngine.randomFeature(random));
+        watchlist.add("a", FakeFaceEngine.randomFeature(random));
+        watchlist.add("c", FakeFaceEngine.randomFeature(random));
+        assertEquals(2, watchlist.remove("a"));
+        assertEquals(2, watchlist.size());
+        assertEquals("c", watchlist.getId(0));
+        assertEquals("b", watchlist.getId(1));
+    }
+
+    private static List<WatchlistSearcher.Match> search(Watchlist watchlist, int partitions, int topK, float minScore,
+                                                        FaceFeature probe) throws InterruptedException {
+        List<FakeFaceEngine> comparators = new ArrayList<>();
+        for (int i = 0; i < partitions; i++) {
+            comparators.add(new FakeFaceEngine.Builder().build());
+        }
+        WatchlistSearcher searcher = new WatchlistSearcher.Builder()
+                .watchlist(watchlist)
+                .comparatorPool(new EnginePool<>(comparators))
+                .topK(topK)
+                .minScore(minScore)
+                .build();
+        try {
+            return searcher.search(probe);
+        } finally {
+            searcher.release();
+        }
+    }
+
+    private static List<Float> bruteForce(List<FaceFeature> features, FaceFeature probe, int topK) {
+        FakeFaceEngine comparator = new FakeFaceEngine.Builder().build();
+        Float[] scores = new Float[features.size()];
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = comparator.compareFaceFeature(probe, features.get(i), CompareModel.LIFE_PHOTO);
+        }
+        Arrays.sort(scores, (a, b) -> Float.compare(b, a));
+        return Arrays.asList(scores).subList(0, topK);
+    }
+
+    private static List<Float> scores(List<WatchlistSearcher.Match> matches) {
+        List<Float> scores = new ArrayList<>();
+        for (WatchlistSearcher.Match match : matches) {
+            scores.add(match.getScore());
+        }
+        return scores;
+    }
+}